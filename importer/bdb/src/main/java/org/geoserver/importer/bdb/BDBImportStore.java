@@ -4,13 +4,15 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
-import org.apache.commons.collections.Predicate;
-import org.apache.commons.collections.iterators.FilterIterator;
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.StoreInfo;
+import org.geoserver.platform.GeoServerExtensions;
 import org.geotools.util.logging.Logging;
 import org.geoserver.importer.ImportContext;
 import org.geoserver.importer.ImportStore;
@@ -22,6 +24,10 @@ import com.sleepycat.bind.serial.ClassCatalog;
 import com.sleepycat.bind.serial.SerialBinding;
 import com.sleepycat.bind.serial.StoredClassCatalog;
 import com.sleepycat.bind.tuple.LongBinding;
+import com.sleepycat.bind.tuple.StringBinding;
+import com.sleepycat.bind.tuple.TupleBinding;
+import com.sleepycat.bind.tuple.TupleInput;
+import com.sleepycat.bind.tuple.TupleOutput;
 import com.sleepycat.collections.StoredMap;
 import com.sleepycat.je.CacheMode;
 import com.sleepycat.je.Cursor;
@@ -33,6 +39,10 @@ import com.sleepycat.je.Environment;
 import com.sleepycat.je.EnvironmentConfig;
 import com.sleepycat.je.LockMode;
 import com.sleepycat.je.OperationStatus;
+import com.sleepycat.je.SecondaryConfig;
+import com.sleepycat.je.SecondaryCursor;
+import com.sleepycat.je.SecondaryDatabase;
+import com.sleepycat.je.SecondaryKeyCreator;
 import com.sleepycat.je.Sequence;
 import com.sleepycat.je.SequenceConfig;
 import com.sleepycat.je.StatsConfig;
@@ -60,6 +70,12 @@ public class BDBImportStore implements ImportStore {
             ImportBinding createBinding() {
                 return new XStreamBinding();
             }
+        },
+        COMPACT {
+            @Override
+            ImportBinding createBinding() {
+                return new CompactBinding();
+            }
         };
 
         abstract ImportBinding createBinding(); 
@@ -70,7 +86,19 @@ public class BDBImportStore implements ImportStore {
     Database db, seqDb;
     Sequence importIdSeq;
 
+    /** 
+     * index database holding the state, user and updated time of each import, keyed by import id,
+     * with secondary databases on each so imports can be looked up without being deserialized
+     */
+    Database indexDb;
+    SecondaryDatabase stateDb, userDb, updatedDb;
+
+    static final String[] INDEX_DBS = 
+        {"imports_by_state", "imports_by_user", "imports_by_updated", "imports_index"};
+
     BindingType bindingType = BindingType.SERIAL;
+    /** whether the binding was set explicitly, which wins over the system property */
+    boolean bindingSet;
     ImportBinding dbBinding;
     EntryBinding<ImportContext> importBinding;
 
@@ -85,6 +113,7 @@ public class BDBImportStore implements ImportStore {
 
     public void setBinding(BindingType bindingType) {
         this.bindingType = bindingType;
+        this.bindingSet = true;
     }
 
     public BindingType getBinding() {
@@ -92,6 +121,15 @@ public class BDBImportStore implements ImportStore {
     }
 
     public void init() {
+        String binding = GeoServerExtensions.getProperty("org.geoserver.importer.bdb.binding");
+        if (binding != null && !bindingSet) {
+            try {
+                bindingType = BindingType.valueOf(binding.trim().toUpperCase());
+            }
+            catch(IllegalArgumentException e) {
+                LOGGER.warning("Invalid value for import store binding: " + binding);
+            }
+        }
         dbBinding = bindingType.createBinding();
 
         //create the db environment
@@ -135,6 +173,95 @@ public class BDBImportStore implements ImportStore {
         //    importer.createXStreamPersister(), ImportContext.class);
 
         checkAndFixDbIncompatability(dbConfig, env);
+
+        // may already have been opened when recovering from an incompatible database
+        if (indexDb == null) {
+            initIndexDb(dbConfig, env);
+        }
+    }
+
+    void initIndexDb(DatabaseConfig dbConfig, Environment env) {
+        indexDb = env.openDatabase(null, "imports_index", dbConfig);
+        stateDb = openIndex(env, "imports_by_state", new IndexKeyCreator() {
+            @Override
+            boolean createKey(IndexEntry entry, DatabaseEntry result) {
+                StringBinding.stringToEntry(entry.state, result);
+                return true;
+            }
+        });
+        userDb = openIndex(env, "imports_by_user", new IndexKeyCreator() {
+            @Override
+            boolean createKey(IndexEntry entry, DatabaseEntry result) {
+                if (entry.user == null) {
+                    return false;
+                }
+                StringBinding.stringToEntry(entry.user, result);
+                return true;
+            }
+        });
+        updatedDb = openIndex(env, "imports_by_updated", new IndexKeyCreator() {
+            @Override
+            boolean createKey(IndexEntry entry, DatabaseEntry result) {
+                LongBinding.longToEntry(entry.updated, result);
+                return true;
+            }
+        });
+
+        // index an existing database created before the index was introduced
+        if (isEmpty(indexDb) && !isEmpty(db)) {
+            LOGGER.info("Indexing import database");
+            reindex();
+        }
+    }
+
+    SecondaryDatabase openIndex(Environment env, String name, SecondaryKeyCreator keyCreator) {
+        SecondaryConfig config = new SecondaryConfig();
+        config.setAllowCreate(true);
+        config.setTransactional(true);
+        config.setSortedDuplicates(true);
+        config.setAllowPopulate(true);
+        config.setKeyCreator(keyCreator);
+        return env.openSecondaryDatabase(null, name, indexDb, config);
+    }
+
+    boolean isEmpty(Database database) {
+        Cursor c = database.openCursor(null, null);
+        try {
+            DatabaseEntry key = new DatabaseEntry();
+            DatabaseEntry val = new DatabaseEntry();
+            val.setPartial(0, 0, true);
+            return c.getNext(key, val, LockMode.DEFAULT) != OperationStatus.SUCCESS;
+        }
+        finally {
+            c.close();
+        }
+    }
+
+    /*
+     * rebuilds the index database from the imports database
+     */
+    void reindex() {
+        Cursor c = db.openCursor(null, null);
+        try {
+            DatabaseEntry key = new DatabaseEntry();
+            DatabaseEntry val = new DatabaseEntry();
+            while (c.getNext(key, val, LockMode.DEFAULT) == OperationStatus.SUCCESS) {
+                DatabaseEntry entry = new DatabaseEntry();
+                INDEX_BINDING.objectToEntry(
+                    new IndexEntry(importBinding.entryToObject(val)), entry);
+                indexDb.put(null, key, entry);
+            }
+        }
+        finally {
+            c.close();
+        }
+    }
+
+    void closeIndexDb() {
+        updatedDb.close();
+        userDb.close();
+        stateDb.close();
+        indexDb.close();
     }
 
     void checkAndFixDbIncompatability(DatabaseConfig dbConfig, Environment env) {
@@ -150,9 +277,14 @@ public class BDBImportStore implements ImportStore {
                 dbBinding.closeDb(env);
                 dbBinding.destroyDb(env);
                 
-                // and the import db
+                // and the import db along with its index
                 db.close();
                 env.removeDatabase(null, "imports");
+                for (String name : INDEX_DBS) {
+                    if (env.getDatabaseNames().contains(name)) {
+                        env.removeDatabase(null, name);
+                    }
+                }
 
                 // reopen
                 initDb(dbConfig, env);
@@ -210,7 +342,17 @@ public class BDBImportStore implements ImportStore {
     }
 
     public void remove(ImportContext importContext) {
-        db.delete(null, key(importContext) );
+        Transaction tx = db.getEnvironment().beginTransaction(null, null);
+        try {
+            db.delete(tx, key(importContext));
+            indexDb.delete(tx, key(importContext));
+            dbBinding.remove(tx, importContext.getId());
+            tx.commit();
+        }
+        catch(RuntimeException e) {
+            tx.abort();
+            throw e;
+        }
     }
 
     public void removeAll() {
@@ -233,6 +375,8 @@ public class BDBImportStore implements ImportStore {
         for (Long id : ids) {
             keyBinding.objectToEntry(id, key);
             db.delete(tx, key);
+            indexDb.delete(tx, key);
+            dbBinding.remove(tx, id);
         }
 
         tx.commit();
@@ -254,31 +398,94 @@ public class BDBImportStore implements ImportStore {
     }
 
     public Iterator<ImportContext> iterator(String sortBy) {
+        return iterator(sortBy, 0, -1);
+    }
+
+    /**
+     * Iterates over a page of imports in the specified order.
+     * <p>
+     * The only sort supported is "updated", most recently updated first. Only the imports in the
+     * requested page are read from the database.
+     * </p>
+     * @param offset number of imports to skip
+     * @param limit maximum number of imports to return, negative for no limit
+     */
+    @Override
+    public Iterator<ImportContext> iterator(String sortBy, int offset, int limit) {
         if (sortBy == null) {
             return iterator();
         }
+        if (!"updated".equals(sortBy)) {
+            throw new UnsupportedOperationException();
+        }
 
-        throw new UnsupportedOperationException();
+        List<Long> ids = new ArrayList<Long>();
+        SecondaryCursor c = updatedDb.openSecondaryCursor(null, null);
+        try {
+            DatabaseEntry key = new DatabaseEntry();
+            DatabaseEntry pkey = new DatabaseEntry();
+            DatabaseEntry val = new DatabaseEntry();
+            val.setPartial(0, 0, true);
+
+            int i = 0;
+            OperationStatus op = c.getLast(key, pkey, val, LockMode.DEFAULT);
+            while (op == OperationStatus.SUCCESS && (limit < 0 || ids.size() < limit)) {
+                if (i++ >= offset) {
+                    ids.add(LongBinding.entryToLong(pkey));
+                }
+                op = c.getPrev(key, pkey, val, LockMode.DEFAULT);
+            }
+        }
+        finally {
+            c.close();
+        }
+        return new ContextIterator(ids.iterator());
     }
 
-    public Iterator<ImportContext> allNonCompleteImports() {
-        // if this becomes too slow a secondary database could be used for indexing
-        return new FilterIterator(iterator(), new Predicate() {
+    @Override
+    public int count() {
+        return (int) Math.min(db.count(), Integer.MAX_VALUE);
+    }
 
-            public boolean evaluate(Object o) {
-                return ((ImportContext) o).getState() != ImportContext.State.COMPLETE;
+    public Iterator<ImportContext> allNonCompleteImports() {
+        Set<Long> ids = new TreeSet<Long>();
+        for (ImportContext.State state : ImportContext.State.values()) {
+            if (state != ImportContext.State.COMPLETE) {
+                ids.addAll(lookup(stateDb, state.name(), null));
             }
-        });
+        }
+        return new ContextIterator(ids.iterator());
     }
     
     public Iterator<ImportContext> importsByUser(final String user) {        
-        // if this becomes too slow a secondary database could be used for indexing
-        return new FilterIterator(allNonCompleteImports(), new Predicate() {
+        return new ContextIterator(lookup(userDb, user, ImportContext.State.COMPLETE).iterator());
+    }
 
-            public boolean evaluate(Object o) {
-                return user.equals( ((ImportContext) o).getUser() );
+    /*
+     * looks up the ids of imports with the specified key in an index, optionally skipping those 
+     * in the specified state
+     */
+    Set<Long> lookup(SecondaryDatabase index, String value, ImportContext.State skip) {
+        Set<Long> ids = new TreeSet<Long>();
+        SecondaryCursor c = index.openSecondaryCursor(null, null);
+        try {
+            DatabaseEntry key = new DatabaseEntry();
+            DatabaseEntry pkey = new DatabaseEntry();
+            DatabaseEntry val = new DatabaseEntry();
+            StringBinding.stringToEntry(value, key);
+
+            OperationStatus op = c.getSearchKey(key, pkey, val, LockMode.DEFAULT);
+            while (op == OperationStatus.SUCCESS) {
+                if (skip == null || !skip.name().equals(INDEX_BINDING.entryToObject(val).state)) {
+                    ids.add(LongBinding.entryToLong(pkey));
+                }
+                op = c.getNextDup(key, pkey, val, LockMode.DEFAULT);
             }
-        });
+        }
+        finally {
+            c.close();
+        }
+        return ids;
     }
 
     public void query(ImportVisitor visitor) {
@@ -303,7 +510,48 @@ public class BDBImportStore implements ImportStore {
         DatabaseEntry val = new DatabaseEntry();
         importBinding.objectToEntry(context, val);
 
-        db.put(null, key(context), val);
+        DatabaseEntry entry = new DatabaseEntry();
+        INDEX_BINDING.objectToEntry(new IndexEntry(context), entry);
+
+        Transaction tx = db.getEnvironment().beginTransaction(null, null);
+        try {
+            dbBinding.put(tx, context);
+            db.put(tx, key(context), val);
+            indexDb.put(tx, key(context), entry);
+            tx.commit();
+        }
+        catch(RuntimeException e) {
+            tx.abort();
+            dbBinding.rollback(context);
+            throw e;
+        }
+    }
+
+    /**
+     * Rewrites every import with the configured binding, converting imports written with a 
+     * previously configured one.
+     */
+    public void migrate() {
+        List<Long> ids = new ArrayList<Long>();
+        Cursor c = db.openCursor(null, null);
+        try {
+            DatabaseEntry key = new DatabaseEntry();
+            DatabaseEntry val = new DatabaseEntry();
+            val.setPartial(0, 0, true);
+            while (c.getNext(key, val, LockMode.DEFAULT) == OperationStatus.SUCCESS) {
+                ids.add(LongBinding.entryToLong(key));
+            }
+        }
+        finally {
+            c.close();
+        }
+
+        for (Long id : ids) {
+            ImportContext context = get(id);
+            if (context != null) {
+                put(dettach(context));
+            }
+        }
     }
 
     DatabaseEntry key(ImportContext context) {
@@ -332,6 +580,7 @@ public class BDBImportStore implements ImportStore {
         //destroy the db environment
         Environment env = db.getEnvironment();
 
+        closeIndexDb();
         dbBinding.closeDb(env);
         seqDb.close();
         db.close();
@@ -339,6 +588,85 @@ public class BDBImportStore implements ImportStore {
         env.close();
     }
 
+    /**
+     * Iterator that reads imports from the database as it goes, skipping any removed since the
+     * ids were looked up.
+     */
+    class ContextIterator implements Iterator<ImportContext> {
+        Iterator<Long> ids;
+        ImportContext next;
+
+        ContextIterator(Iterator<Long> ids) {
+            this.ids = ids;
+        }
+
+        public boolean hasNext() {
+            while (next == null && ids.hasNext()) {
+                next = get(ids.next());
+            }
+            return next != null;
+        }
+
+        public ImportContext next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ImportContext context = next;
+            next = null;
+            return context;
+        }
+
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * The indexed properties of an import.
+     */
+    static class IndexEntry {
+        String state;
+        String user;
+        long updated;
+
+        IndexEntry() {
+        }
+
+        IndexEntry(ImportContext context) {
+            state = context.getState() != null ? context.getState().name() : null;
+            user = context.getUser();
+            updated = context.getUpdated() != null ? context.getUpdated().getTime() : 0;
+        }
+    }
+
+    static final TupleBinding<IndexEntry> INDEX_BINDING = new TupleBinding<IndexEntry>() {
+        @Override
+        public IndexEntry entryToObject(TupleInput input) {
+            IndexEntry entry = new IndexEntry();
+            entry.state = input.readString();
+            entry.user = input.readString();
+            entry.updated = input.readLong();
+            return entry;
+        }
+
+        @Override
+        public void objectToEntry(IndexEntry entry, TupleOutput output) {
+            output.writeString(entry.state);
+            output.writeString(entry.user);
+            output.writeLong(entry.updated);
+        }
+    };
+
+    static abstract class IndexKeyCreator implements SecondaryKeyCreator {
+        @Override
+        public boolean createSecondaryKey(SecondaryDatabase secondary, DatabaseEntry key,
+            DatabaseEntry data, DatabaseEntry result) {
+            return createKey(INDEX_BINDING.entryToObject(data), result);
+        }
+
+        abstract boolean createKey(IndexEntry entry, DatabaseEntry result);
+    }
+
     static abstract class ImportBinding {
         void initDb(DatabaseConfig dbConfig, Environment env) {
         }
@@ -349,6 +677,18 @@ public class BDBImportStore implements ImportStore {
         void destroyDb( Environment env) {
         }
 
+        /** called before an import is written, within the same transaction */
+        void put(Transaction tx, ImportContext context) {
+        }
+
+        /** called when an import is removed, within the same transaction */
+        void remove(Transaction tx, long id) {
+        }
+
+        /** called when writing an import failed and was rolled back */
+        void rollback(ImportContext context) {
+        }
+
         abstract protected EntryBinding<ImportContext> createImportBinding(Importer importer);
     }
 
@@ -380,6 +720,50 @@ public class BDBImportStore implements ImportStore {
         }
     }
 
+    static class CompactBinding extends SerialImportBinding {
+        Database tasksDb;
+        CompactImportBinding binding;
+
+        @Override
+        void initDb(DatabaseConfig dbConfig, Environment env) {
+            super.initDb(dbConfig, env);
+            tasksDb = env.openDatabase(null, "import_tasks", dbConfig);
+        }
+
+        @Override
+        void closeDb(Environment env) {
+            tasksDb.close();
+            super.closeDb(env);
+        }
+
+        @Override
+        void destroyDb(Environment env) {
+            super.destroyDb(env);
+            env.removeDatabase(null, "import_tasks");
+        }
+
+        @Override
+        void put(Transaction tx, ImportContext context) {
+            binding.writeTasks(tx, context);
+        }
+
+        @Override
+        void remove(Transaction tx, long id) {
+            binding.deleteTasks(tx, id);
+        }
+
+        @Override
+        void rollback(ImportContext context) {
+            binding.reset(context.getId());
+        }
+
+        @Override
+        protected EntryBinding<ImportContext> createImportBinding(Importer importer) {
+            binding = new CompactImportBinding(classCatalog, tasksDb, importer);
+            return binding;
+        }
+    }
+
     static class XStreamBinding extends ImportBinding {
         @Override
         protected EntryBinding<ImportContext> createImportBinding(Importer importer) {
@@ -0,0 +1,383 @@
+package org.geoserver.importer.bdb;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.importer.ImportContext;
+import org.geoserver.importer.ImportTask;
+import org.geoserver.importer.Importer;
+
+import com.sleepycat.bind.EntryBinding;
+import com.sleepycat.bind.serial.ClassCatalog;
+import com.sleepycat.bind.serial.SerialBinding;
+import com.sleepycat.bind.serial.SerialInput;
+import com.sleepycat.bind.serial.SerialOutput;
+import com.sleepycat.bind.tuple.TupleInput;
+import com.sleepycat.bind.tuple.TupleOutput;
+import com.sleepycat.je.Cursor;
+import com.sleepycat.je.Database;
+import com.sleepycat.je.DatabaseEntry;
+import com.sleepycat.je.LockMode;
+import com.sleepycat.je.OperationStatus;
+import com.sleepycat.je.Transaction;
+import com.sleepycat.util.FastOutputStream;
+
+/**
+ * Compact binary binding for import contexts.
+ * <p>
+ * Records are written with java serialization against a class catalog shared by all records,
+ * and prefixed with a format version. Workspaces, namespaces, stores and styles that are part of
+ * the catalog are written as references by id and looked up again when read.
+ * </p>
+ * <p>
+ * The tasks of an import are not part of the import record, each task is written as a separate
+ * record in a tasks database, and only when it has changed since it was last written. Whether it
+ * did is told by its change stamp, see {@link ImportTask#changed()}, so unchanged tasks are not
+ * even serialized. Saving the progress of a single task of a large import only writes that task.
+ * </p>
+ * <p>
+ * Records written by the serial and XStream bindings can still be read, they are converted the
+ * next time the import is saved.
+ * </p>
+ */
+public class CompactImportBinding implements EntryBinding<ImportContext> {
+
+    static final byte[] MAGIC = {'I', 'C'};
+
+    /** current record format version */
+    static final byte VERSION = 1;
+
+    /** first byte of records written by the serial binding */
+    static final byte SERIAL_OBJECT = 0x73;
+
+    ClassCatalog classCatalog;
+    Database tasksDb;
+    Importer importer;
+
+    /** change stamps of the tasks last written, keyed by import and task id */
+    Map<String,Long> written = new ConcurrentHashMap<String, Long>();
+
+    /** bindings used to read records written before the switch to this binding */
+    EntryBinding<ImportContext> serialBinding;
+    EntryBinding<ImportContext> xstreamBinding;
+
+    public CompactImportBinding(ClassCatalog classCatalog, Database tasksDb, Importer importer) {
+        this.classCatalog = classCatalog;
+        this.tasksDb = tasksDb;
+        this.importer = importer;
+        this.serialBinding = new SerialBinding<ImportContext>(classCatalog, ImportContext.class);
+    }
+
+    public ImportContext entryToObject(DatabaseEntry entry) {
+        byte[] data = entry.getData();
+        int offset = entry.getOffset();
+        int size = entry.getSize();
+
+        if (!isCompact(data, offset, size)) {
+            return legacyBinding(data, offset, size).entryToObject(entry);
+        }
+
+        ImportContext context = (ImportContext) read(data, offset, size);
+
+        // tasks removed behind our back resolve to null
+        context.getTasks().removeAll(Collections.singleton(null));
+        for (ImportTask task : context.getTasks()) {
+            task.setContext(context);
+        }
+        return context;
+    }
+
+    public void objectToEntry(ImportContext context, DatabaseEntry entry) {
+        byte[] bytes = write(context, context);
+        entry.setData(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Writes the records of the tasks of an import that changed since they were last written,
+     * and removes the records of tasks no longer part of the import.
+     */
+    public void writeTasks(Transaction tx, ImportContext context) {
+        long contextId = context.getId();
+
+        Set<Long> ids = new HashSet<Long>();
+        for (ImportTask task : context.getTasks()) {
+            ids.add(task.getId());
+
+            Long stamp = task.getChangeStamp();
+            String key = contextId + ":" + task.getId();
+            if (!stamp.equals(written.get(key))) {
+                byte[] bytes = write(task, context);
+                tasksDb.put(tx, taskKey(contextId, task.getId()), new DatabaseEntry(bytes));
+                written.put(key, stamp);
+            }
+        }
+
+        deleteTasks(tx, contextId, ids);
+    }
+
+    /**
+     * Removes the records of all tasks of an import.
+     */
+    public void deleteTasks(Transaction tx, long contextId) {
+        deleteTasks(tx, contextId, Collections.<Long>emptySet());
+    }
+
+    /**
+     * Forgets which task records of an import have been written, called when a write of the
+     * import is rolled back.
+     */
+    public void reset(long contextId) {
+        String prefix = contextId + ":";
+        for (Iterator<String> it = written.keySet().iterator(); it.hasNext();) {
+            if (it.next().startsWith(prefix)) {
+                it.remove();
+            }
+        }
+    }
+
+    void deleteTasks(Transaction tx, long contextId, Set<Long> keep) {
+        Cursor c = tasksDb.openCursor(tx, null);
+        try {
+            DatabaseEntry key = taskKey(contextId, Long.MIN_VALUE);
+            DatabaseEntry val = new DatabaseEntry();
+            val.setPartial(0, 0, true);
+
+            OperationStatus op = c.getSearchKeyRange(key, val, LockMode.RMW);
+            while (op == OperationStatus.SUCCESS) {
+                TupleInput in = new TupleInput(key.getData(), key.getOffset(), key.getSize());
+                if (in.readLong() != contextId) {
+                    break;
+                }
+
+                long taskId = in.readLong();
+                if (!keep.contains(taskId)) {
+                    c.delete();
+                    written.remove(contextId + ":" + taskId);
+                }
+                op = c.getNext(key, val, LockMode.RMW);
+            }
+        }
+        finally {
+            c.close();
+        }
+    }
+
+    ImportTask readTask(long contextId, long taskId) {
+        DatabaseEntry val = new DatabaseEntry();
+        if (tasksDb.get(null, taskKey(contextId, taskId), val, LockMode.DEFAULT)
+            != OperationStatus.SUCCESS) {
+            return null;
+        }
+
+        ImportTask task = (ImportTask) read(val.getData(), val.getOffset(), val.getSize());
+
+        // seed the stamp so an unchanged task is not written again
+        written.put(contextId + ":" + taskId, task.getChangeStamp());
+        return task;
+    }
+
+    DatabaseEntry taskKey(long contextId, long taskId) {
+        TupleOutput out = new TupleOutput();
+        out.writeLong(contextId);
+        out.writeLong(taskId);
+
+        DatabaseEntry key = new DatabaseEntry();
+        key.setData(out.getBufferBytes(), 0, out.getBufferLength());
+        return key;
+    }
+
+    byte[] write(Object root, ImportContext context) {
+        FastOutputStream out = new FastOutputStream();
+        try {
+            out.write(MAGIC);
+            out.write(VERSION);
+
+            RecordOutput ro = new RecordOutput(out, root, context);
+            ro.writeObject(root);
+            ro.flush();
+        }
+        catch(IOException e) {
+            throw new RuntimeException(e);
+        }
+        return out.toByteArray();
+    }
+
+    Object read(byte[] data, int offset, int size) {
+        byte version = data[offset + MAGIC.length];
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported import record version: " + version);
+        }
+
+        int header = MAGIC.length + 1;
+        InputStream in = new ByteArrayInputStream(data, offset + header, size - header);
+        try {
+            return new RecordInput(in).readObject();
+        }
+        catch(Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    boolean isCompact(byte[] data, int offset, int size) {
+        return size > MAGIC.length && data[offset] == MAGIC[0] && data[offset+1] == MAGIC[1];
+    }
+
+    EntryBinding<ImportContext> legacyBinding(byte[] data, int offset, int size) {
+        // the serial binding writes objects without the stream header, so records start with an
+        // object marker, anything else was written by the XStream binding
+        if (size > 0 && data[offset] == SERIAL_OBJECT) {
+            return serialBinding;
+        }
+
+        if (xstreamBinding == null) {
+            xstreamBinding = new XStreamInfoSerialBinding<ImportContext>(
+                importer.createXStreamPersisterXML(), ImportContext.class);
+        }
+        return xstreamBinding;
+    }
+
+    /**
+     * Output that replaces catalog objects with references, and the tasks of an import or the
+     * import of a task with markers.
+     */
+    class RecordOutput extends SerialOutput {
+
+        Object root;
+        ImportContext context;
+
+        RecordOutput(OutputStream out, Object root, ImportContext context) throws IOException {
+            super(out, classCatalog);
+            this.root = root;
+            this.context = context;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj == root) {
+                return obj;
+            }
+            if (obj instanceof ImportTask) {
+                return new TaskRef(context.getId(), ((ImportTask) obj).getId());
+            }
+            if (obj instanceof ImportContext) {
+                return ContextRef.INSTANCE;
+            }
+            if (obj instanceof CatalogInfo) {
+                CatalogRef ref = CatalogRef.create((CatalogInfo) obj);
+                if (ref != null && ref.resolve(importer.getCatalog()) != null) {
+                    return ref;
+                }
+            }
+            return obj;
+        }
+    }
+
+    /**
+     * Input that resolves the references written by {@link RecordOutput}.
+     */
+    class RecordInput extends SerialInput {
+
+        RecordInput(InputStream in) throws IOException {
+            super(in, classCatalog);
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof TaskRef) {
+                TaskRef ref = (TaskRef) obj;
+                return readTask(ref.contextId, ref.taskId);
+            }
+            if (obj instanceof ContextRef) {
+                // set by the import once read
+                return null;
+            }
+            if (obj instanceof CatalogRef) {
+                return ((CatalogRef) obj).resolve(importer.getCatalog());
+            }
+            return obj;
+        }
+    }
+
+    static class TaskRef implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        long contextId;
+        long taskId;
+
+        TaskRef(long contextId, long taskId) {
+            this.contextId = contextId;
+            this.taskId = taskId;
+        }
+    }
+
+    static class ContextRef implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        static final ContextRef INSTANCE = new ContextRef();
+    }
+
+    static class CatalogRef implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        static final byte WORKSPACE = 0, NAMESPACE = 1, STORE = 2, STYLE = 3;
+
+        byte type;
+        String id;
+
+        CatalogRef(byte type, String id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        static CatalogRef create(CatalogInfo info) {
+            if (info.getId() == null) {
+                return null;
+            }
+            if (info instanceof WorkspaceInfo) {
+                return new CatalogRef(WORKSPACE, info.getId());
+            }
+            if (info instanceof NamespaceInfo) {
+                return new CatalogRef(NAMESPACE, info.getId());
+            }
+            if (info instanceof StoreInfo) {
+                return new CatalogRef(STORE, info.getId());
+            }
+            if (info instanceof StyleInfo) {
+                return new CatalogRef(STYLE, info.getId());
+            }
+            return null;
+        }
+
+        CatalogInfo resolve(Catalog catalog) {
+            switch(type) {
+            case WORKSPACE:
+                return catalog.getWorkspace(id);
+            case NAMESPACE:
+                return catalog.getNamespace(id);
+            case STORE:
+                return catalog.getStore(id, StoreInfo.class);
+            case STYLE:
+                return catalog.getStyle(id);
+            default:
+                return null;
+            }
+        }
+    }
+}
@@ -2,12 +2,17 @@ package org.geoserver.importer.bdb;
 
 import java.io.File;
 import java.util.Iterator;
+import java.util.List;
+
 import org.geoserver.importer.Directory;
 import org.geoserver.importer.ImportContext;
 import org.geoserver.importer.ImportStore.ImportVisitor;
+import org.geoserver.importer.ImportTask;
 import org.geoserver.importer.Importer;
 import org.geoserver.importer.ImporterTestSupport;
 
+import com.google.common.collect.Lists;
+
 
 public class BDBImportStoreTest extends ImporterTestSupport {
 
@@ -117,6 +122,109 @@ public class BDBImportStoreTest extends ImporterTestSupport {
         assertEquals(ImportContext.State.COMPLETE, context2.getState());
     }
 
+    public void testIndexedQueries() throws Exception {
+        ImportContext c1 = new ImportContext();
+        c1.setUser("bob");
+        store.add(c1);
+
+        ImportContext c2 = new ImportContext();
+        c2.setUser("alice");
+        store.add(c2);
+
+        ImportContext c3 = new ImportContext();
+        c3.setUser("bob");
+        c3.setState(ImportContext.State.COMPLETE);
+        store.add(c3);
+
+        List<ImportContext> contexts = Lists.newArrayList(store.allNonCompleteImports());
+        assertEquals(2, contexts.size());
+        assertEquals(c1.getId(), contexts.get(0).getId());
+        assertEquals(c2.getId(), contexts.get(1).getId());
+
+        contexts = Lists.newArrayList(store.importsByUser("bob"));
+        assertEquals(1, contexts.size());
+        assertEquals(c1.getId(), contexts.get(0).getId());
+
+        // completing an import updates the index
+        c1.setState(ImportContext.State.COMPLETE);
+        store.save(c1);
+        assertFalse(store.importsByUser("bob").hasNext());
+
+        // touch the first import, it should now be the most recently updated
+        Thread.sleep(10);
+        c1.updated();
+        store.save(c1);
+
+        contexts = Lists.newArrayList(store.iterator("updated"));
+        assertEquals(3, contexts.size());
+        assertEquals(c1.getId(), contexts.get(0).getId());
+
+        contexts = Lists.newArrayList(store.iterator("updated", 1, 1));
+        assertEquals(1, contexts.size());
+        assertFalse(c1.getId().equals(contexts.get(0).getId()));
+
+        store.remove(c2);
+        contexts = Lists.newArrayList(store.iterator("updated"));
+        assertEquals(2, contexts.size());
+    }
+
+    public void testCompactBinding() throws Exception {
+        File dir = tmpDir();
+        unpack("shape/archsites_epsg_prj.zip", dir);
+        unpack("shape/bugsites_esri_prj.tar.gz", dir);
+        ImportContext context = importer.createContext(new Directory(dir));
+        assertEquals(2, context.getTasks().size());
+
+        // written with the serial binding, read back with the compact one
+        store.add(context);
+        store.destroy();
+        store = new BDBImportStore(importer);
+        store.setBinding(BDBImportStore.BindingType.COMPACT);
+        store.init();
+
+        ImportContext context2 = store.get(context.getId());
+        assertNotNull(context2);
+        assertEquals(2, context2.getTasks().size());
+
+        // convert and read again
+        store.migrate();
+        context2 = store.get(context.getId());
+        importer.reattach(context2);
+        assertEquals(2, context2.getTasks().size());
+        for (ImportTask task : context2.getTasks()) {
+            assertSame(context2, task.getContext());
+            assertNotNull(task.getLayer());
+            assertNotNull(task.getStore());
+        }
+
+        ImportTask task = context2.getTasks().get(0);
+        task.setState(ImportTask.State.COMPLETE);
+        context2.removeTask(context2.getTasks().get(1));
+        store.save(context2);
+
+        ImportContext context3 = store.get(context.getId());
+        assertEquals(1, context3.getTasks().size());
+        assertEquals(task.getId(), context3.getTasks().get(0).getId());
+        assertEquals(ImportTask.State.COMPLETE, context3.getTasks().get(0).getState());
+    }
+
+    public void testExplicitBindingWins() throws Exception {
+        store.destroy();
+
+        System.setProperty("org.geoserver.importer.bdb.binding", "serial");
+        try {
+            store = new BDBImportStore(importer);
+            store.setBinding(BDBImportStore.BindingType.COMPACT);
+            store.init();
+        }
+        finally {
+            System.clearProperty("org.geoserver.importer.bdb.binding");
+        }
+
+        assertEquals(BDBImportStore.BindingType.COMPACT, store.getBinding());
+        assertTrue(store.importBinding instanceof CompactImportBinding);
+    }
+
     public void testDatabaseRecovery() throws Exception {
         
     }
@@ -0,0 +1,139 @@
+package org.geoserver.importer.bdb;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.geoserver.catalog.CatalogFactory;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.importer.ImportContext;
+import org.geoserver.importer.ImportTask;
+import org.geoserver.importer.Importer;
+import org.geoserver.importer.ImporterTestUtils;
+import org.geoserver.importer.SpatialFile;
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the cost of saving and loading an import with each of the store bindings.
+ * <p>
+ * The save benchmark mimics a progress update, changing the state of a single task of the import
+ * before saving it. Run with:
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test
+ *   -Dexec.mainClass=org.geoserver.importer.bdb.ImportBindingBenchmark
+ * </pre>
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ImportBindingBenchmark {
+
+    @Param({"SERIAL", "XSTREAM", "COMPACT"})
+    String binding;
+
+    @Param({"10", "250"})
+    int tasks;
+
+    File root;
+    BDBImportStore store;
+    ImportContext context;
+    int counter;
+
+    @Setup
+    public void setUp() throws Exception {
+        root = ImporterTestUtils.tmpDir();
+
+        CatalogImpl catalog = new CatalogImpl();
+        catalog.setResourceLoader(new GeoServerResourceLoader(root));
+        CatalogFactory factory = catalog.getFactory();
+
+        WorkspaceInfo ws = factory.createWorkspace();
+        ws.setName("bench");
+        catalog.add(ws);
+
+        NamespaceInfo ns = factory.createNamespace();
+        ns.setPrefix("bench");
+        ns.setURI("http://bench");
+        catalog.add(ns);
+
+        DataStoreInfo ds = factory.createDataStore();
+        ds.setName("bench");
+        ds.setWorkspace(ws);
+        ds.setEnabled(true);
+        catalog.add(ds);
+
+        context = new ImportContext();
+        context.setTargetWorkspace(ws);
+        context.setTargetStore(ds);
+        context.setUser("bench");
+        for (int i = 0; i < tasks; i++) {
+            FeatureTypeInfo ft = factory.createFeatureType();
+            ft.setName("layer" + i);
+            ft.setNativeName("layer" + i);
+            ft.setNamespace(ns);
+            ft.setStore(ds);
+
+            LayerInfo layer = factory.createLayer();
+            layer.setResource(ft);
+
+            ImportTask task = new ImportTask(new SpatialFile(new File(root, "layer" + i + ".shp")));
+            task.setStore(ds);
+            task.setLayer(layer);
+            task.setState(ImportTask.State.READY);
+            context.addTask(task);
+        }
+
+        Importer importer = new Importer(catalog);
+        store = new BDBImportStore(importer);
+        store.setBinding(BDBImportStore.BindingType.valueOf(binding));
+        store.init();
+        store.add(context);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        store.destroy();
+        FileUtils.deleteQuietly(root);
+    }
+
+    @Benchmark
+    public void save() {
+        ImportTask task = context.getTasks().get(counter++ % tasks);
+        task.setState(task.getState() == ImportTask.State.READY ?
+            ImportTask.State.RUNNING : ImportTask.State.READY);
+        store.save(context);
+    }
+
+    @Benchmark
+    public ImportContext get() {
+        return store.get(context.getId());
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+            .include(ImportBindingBenchmark.class.getSimpleName()).build()).run();
+    }
+}
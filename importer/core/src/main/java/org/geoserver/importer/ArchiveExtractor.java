@@ -0,0 +1,530 @@
+package org.geoserver.importer;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.io.IOUtils;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Extracts zip and tar family archives by streaming their entries straight to disk.
+ * <p>
+ * Zip entries are listed from the central directory and written by a pool of threads, tar
+ * archives (optionally gzipped) are read sequentially, writing each entry as it is read.
+ * </p>
+ * <p>
+ * A {@link Listener} can be told about each directory once everything below it has been
+ * written, so that it can be scanned while the rest of the archive is still being extracted.
+ * </p>
+ */
+class ArchiveExtractor {
+
+    static final Logger LOGGER = Logging.getLogger(ArchiveExtractor.class);
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Receives the directories written by an extraction, each once everything below it has been
+     * written and sub directories before their parents. Called from the extracting threads.
+     */
+    interface Listener {
+        /**
+         * @param created whether the directory was created by the extraction, rather than
+         * written into
+         */
+        void extracted(File dir, boolean created);
+    }
+
+    int threads;
+
+    Listener listener;
+
+    ArchiveExtractor(int threads) {
+        this(threads, null);
+    }
+
+    ArchiveExtractor(int threads, Listener listener) {
+        this.threads = threads;
+        this.listener = listener;
+    }
+
+    /**
+     * Whether the archive can be extracted by this class rather than through commons-vfs.
+     */
+    static boolean canExtract(File archive) {
+        String name = archive.getName().toLowerCase();
+        return name.endsWith(".zip") || name.endsWith(".kmz") || name.endsWith(".jar")
+            || name.endsWith(".tar") || name.endsWith(".tar.gz") || name.endsWith(".tgz")
+            || name.endsWith(".gz");
+    }
+
+    void extract(File archive, File target) throws IOException {
+        if (!target.exists() && !target.mkdirs()) {
+            throw new IOException("Unable to create " + target.getPath());
+        }
+
+        String name = archive.getName().toLowerCase();
+        if (name.endsWith(".zip") || name.endsWith(".kmz") || name.endsWith(".jar")) {
+            extractZip(archive, target);
+        }
+        else if (name.endsWith(".tar")) {
+            extractTar(new BufferedInputStream(new FileInputStream(archive), BUFFER_SIZE), target);
+        }
+        else if (name.endsWith(".tar.gz") || name.endsWith(".tgz")) {
+            extractTar(new GZIPInputStream(new FileInputStream(archive), BUFFER_SIZE), target);
+        }
+        else if (name.endsWith(".gz")) {
+            // single compressed file
+            String base = archive.getName().substring(0, archive.getName().length() - 3);
+            InputStream in = new GZIPInputStream(new FileInputStream(archive), BUFFER_SIZE);
+            try {
+                write(in, -1, new File(target, base));
+            }
+            finally {
+                in.close();
+            }
+        }
+        else {
+            throw new IllegalArgumentException("Unsupported archive: " + archive.getPath());
+        }
+    }
+
+    void extractZip(File archive, final File target) throws IOException {
+        final ZipFile zip = new ZipFile(archive);
+        try {
+            // read and check all the entry names before writing anything, names that are not
+            // valid utf-8 fail here and leave the target untouched
+            List<ZipEntry> all = new ArrayList<ZipEntry>();
+            List<File> files = new ArrayList<File>();
+            for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
+                ZipEntry entry = e.nextElement();
+                all.add(entry);
+                files.add(resolve(target, entry.getName()));
+            }
+
+            final Tracker tracker = new Tracker(target);
+            List<ZipEntry> entries = new ArrayList<ZipEntry>();
+            for (int i = 0; i < all.size(); i++) {
+                if (all.get(i).isDirectory()) {
+                    tracker.register(files.get(i));
+                }
+                else {
+                    tracker.expect(files.get(i));
+                    entries.add(all.get(i));
+                }
+            }
+
+            // create the directories up front so entries can be written in any order
+            for (int i = 0; i < all.size(); i++) {
+                File f = files.get(i);
+                mkdirs(all.get(i).isDirectory() ? f : f.getParentFile());
+            }
+            tracker.report();
+
+            int n = Math.min(threads, entries.size());
+            if (n <= 1) {
+                for (ZipEntry entry : entries) {
+                    tracker.written(extractZipEntry(zip, entry, target));
+                }
+                return;
+            }
+
+            ExecutorService executor = Executors.newFixedThreadPool(n, new ThreadFactory() {
+                AtomicInteger seq = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "importer-extract-" + seq.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            try {
+                List<Future<Void>> results = new ArrayList<Future<Void>>();
+                for (final ZipEntry entry : entries) {
+                    results.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            tracker.written(extractZipEntry(zip, entry, target));
+                            return null;
+                        }
+                    }));
+                }
+                for (Future<Void> f : results) {
+                    f.get();
+                }
+            } catch (InterruptedException e) {
+                throw (IOException) new IOException("Interrupted extracting " + archive.getPath())
+                    .initCause(e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw (IOException) new IOException("Error extracting " + archive.getPath())
+                    .initCause(e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        finally {
+            zip.close();
+        }
+    }
+
+    File extractZipEntry(ZipFile zip, ZipEntry entry, File target) throws IOException {
+        LOGGER.fine("Uncompressing " + entry.getName());
+        File f = resolve(target, entry.getName());
+        InputStream in = zip.getInputStream(entry);
+        try {
+            write(in, -1, f);
+        }
+        finally {
+            in.close();
+        }
+        if (entry.getTime() > 0) {
+            f.setLastModified(entry.getTime());
+        }
+        return f;
+    }
+
+    /**
+     * Reads a tar stream, writing each regular file as its entry is read. Handles ustar and
+     * GNU long names as well as pax path headers.
+     */
+    void extractTar(InputStream in, File target) throws IOException {
+        // entries of a directory may come anywhere in the stream, directories are only
+        // complete at the end
+        Tracker tracker = new Tracker(target);
+        try {
+            byte[] header = new byte[512];
+            String longName = null;
+            while (readBlock(in, header)) {
+                if (isZero(header)) {
+                    // end of archive
+                    break;
+                }
+
+                String name = longName != null ? longName : tarName(header);
+                longName = null;
+
+                long size = tarSize(header);
+                byte type = header[156];
+
+                if (type == 'L' || type == 'x') {
+                    // name of the next entry, gnu and pax style
+                    byte[] data = new byte[(int) size];
+                    readFully(in, data);
+                    skip(in, padding(size));
+                    longName = type == 'L' ? cstring(data, 0, data.length) : paxPath(data);
+                    continue;
+                }
+
+                File f = resolve(target, name);
+                if (type == '5') {
+                    tracker.register(f);
+                    mkdirs(f);
+                }
+                else if (type == '0' || type == 0 || type == '7') {
+                    LOGGER.fine("Uncompressing " + name);
+                    tracker.register(f.getParentFile());
+                    mkdirs(f.getParentFile());
+                    write(in, size, f);
+                    skip(in, padding(size));
+                    continue;
+                }
+                // links and other special entries are skipped
+                skip(in, size + padding(size));
+            }
+        }
+        finally {
+            IOUtils.closeQuietly(in);
+        }
+        tracker.report();
+    }
+
+    String tarName(byte[] header) {
+        String name = cstring(header, 0, 100);
+        if ("ustar".equals(cstring(header, 257, 5))) {
+            String prefix = cstring(header, 345, 155);
+            if (prefix.length() > 0) {
+                name = prefix + "/" + name;
+            }
+        }
+        return name;
+    }
+
+    long tarSize(byte[] header) {
+        if ((header[124] & 0x80) != 0) {
+            // gnu base-256 encoding for large files
+            long size = 0;
+            for (int i = 125; i < 136; i++) {
+                size = (size << 8) | (header[i] & 0xff);
+            }
+            return size;
+        }
+        long size = 0;
+        for (int i = 124; i < 136; i++) {
+            byte b = header[i];
+            if (b >= '0' && b <= '7') {
+                size = size * 8 + (b - '0');
+            }
+            else if (b == 0 || (b == ' ' && size > 0)) {
+                break;
+            }
+        }
+        return size;
+    }
+
+    String paxPath(byte[] data) {
+        // records of the form "<length> <key>=<value>\n"
+        int i = 0;
+        while (i < data.length) {
+            int space = i;
+            while (space < data.length && data[space] != ' ') {
+                space++;
+            }
+            int len;
+            try {
+                len = Integer.parseInt(new String(data, i, space - i, UTF8));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (len <= 0 || i + len > data.length) {
+                return null;
+            }
+            String record = new String(data, space + 1, i + len - space - 2, UTF8);
+            if (record.startsWith("path=")) {
+                return record.substring(5);
+            }
+            i += len;
+        }
+        return null;
+    }
+
+    static long padding(long size) {
+        long rem = size % 512;
+        return rem == 0 ? 0 : 512 - rem;
+    }
+
+    static boolean isZero(byte[] block) {
+        for (byte b : block) {
+            if (b != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static String cstring(byte[] bytes, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && bytes[end] != 0) {
+            end++;
+        }
+        return new String(bytes, offset, end - offset, UTF8).trim();
+    }
+
+    static boolean readBlock(InputStream in, byte[] block) throws IOException {
+        int n = 0;
+        while (n < block.length) {
+            int read = in.read(block, n, block.length - n);
+            if (read < 0) {
+                return false;
+            }
+            n += read;
+        }
+        return true;
+    }
+
+    static void readFully(InputStream in, byte[] data) throws IOException {
+        if (!readBlock(in, data)) {
+            throw new EOFException("Unexpected end of archive");
+        }
+    }
+
+    static void skip(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long skipped = in.skip(n);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new EOFException("Unexpected end of archive");
+                }
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+
+    /**
+     * Writes <tt>length</tt> bytes of the stream to a file, or the whole stream if length is
+     * negative.
+     */
+    static void write(InputStream in, long length, File f) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(f), BUFFER_SIZE);
+        try {
+            byte[] buf = new byte[BUFFER_SIZE];
+            long remaining = length < 0 ? Long.MAX_VALUE : length;
+            while (remaining > 0) {
+                int read = in.read(buf, 0, (int) Math.min(buf.length, remaining));
+                if (read < 0) {
+                    if (length >= 0) {
+                        throw new EOFException("Unexpected end of archive writing " + f.getPath());
+                    }
+                    break;
+                }
+                out.write(buf, 0, read);
+                remaining -= read;
+            }
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    static void mkdirs(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Unable to create " + dir.getPath());
+        }
+    }
+
+    /**
+     * Keeps track of the files left to write below each directory of the archive, reporting
+     * directories to the listener as they are completed.
+     */
+    class Tracker {
+
+        File target;
+
+        /** files left to write below each directory, by directory */
+        Map<File,AtomicInteger> remaining = new HashMap<File, AtomicInteger>();
+
+        /** directories that did not exist before the extraction */
+        Set<File> created = new HashSet<File>();
+
+        Set<File> reported = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+        Tracker(File target) {
+            this.target = target;
+        }
+
+        /**
+         * Registers a directory written by the extraction, along with its parents.
+         */
+        void register(File dir) {
+            if (listener == null) {
+                return;
+            }
+            for (File d = dir; d != null && !d.equals(target); d = d.getParentFile()) {
+                if (remaining.containsKey(d)) {
+                    break;
+                }
+                remaining.put(d, new AtomicInteger());
+                if (!d.isDirectory()) {
+                    created.add(d);
+                }
+            }
+        }
+
+        /**
+         * Registers a file to be written.
+         */
+        void expect(File f) {
+            if (listener == null) {
+                return;
+            }
+            register(f.getParentFile());
+            for (File d = f.getParentFile(); !d.equals(target); d = d.getParentFile()) {
+                remaining.get(d).incrementAndGet();
+            }
+        }
+
+        /**
+         * Notes a file has been written, reporting the directories it completed.
+         */
+        void written(File f) {
+            if (listener == null) {
+                return;
+            }
+            // deepest first, a directory is reported before its parent can be
+            for (File d = f.getParentFile(); !d.equals(target); d = d.getParentFile()) {
+                if (remaining.get(d).decrementAndGet() == 0) {
+                    report(d);
+                }
+            }
+        }
+
+        /**
+         * Reports the directories with nothing left to write that have not been reported yet.
+         */
+        void report() {
+            if (listener == null) {
+                return;
+            }
+            List<File> dirs = new ArrayList<File>();
+            for (Map.Entry<File,AtomicInteger> e : remaining.entrySet()) {
+                if (e.getValue().get() == 0) {
+                    dirs.add(e.getKey());
+                }
+            }
+            // sub directories before their parents
+            Collections.sort(dirs, new Comparator<File>() {
+                @Override
+                public int compare(File f1, File f2) {
+                    return f2.getPath().length() - f1.getPath().length();
+                }
+            });
+            for (File d : dirs) {
+                report(d);
+            }
+        }
+
+        void report(File dir) {
+            if (reported.add(dir)) {
+                listener.extracted(dir, created.contains(dir));
+            }
+        }
+    }
+
+    /**
+     * Resolves an entry name against the target folder, refusing entries that would end up
+     * outside of it.
+     */
+    static File resolve(File target, String name) throws IOException {
+        File f = new File(target, name);
+        String root = target.getCanonicalPath();
+        String path = f.getCanonicalPath();
+        if (!path.equals(root) && !path.startsWith(root + File.separator)) {
+            throw new IOException("Archive entry " + name + " is outside of " + target.getPath());
+        }
+        return f;
+    }
+}
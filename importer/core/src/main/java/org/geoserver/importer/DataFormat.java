@@ -42,6 +42,21 @@ public abstract class DataFormat implements Serializable {
      * looks up a format based on file extension.
      */
     public static DataFormat lookup(File file) {
+        DataFormat format = lookupExtension(file);
+        if (format == null) {
+            format = lookupDataStore(file);
+        }
+        if (format == null) {
+            format = lookupGrid(file);
+        }
+        return format;
+    }
+
+    /**
+     * Looks up a format among the registered format extensions, asking each whether it can read 
+     * the file.
+     */
+    static DataFormat lookupExtension(File file) {
         FileData fileData = new FileData(file); 
         for (DataFormat df : GeoServerExtensions.extensions(DataFormat.class)) {
             try {
@@ -53,14 +68,25 @@ public abstract class DataFormat implements Serializable {
                     df.getName(), file.getPath()), e);
             }
         }
+        return null;
+    }
 
-        //look for a datastore that can handle the file
+    /**
+     * Looks up a datastore that can handle the file, based on the file extension alone.
+     */
+    static DataFormat lookupDataStore(File file) {
         String ext = FilenameUtils.getExtension(file.getName());
         FileDataStoreFactorySpi factory = FileDataStoreFinder.getDataStoreFactory(ext);
         if (factory != null) {
             return new DataStoreFormat(factory);
         }
+        return null;
+    }
 
+    /**
+     * Looks up a grid format that can handle the file.
+     */
+    static DataFormat lookupGrid(File file) {
         //look for a gridformat that can handle the file
         Set<AbstractGridFormat> formats = GridFormatFinder.findFormats(file);
         AbstractGridFormat format = null;
@@ -28,6 +28,7 @@ import org.geotools.data.Transaction;
 import org.geotools.data.simple.SimpleFeatureSource;
 import org.geotools.jdbc.JDBCDataStoreFactory;
 import org.geotools.util.logging.Logging;
+import org.geoserver.importer.csv.CSVDataStoreFactory;
 import org.geoserver.importer.job.ProgressMonitor;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
@@ -91,7 +92,7 @@ public class DataStoreFormat extends VectorFormat {
 
     @Override
     public List<ImportTask> list(ImportData data, Catalog catalog, ProgressMonitor monitor) throws IOException {
-        DataStore dataStore = createDataStore(data);
+        DataStore dataStore = createDataStore(data, true);
         try {
             CatalogBuilder cb = new CatalogBuilder(catalog);
             
@@ -184,9 +185,22 @@ public class DataStoreFormat extends VectorFormat {
     }
     
     public DataStore createDataStore(ImportData data) throws IOException {
+        return createDataStore(data, false);
+    }
+
+    /**
+     * Creates the data store, when <tt>listing</tt> the store only needs to describe the data 
+     * and csv files are profiled from a sample of their records. The store used to read the data 
+     * for the import always profiles the whole file.
+     */
+    DataStore createDataStore(ImportData data, boolean listing) throws IOException {
         DataStoreFactorySpi dataStoreFactory = factory();
 
         Map<String,Serializable> params = createConnectionParameters(data);
+        if (listing && params != null && dataStoreFactory instanceof CSVDataStoreFactory) {
+            params.put(CSVDataStoreFactory.SAMPLEP.key, 
+                Importer.intProperty("org.geoserver.importer.csvSampleSize", 0));
+        }
         if (params != null && dataStoreFactory.canProcess(params)) {
             DataStore dataStore = dataStoreFactory.createDataStore(params); 
             if (dataStore != null) {
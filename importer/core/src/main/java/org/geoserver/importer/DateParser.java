@@ -0,0 +1,53 @@
+package org.geoserver.importer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Parses the values of a column of dates, trying first the pattern that parsed the last value.
+ * <p>
+ * Values the last pattern can't parse are tried against all the patterns in order, as
+ * {@link Dates#parse(String)} does, so columns mixing several formats are still parsed. Patterns
+ * are applied without their regular expressions and with a date format cached per thread,
+ * making this class safe to use from several threads.
+ * </p>
+ */
+public class DateParser {
+
+    final List<DatePattern> patterns;
+
+    /** index of the pattern that parsed the last value, -1 if none yet */
+    volatile int last = -1;
+
+    public DateParser() {
+        this(Dates.patterns(false));
+    }
+
+    public DateParser(Collection<DatePattern> patterns) {
+        this.patterns = new ArrayList<DatePattern>(patterns);
+    }
+
+    public Date parse(String str) {
+        int i = last;
+        if (i >= 0) {
+            Date parsed = patterns.get(i).parse(str);
+            if (parsed != null) {
+                return parsed;
+            }
+        }
+
+        for (int j = 0; j < patterns.size(); j++) {
+            if (j == i) {
+                continue;
+            }
+            Date parsed = patterns.get(j).parse(str);
+            if (parsed != null) {
+                last = j;
+                return parsed;
+            }
+        }
+        return null;
+    }
+}
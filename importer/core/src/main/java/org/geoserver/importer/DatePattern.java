@@ -24,6 +24,9 @@ public class DatePattern implements java.io.Serializable {
 
     Pattern pattern;
 
+    /** formats used for parsing, one per thread as date formats aren't thread safe */
+    transient ThreadLocal<SimpleDateFormat> parseFormats;
+
     /**
      * Constructor with defaults, <tt>forceGmt</tt> set to <tt>true</tt> and <tt>strict</tt>
      * set to <tt>false</tt>. 
@@ -60,6 +63,21 @@ public class DatePattern implements java.io.Serializable {
         return dateFormat;
     }
 
+    /**
+     * Returns the date format of the calling thread, created once and reused by each thread.
+     */
+    SimpleDateFormat parseFormat() {
+        if (parseFormats == null) {
+            parseFormats = new ThreadLocal<SimpleDateFormat>() {
+                @Override
+                protected SimpleDateFormat initialValue() {
+                    return dateFormat();
+                }
+            };
+        }
+        return parseFormats.get();
+    }
+
     public String getRegex() {
         return regex;
     }
@@ -106,7 +124,7 @@ public class DatePattern implements java.io.Serializable {
          * ensure that the whole string is correct for the format.
          */
         ParsePosition pos = new ParsePosition(0);
-        Date p = dateFormat().parse(str, pos);
+        Date p = parseFormat().parse(str, pos);
         if (p != null && pos.getIndex() == str.length()) {
             return p;
         }
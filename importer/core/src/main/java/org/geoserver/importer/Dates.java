@@ -11,6 +11,7 @@ import java.util.regex.Pattern;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.Collections2;
+import com.google.common.collect.ImmutableList;
 
 /**
  * Utility class for parsing/encoding dates.
@@ -33,6 +34,15 @@ public class Dates {
         dp("yyyy", "\\d{4}")
     ); 
 
+    /** patterns that can be parsed without matching the regular expression first */
+    static List<DatePattern> NON_STRICT_PATTERNS = ImmutableList.copyOf(Collections2.filter(
+        PATTERNS, new Predicate<DatePattern>() {
+            @Override
+            public boolean apply(DatePattern input) {
+                return !input.isStrict();
+            }
+        }));
+
     /**
      * Returns list of all patterns, optionally filtering out ones that require a strict
      * match.
@@ -41,16 +51,7 @@ public class Dates {
      * pattern match and a date parse) are filtered out.
      */
     public static Collection<DatePattern> patterns(boolean strict) {
-        Collection<DatePattern> patterns = PATTERNS;
-        if (!strict) {
-            patterns = Collections2.filter(patterns, new Predicate<DatePattern>() {
-                @Override
-                public boolean apply(DatePattern input) {
-                    return !input.isStrict();
-                }
-            });
-        }
-        return patterns;
+        return strict ? PATTERNS : NON_STRICT_PATTERNS;
     }
 
     public static final TimeZone UTC_TZ = TimeZone.getTimeZone("UTC");
@@ -90,7 +91,7 @@ public class Dates {
         if (m.matches()) {
             String match = m.group(1);
             try {
-                Date parsed = dp.dateFormat().parse(match);
+                Date parsed = dp.parseFormat().parse(match);
                 if (parsed != null) {
                     return parsed;
                 }
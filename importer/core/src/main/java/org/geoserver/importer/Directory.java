@@ -1,22 +1,33 @@
 package org.geoserver.importer;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.NoSuchElementException;
+import java.util.Queue;
 import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.zip.ZipOutputStream;
+import java.util.zip.Deflater;
 
 import org.apache.commons.fileupload.FileItem;
 import org.apache.commons.io.FilenameUtils;
@@ -44,6 +55,11 @@ public class Directory extends FileData {
     boolean recursive;
     String name;
 
+    /**
+     * sub directories prepared while being extracted, by file, picked up by the next prepare
+     */
+    transient Map<File,Future<Directory>> prescanned;
+
     public Directory(File file) {
         this(file, true);
     }
@@ -86,9 +102,36 @@ public class Directory extends FileData {
     public void unpack(File file) throws IOException {
         //if the file is an archive, unpack it
         VFSWorker vfs = new VFSWorker();
-        if (vfs.canHandle(file)) {
+        if (vfs.canHandle(file) && !VFSWorker.isKMZ(file)) {
             LOGGER.fine("unpacking " + file.getAbsolutePath() + " to " + this.file.getAbsolutePath());
-            vfs.extractTo(file, this.file);
+            if (recursive) {
+                //scan the directories of the archive as they are extracted
+                Prescan prescan = new Prescan(
+                    Math.max(1, Importer.intProperty("org.geoserver.importer.scanThreads", 1)));
+                boolean streamed = false;
+                try {
+                    streamed = vfs.extractTo(file, this.file, prescan);
+                }
+                finally {
+                    prescan.dispose();
+
+                    if (streamed) {
+                        if (prescanned == null) {
+                            prescanned = new ConcurrentHashMap<File, Future<Directory>>();
+                        }
+                        //directories written into by this archive have to be scanned again
+                        prescanned.keySet().removeAll(prescan.written);
+                        prescanned.putAll(prescan.prepared);
+                    }
+                    else {
+                        //no telling what was written
+                        prescanned = null;
+                    }
+                }
+            }
+            else {
+                vfs.extractTo(file, this.file);
+            }
 
             LOGGER.fine("deleting " + file.getAbsolutePath());
             file.delete();
@@ -119,109 +162,132 @@ public class Directory extends FileData {
 
     @Override
     public void prepare(ProgressMonitor m) throws IOException {
-        files = new ArrayList<FileData>();
+        int threads = recursive ? Importer.intProperty("org.geoserver.importer.scanThreads", 1) : 1;
+        Scan scan = new Scan(threads);
+        scan.prescanned = prescanned;
+        try {
+            scan.prepared.add(this);
+            prepare(m, scan);
+            scan.await();
+        }
+        finally {
+            scan.dispose();
+            prescanned = null;
+        }
+    }
 
-        //recursively search for spatial files, maintain a queue of directories to recurse into
-        LinkedList<File> q = new LinkedList<File>();
-        q.add(file);
+    /**
+     * Prepares this directory as part of a scan, sub directories are handed back to the scan.
+     */
+    void prepare(ProgressMonitor m, Scan scan) throws IOException {
+        files = new ArrayList<FileData>();
 
-        while(!q.isEmpty()) {
-            File dir = q.poll();
+        if (m.isCanceled()){
+            return;
+        }
+        m.setTask("Scanning " + file.getPath());
 
-            if (m.isCanceled()){
-                return;
+        //list the directory once, keeping the regular files by name for grouping related files
+        File[] listing = file.listFiles();
+        if (listing == null) {
+            throw new IOException("Unable to list files in " + file.getPath());
+        }
+        NavigableMap<String,File> siblings = new TreeMap<String, File>();
+        boolean[] isDir = new boolean[listing.length];
+        for (int i = 0; i < listing.length; i++) {
+            isDir[i] = listing[i].isDirectory();
+            if (!isDir[i]) {
+                siblings.put(listing[i].getName(), listing[i]);
             }
-            m.setTask("Scanning " + dir.getPath());
-
-            //get all the regular (non directory) files
-            Set<File> all = new LinkedHashSet<File>(Arrays.asList(dir.listFiles(new FilenameFilter() {
-                public boolean accept(File dir, String name) {
-                    return !new File(dir, name).isDirectory();
-                }
-            })));
+        }
 
-            //scan all the files looking for spatial ones
-            for (File f : dir.listFiles()) {
-                if (f.isHidden()) {
-                    all.remove(f);
+        //results in listing order, spatial files and sub directories first
+        FileData[] found = new FileData[listing.length];
+        Set<File> claimed = new HashSet<File>();
+
+        //scan all the files looking for spatial ones, files with extensions that have not 
+        // resolved to a format so far are left for last since they are usually part of a 
+        // spatial file found in the meantime
+        List<Integer> deferred = new ArrayList<Integer>();
+        for (int i = 0; i < listing.length; i++) {
+            File f = listing[i];
+            if (f.isHidden()) {
+                claimed.add(f);
+                continue;
+            }
+            if (isDir[i]) {
+                if (!recursive) {
+                    //skip it
                     continue;
                 }
-                if (f.isDirectory()) {
-                    if (!recursive && !f.equals(file)) {
-                        //skip it
-                        continue;
+                // @hacky - ignore __MACOSX
+                // this could probably be dealt with in a better way elsewhere
+                // like by having Directory ignore the contents since they
+                // are all hidden files anyway
+                if (!"__MACOSX".equals(f.getName())) {
+                    Directory d = scan.prescanned(f);
+                    if (d == null) {
+                        d = new Directory(f);
+                        scan.prepare(d, m);
                     }
-                    // @hacky - ignore __MACOSX
-                    // this could probably be dealt with in a better way elsewhere
-                    // like by having Directory ignore the contents since they
-                    // are all hidden files anyway
-                    if (!"__MACOSX".equals(f.getName())) {
-                        Directory d = new Directory(f);
-                        d.prepare(m);
-
-                        files.add(d);
-                    }
-                    //q.push(f);
-                    continue;
-                }
 
-                //special case for .aux files, they are metadata but get picked up as readable 
-                // by the erdas imagine reader...just ignore them for now 
-                if ("aux".equalsIgnoreCase(FilenameUtils.getExtension(f.getName()))) {
-                    continue;
+                    found[i] = d;
                 }
+                continue;
+            }
 
-                //determine if this is a spatial format or not
-                DataFormat format = DataFormat.lookup(f);
+            //special case for .aux files, they are metadata but get picked up as readable 
+            // by the erdas imagine reader...just ignore them for now 
+            if ("aux".equalsIgnoreCase(FilenameUtils.getExtension(f.getName()))) {
+                continue;
+            }
 
-                if (format != null) {
-                    SpatialFile sf = newSpatialFile(f, format);
-                    
-                    //gather up the related files
-                    sf.prepare(m);
+            if (scan.formats.isUnresolved(f)) {
+                deferred.add(i);
+                continue;
+            }
+            found[i] = spatialFile(f, m, scan, siblings, claimed);
+        }
 
-                    files.add(sf);
+        for (int i : deferred) {
+            if (m.isCanceled()) {
+                return;
+            }
+            if (!claimed.contains(listing[i])) {
+                found[i] = spatialFile(listing[i], m, scan, siblings, claimed);
+            }
+        }
 
-                    all.removeAll(sf.allFiles());
-                }
+        for (FileData fd : found) {
+            if (fd != null) {
+                files.add(fd);
             }
+        }
 
-            //take any left overs and add them as unspatial/unrecognized
-            for (File f : all) {
-                files.add(new ASpatialFile(f));
+        //take any left overs and add them as unspatial/unrecognized
+        for (int i = 0; i < listing.length; i++) {
+            if (!isDir[i] && !claimed.contains(listing[i])) {
+                files.add(new ASpatialFile(listing[i]));
             }
         }
+    }
 
-        format = format();
-//        //process ignored for files that should be grouped with the spatial files
-//        for (DataFile df : files) {
-//            SpatialFile sf = (SpatialFile) df;
-//            String base = FilenameUtils.getBaseName(sf.getFile().getName());
-//            for (Iterator<File> i = ignored.iterator(); i.hasNext(); ) {
-//                File f = i.next();
-//                if (base.equals(FilenameUtils.getBaseName(f.getName()))) {
-//                    //.prj file?
-//                    if ("prj".equalsIgnoreCase(FilenameUtils.getExtension(f.getName()))) {
-//                        sf.setPrjFile(f);
-//                    }
-//                    else {
-//                        sf.getSuppFiles().add(f);
-//                    }
-//                    i.remove();
-//                }
-//            }
-//        }
-//        
-//        //take any left overs and add them as unspatial/unrecognized
-//        for (File f : ignored) {
-//            files.add(new ASpatialFile(f));
-//        }
-//        
-//        return files;
-//        
-//        for (DataFile f : files()) {
-//            f.prepare();
-//        }
+    SpatialFile spatialFile(File f, ProgressMonitor m, Scan scan, 
+        NavigableMap<String,File> siblings, Set<File> claimed) throws IOException {
+
+        //determine if this is a spatial format or not
+        DataFormat format = scan.formats.lookup(f);
+        if (format == null) {
+            return null;
+        }
+
+        SpatialFile sf = newSpatialFile(f, format);
+        
+        //gather up the related files
+        sf.prepare(m, siblings);
+
+        claimed.addAll(sf.allFiles());
+        return sf;
     }
 
     /**
@@ -394,6 +460,13 @@ public class Directory extends FileData {
     }
     
     public void archive(File output) throws IOException {
+        archive(output, new ZipArchiver(Deflater.DEFAULT_COMPRESSION, 1));
+    }
+
+    /**
+     * Zips up the contents of the directory with the specified archiver and cleans it up.
+     */
+    void archive(File output, ZipArchiver archiver) throws IOException {
         File archiveDir = output.getAbsoluteFile().getParentFile();
         String outputName = output.getName().replace(".zip","");
         int id = 0;
@@ -401,31 +474,17 @@ public class Directory extends FileData {
             output = new File(archiveDir, outputName + id + ".zip");
             id++;
         }
-        ZipOutputStream zout = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
-        Exception error = null;
 
-        // don't call zout.close in finally block, if an error occurs and the zip
-        // file is empty by chance, the second error will mask the first
         try {
-            IOUtils.zipDirectory(file, zout, null);
+            archiver.archive(file, output);
         } catch (Exception ex) {
-            error = ex;
-            try {
-                zout.close();
-            } catch (Exception ex2) {
-                // nothing, we're totally aborting
-            }
             output.delete();
             if (ex instanceof IOException) throw (IOException) ex;
             throw (IOException) new IOException("Error archiving").initCause(ex);
-        } 
-        
-        // if we get here, the zip is properly written
-        try {
-            zout.close();
-        } finally {
-            cleanup();
         }
+
+        // if we get here, the zip is properly written
+        cleanup();
     }
 
     @Override
@@ -483,4 +542,170 @@ public class Directory extends FileData {
             format = format();
         }
     }
+
+    /**
+     * State shared by the directories prepared in a single scan: the formats resolved so far
+     * and, for large trees, the executor preparing sub directories in parallel.
+     */
+    static class Scan {
+
+        FormatIndex formats = new FormatIndex();
+
+        ExecutorService executor;
+
+        /** sub directory preparations in flight */
+        Queue<Future<?>> pending = new ConcurrentLinkedQueue<Future<?>>();
+
+        /** every directory prepared, parents before their children */
+        Queue<Directory> prepared = new ConcurrentLinkedQueue<Directory>();
+
+        /** directories already prepared while being extracted, by file */
+        Map<File,Future<Directory>> prescanned;
+
+        Scan(int threads) {
+            if (threads > 1) {
+                executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                    AtomicInteger seq = new AtomicInteger();
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r, "importer-scan-" + seq.getAndIncrement());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+            }
+        }
+
+        /**
+         * Prepares a sub directory, in the background if the scan is parallel.
+         */
+        void prepare(final Directory d, final ProgressMonitor m) throws IOException {
+            prepared.add(d);
+            if (executor == null) {
+                d.prepare(m, this);
+                return;
+            }
+            pending.add(executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    d.prepare(m, Scan.this);
+                    return null;
+                }
+            }));
+        }
+
+        /**
+         * The directory prepared while being extracted, or null if it has to be prepared.
+         */
+        Directory prescanned(File f) {
+            Future<Directory> future = prescanned != null ? prescanned.get(f) : null;
+            if (future == null) {
+                return null;
+            }
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException e) {
+                LOGGER.log(Level.FINE, "Error scanning " + f.getPath() + " during extraction", 
+                    e.getCause());
+                return null;
+            }
+        }
+
+        /**
+         * Waits for all directories to be prepared, then works out the format of each, children
+         * first since the format of a directory depends on the format of its sub directories.
+         */
+        void await() throws IOException {
+            Future<?> f;
+            while ((f = pending.poll()) != null) {
+                try {
+                    f.get();
+                } catch (InterruptedException e) {
+                    throw (IOException) new IOException("Interrupted scanning files").initCause(e);
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw (IOException) new IOException("Error scanning files").initCause(cause);
+                }
+            }
+
+            List<Directory> dirs = new ArrayList<Directory>(prepared);
+            for (int i = dirs.size() - 1; i >= 0; i--) {
+                Directory d = dirs.get(i);
+                d.format = d.format();
+            }
+        }
+
+        void dispose() {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Prepares the directories of an archive in the background as the extraction completes
+     * them, so that scanning overlaps with extraction. Sub directories are completed before their
+     * parents, so a parent picks up the sub directories already prepared.
+     */
+    static class Prescan implements ArchiveExtractor.Listener {
+
+        ExecutorService executor;
+
+        /** shared by the directories prepared, like the directories of a single scan */
+        FormatIndex formats = new FormatIndex();
+
+        /** directories created by the extraction and prepared, by file */
+        ConcurrentMap<File,Future<Directory>> prepared = 
+            new ConcurrentHashMap<File, Future<Directory>>();
+
+        /** every directory the extraction wrote into */
+        Set<File> written = Collections.newSetFromMap(new ConcurrentHashMap<File, Boolean>());
+
+        Prescan(int threads) {
+            executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                AtomicInteger seq = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "importer-prescan-" + seq.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+
+        @Override
+        public void extracted(final File dir, boolean created) {
+            written.add(dir);
+            if (!created) {
+                //may hold files from before, leave it to a regular scan
+                return;
+            }
+            prepared.put(dir, executor.submit(new Callable<Directory>() {
+                @Override
+                public Directory call() throws Exception {
+                    Directory d = new Directory(dir);
+                    Scan scan = new Scan(1);
+                    scan.formats = formats;
+                    scan.prescanned = prepared;
+                    scan.prepared.add(d);
+                    d.prepare(new ProgressMonitor(), scan);
+                    scan.await();
+                    return d;
+                }
+            }));
+        }
+
+        /**
+         * Lets the directories submitted so far finish in the background.
+         */
+        void dispose() {
+            executor.shutdown();
+        }
+    }
 }
@@ -7,6 +7,7 @@ import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.URLDecoder;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -24,6 +25,8 @@ import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.feature.type.GeometryDescriptor;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.vividsolutions.jts.geom.Geometry;
 
 /**
@@ -68,6 +71,13 @@ public class FeatureDataConverter {
      */
     static final Pattern UNSAFE_CHARS = Pattern.compile("(^[^a-zA-Z\\._]+)|([^a-zA-Z\\._0-9]+)");
 
+    /** attribute mappings by source and target feature type */
+    final Cache<List<SimpleFeatureType>,Mapping> mappings = 
+        CacheBuilder.newBuilder().maximumSize(100).build();
+
+    /** mapping used for the last feature converted */
+    volatile Mapping last;
+
     private FeatureDataConverter() {
     }
 
@@ -87,12 +97,46 @@ public class FeatureDataConverter {
     }
 
     public void convert(SimpleFeature from, SimpleFeature to) {
-        Set<String> fromAttrNames = attributeNames(from);
-        Set<String> toAttrNames = attributeNames(to);
-        Set<String> commonNames = new HashSet<String>(fromAttrNames);
-        commonNames.retainAll(toAttrNames);
-        for (String attrName : commonNames) {
-            to.setAttribute(convertAttributeName(attrName), from.getAttribute(attrName));
+        Mapping m = mapping(from.getFeatureType(), to.getFeatureType());
+        for (int i = 0; i < m.from.length; i++) {
+            to.setAttribute(m.to[i], from.getAttribute(m.from[i]));
+        }
+    }
+
+    /*
+     * looks up the mapping between two feature types, computing it the first time the types 
+     * are seen
+     */
+    Mapping mapping(SimpleFeatureType fromType, SimpleFeatureType toType) {
+        Mapping m = last;
+        if (m != null && m.fromType == fromType && m.toType == toType) {
+            return m;
+        }
+
+        //equal types share the same attribute indexes, so other tasks loading the same 
+        // schema reuse the mapping
+        List<SimpleFeatureType> key = Arrays.asList(fromType, toType);
+        m = mappings.getIfPresent(key);
+        if (m == null) {
+            m = new Mapping(fromType, toType);
+            createMapping(fromType, toType, m);
+            mappings.put(key, m);
+        }
+        last = m;
+        return m;
+    }
+
+    /**
+     * Maps the attributes of the source type to those of the target type, by adding a pair of 
+     * attribute indexes to the mapping for each attribute to copy over.
+     */
+    protected void createMapping(SimpleFeatureType fromType, SimpleFeatureType toType, 
+        Mapping mapping) {
+        for (int i = 0; i < fromType.getAttributeCount(); i++) {
+            String name = fromType.getDescriptor(i).getLocalName();
+            if (toType.indexOf(name) >= 0) {
+                mapping.add(i, toType.indexOf(convertAttributeName(name)));
+            }
         }
     }
 
@@ -119,6 +163,36 @@ public class FeatureDataConverter {
         return attrNames;
     }
 
+    /**
+     * Pairs of source and target attribute indexes to copy values between.
+     */
+    protected static class Mapping {
+        final SimpleFeatureType fromType;
+        final SimpleFeatureType toType;
+
+        int[] from = new int[0];
+        int[] to = new int[0];
+
+        Mapping(SimpleFeatureType fromType, SimpleFeatureType toType) {
+            this.fromType = fromType;
+            this.toType = toType;
+        }
+
+        /**
+         * Adds a pair of attributes to copy, target attributes missing from the type 
+         * (a negative index) are ignored.
+         */
+        public void add(int fromIndex, int toIndex) {
+            if (toIndex < 0) {
+                return;
+            }
+            from = Arrays.copyOf(from, from.length + 1);
+            to = Arrays.copyOf(to, to.length + 1);
+            from[from.length - 1] = fromIndex;
+            to[to.length - 1] = toIndex;
+        }
+    }
+
     public static FeatureDataConverter DEFAULT = new FeatureDataConverter();
 
     public static FeatureDataConverter TO_SHAPEFILE = new FeatureDataConverter() {
@@ -164,14 +238,18 @@ public class FeatureDataConverter {
         }
 
         @Override
-        public void convert(SimpleFeature from, SimpleFeature to) {
-            for (AttributeDescriptor att : from.getType().getAttributeDescriptors()) {
-                Object obj = from.getAttribute(att.getLocalName());
+        protected void createMapping(SimpleFeatureType fromType, SimpleFeatureType toType, 
+            Mapping mapping) {
+            GeometryDescriptor gd = toType.getGeometryDescriptor();
+            for (int i = 0; i < fromType.getAttributeCount(); i++) {
+                AttributeDescriptor att = fromType.getDescriptor(i);
                 if (att instanceof GeometryDescriptor) {
-                    to.setDefaultGeometry(obj);
+                    if (gd != null) {
+                        mapping.add(i, toType.indexOf(gd.getLocalName()));
+                    }
                 }
                 else {
-                    to.setAttribute(attName(att.getLocalName()), obj);
+                    mapping.add(i, toType.indexOf(attName(att.getLocalName())));
                 }
             }
         }
@@ -205,17 +283,17 @@ public class FeatureDataConverter {
     };
 
     public static final FeatureDataConverter TO_ORACLE = new FeatureDataConverter() {
-        public void convert(SimpleFeature from, SimpleFeature to) {
+        @Override
+        protected void createMapping(SimpleFeatureType fromType, SimpleFeatureType toType, 
+            Mapping mapping) {
             //for oracle the target names are always uppercase
-            Set<String> fromAttrNames = attributeNames(from);
-            Set<String> toAttrNames = attributeNames(to);
-            for (String name : fromAttrNames) {
-                String toName = name.toUpperCase();
-                if (toAttrNames.contains(toName)) {
-                    to.setAttribute(convertAttributeName(toName), from.getAttribute(name));
+            for (int i = 0; i < fromType.getAttributeCount(); i++) {
+                String toName = fromType.getDescriptor(i).getLocalName().toUpperCase();
+                if (toType.indexOf(toName) >= 0) {
+                    mapping.add(i, toType.indexOf(convertAttributeName(toName)));
                 }
             }
-        };
+        }
 
         public SimpleFeatureType convertType(SimpleFeatureType featureType, VectorFormat format, 
             ImportData data, ImportTask task) {
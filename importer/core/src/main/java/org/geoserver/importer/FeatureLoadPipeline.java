@@ -0,0 +1,234 @@
+package org.geoserver.importer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import org.geotools.data.FeatureReader;
+import org.geotools.util.logging.Logging;
+import org.geoserver.importer.job.ProgressMonitor;
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * Staged pipeline used to load features during an indirect import.
+ * <p>
+ * The pipeline is made up of three stages connected by bounded queues:
+ * <ol>
+ *   <li>a reader stage that pulls features from the source in batches</li>
+ *   <li>a number of worker threads that convert and transform each batch</li>
+ *   <li>a writer stage, run on the calling thread, that hands converted batches to a
+ *   {@link Sink}</li>
+ * </ol>
+ * The number of batches in flight is capped so memory use does not depend on the size of the
+ * source. When ordering is enabled batches are handed to the sink in the order they were read,
+ * otherwise in the order they complete.
+ * </p>
+ * <p>
+ * A pipeline created with zero threads runs every stage one feature at a time on the calling 
+ * thread.
+ * </p>
+ */
+class FeatureLoadPipeline {
+
+    static Logger LOGGER = Logging.getLogger(FeatureLoadPipeline.class);
+
+    /**
+     * Converts a source feature into a target feature, run on worker threads.
+     */
+    static interface Converter {
+        /**
+         * @return the converted feature, or <code>null</code> to skip the feature
+         */
+        SimpleFeature convert(SimpleFeature feature) throws Exception;
+    }
+
+    /**
+     * Receives converted features, always called from the thread that runs the pipeline.
+     */
+    static interface Sink {
+        /**
+         * @param feature the converted feature, <code>null</code> if the feature was skipped
+         */
+        void write(SimpleFeature feature) throws Exception;
+    }
+
+    /** marker signalling a worker has no more batches to process */
+    static final Batch DONE = new Batch(-1, null);
+
+    int threads;
+    int batchSize;
+    boolean ordered;
+
+    FeatureLoadPipeline(int threads, int batchSize, boolean ordered) {
+        this.threads = Math.max(0, threads);
+        this.batchSize = Math.max(1, batchSize);
+        this.ordered = ordered;
+    }
+
+    /**
+     * Runs the pipeline to completion, or until the monitor is canceled.
+     * <p>
+     * Any exception thrown by the reader, a converter or the sink stops the pipeline and is
+     * rethrown from this method, leaving rollback up to the caller.
+     * </p>
+     */
+    void run(final FeatureReader reader, final Converter converter, Sink sink,
+        final ProgressMonitor monitor) throws Exception {
+
+        if (threads == 0) {
+            while (reader.hasNext() && !monitor.isCanceled()) {
+                sink.write(converter.convert((SimpleFeature) reader.next()));
+            }
+            return;
+        }
+
+        final int capacity = threads * 2;
+        final BlockingQueue<Batch> input = new ArrayBlockingQueue<Batch>(capacity);
+        final BlockingQueue<Batch> output = new ArrayBlockingQueue<Batch>(capacity + threads);
+        final Semaphore inFlight = new Semaphore(capacity);
+        final AtomicReference<Exception> error = new AtomicReference<Exception>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1, new ThreadFactory() {
+            AtomicInteger seq = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "importer-load-" + seq.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try {
+            // reader stage
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        long seq = 0;
+                        while (reader.hasNext() && !monitor.isCanceled()) {
+                            List<SimpleFeature> features = new ArrayList<SimpleFeature>(batchSize);
+                            while (features.size() < batchSize && reader.hasNext()) {
+                                features.add((SimpleFeature) reader.next());
+                            }
+                            inFlight.acquire();
+                            input.put(new Batch(seq++, features));
+                        }
+                    }
+                    catch(InterruptedException e) {
+                        // pipeline shut down
+                        return;
+                    }
+                    catch(Exception e) {
+                        error.compareAndSet(null, e);
+                    }
+
+                    // signal end of input to each worker
+                    try {
+                        for (int i = 0; i < threads; i++) {
+                            input.put(DONE);
+                        }
+                    }
+                    catch(InterruptedException e) {
+                    }
+                }
+            });
+
+            // worker stage
+            for (int i = 0; i < threads; i++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            Batch batch;
+                            while ((batch = input.take()) != DONE) {
+                                if (error.get() == null && !monitor.isCanceled()) {
+                                    List<SimpleFeature> features = batch.features;
+                                    for (int j = 0; j < features.size(); j++) {
+                                        features.set(j, converter.convert(features.get(j)));
+                                    }
+                                }
+                                output.put(batch);
+                            }
+                            output.put(DONE);
+                        }
+                        catch(InterruptedException e) {
+                            return;
+                        }
+                        catch(Exception e) {
+                            error.compareAndSet(null, e);
+                            output.offer(DONE);
+                        }
+                    }
+                });
+            }
+
+            // writer stage
+            Map<Long,Batch> pending = new HashMap<Long,Batch>();
+            long next = 0;
+            int done = 0;
+            while (done < threads) {
+                Batch batch = output.poll(1, TimeUnit.SECONDS);
+                if (error.get() != null) {
+                    throw error.get();
+                }
+                if (monitor.isCanceled()) {
+                    break;
+                }
+                if (batch == null) {
+                    continue;
+                }
+                if (batch == DONE) {
+                    done++;
+                    continue;
+                }
+
+                if (!ordered) {
+                    write(batch, sink, inFlight);
+                    continue;
+                }
+
+                pending.put(batch.seq, batch);
+                while ((batch = pending.remove(next)) != null) {
+                    write(batch, sink, inFlight);
+                    next++;
+                }
+            }
+            if (error.get() != null) {
+                throw error.get();
+            }
+        }
+        finally {
+            executor.shutdownNow();
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                LOGGER.warning("Timed out waiting for load pipeline threads to terminate");
+            }
+        }
+    }
+
+    void write(Batch batch, Sink sink, Semaphore inFlight) throws Exception {
+        for (SimpleFeature f : batch.features) {
+            sink.write(f);
+        }
+        inFlight.release();
+    }
+
+    static class Batch {
+        final long seq;
+        final List<SimpleFeature> features;
+
+        Batch(long seq, List<SimpleFeature> features) {
+            this.seq = seq;
+            this.features = features;
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package org.geoserver.importer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.geoserver.importer.jdbc.BulkLoader;
+import org.geotools.data.DataStore;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.FeatureReader;
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Query;
+import org.geotools.data.Transaction;
+import org.geotools.data.simple.SimpleFeatureStore;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.util.Converters;
+import org.geotools.util.Utilities;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.identity.FeatureId;
+
+/**
+ * Merges features into an existing feature type by the value of key attributes, updating the
+ * target features with matching keys and inserting the others.
+ * <p>
+ * Features are buffered and merged a batch at a time: a single feature writer, filtered on the
+ * keys of the batch, visits the matching target features and rewrites those whose attributes
+ * differ, and the features left unmatched are added in one call. Unchanged features cost no
+ * write at all, so a load scales with the amount of data that changed rather than with the size
+ * of the target. When a bulk upsert loader is available, see
+ * {@link BulkLoader#createUpsert(org.geotools.jdbc.JDBCDataStore, String, List, Transaction, int)},
+ * the merge is left to the database instead.
+ * </p>
+ * <p>
+ * Features without a value for each key can't be matched and are rejected. When tracking keys,
+ * the keys of all the features merged are remembered, in memory, so that
+ * {@link #deleteMissing()} can remove the target features the data no longer contains.
+ * </p>
+ */
+public class FeatureUpdater {
+
+    static FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
+
+    DataStore dataStore;
+    String typeName;
+    Transaction transaction;
+    int batchSize;
+
+    SimpleFeatureType featureType;
+    SimpleFeatureStore store;
+
+    List<String> keys;
+    Class[] keyBindings;
+
+    /** bulk loader doing the merge, if any */
+    BulkLoader upsert;
+
+    /** features of the current batch, by key */
+    Map<List<Object>,SimpleFeature> pending = new LinkedHashMap<List<Object>, SimpleFeature>();
+
+    /** keys of all the features merged, when tracking keys */
+    Set<List<Object>> seen;
+
+    int updated, inserted;
+
+    public FeatureUpdater(DataStore dataStore, String typeName, List<String> keys,
+        Transaction transaction, int batchSize) throws IOException {
+        if (keys == null || keys.isEmpty()) {
+            throw new IllegalArgumentException("No key attributes specified to update " + typeName);
+        }
+        this.dataStore = dataStore;
+        this.typeName = typeName;
+        this.transaction = transaction;
+        this.batchSize = Math.max(1, batchSize);
+        this.keys = new ArrayList<String>(keys);
+
+        featureType = dataStore.getSchema(typeName);
+        keyBindings = new Class[keys.size()];
+        for (int i = 0; i < keyBindings.length; i++) {
+            AttributeDescriptor att = featureType.getDescriptor(keys.get(i));
+            if (att == null) {
+                throw new IllegalArgumentException("Key attribute " + keys.get(i)
+                    + " not found in " + typeName);
+            }
+            keyBindings[i] = att.getType().getBinding();
+        }
+
+        store = (SimpleFeatureStore) dataStore.getFeatureSource(typeName);
+        store.setTransaction(transaction);
+    }
+
+    public SimpleFeatureType getFeatureType() {
+        return featureType;
+    }
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    /**
+     * Sets the bulk loader merging the features, instead of this updater.
+     */
+    public void setUpsertLoader(BulkLoader upsert) {
+        this.upsert = upsert;
+    }
+
+    /**
+     * Remembers the keys of the features merged, required by {@link #deleteMissing()}.
+     */
+    public void setTrackKeys(boolean trackKeys) {
+        seen = trackKeys ? new HashSet<List<Object>>() : null;
+    }
+
+    /**
+     * Number of target features rewritten, not counting those merged by a bulk loader.
+     */
+    public int getUpdated() {
+        return updated;
+    }
+
+    /**
+     * Number of features added to the target, not counting those merged by a bulk loader.
+     */
+    public int getInserted() {
+        return inserted;
+    }
+
+    /**
+     * Whether the feature has a value for every key attribute.
+     */
+    public boolean hasKey(SimpleFeature feature) {
+        return key(feature) != null;
+    }
+
+    /**
+     * Adds a feature to the merge, merging the current batch once it is full.
+     */
+    public void add(SimpleFeature feature) throws IOException {
+        List<Object> key = key(feature);
+        if (key == null) {
+            throw new IllegalArgumentException("Feature " + feature.getID()
+                + " has no value for key " + keys);
+        }
+        if (seen != null) {
+            seen.add(key);
+        }
+
+        if (upsert != null) {
+            upsert.add(feature);
+            return;
+        }
+        // later features win over earlier ones with the same key
+        pending.put(key, feature);
+        if (pending.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Merges any buffered features.
+     */
+    public void flush() throws IOException {
+        if (upsert != null) {
+            upsert.flush();
+            return;
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            merge();
+        }
+        finally {
+            pending.clear();
+        }
+    }
+
+    void merge() throws IOException {
+        Set<List<Object>> matched = new HashSet<List<Object>>();
+        FeatureWriter<SimpleFeatureType, SimpleFeature> writer =
+            dataStore.getFeatureWriter(typeName, filter(pending.keySet()), transaction);
+        try {
+            while (writer.hasNext()) {
+                SimpleFeature target = writer.next();
+                List<Object> key = key(target);
+                SimpleFeature feature = key != null ? pending.get(key) : null;
+                if (feature == null) {
+                    continue;
+                }
+                matched.add(key);
+                if (copy(feature, target)) {
+                    writer.write();
+                    updated++;
+                }
+            }
+        }
+        finally {
+            writer.close();
+        }
+
+        List<SimpleFeature> inserts = new ArrayList<SimpleFeature>();
+        for (Map.Entry<List<Object>,SimpleFeature> e : pending.entrySet()) {
+            if (!matched.contains(e.getKey())) {
+                inserts.add(e.getValue());
+            }
+        }
+        if (!inserts.isEmpty()) {
+            store.addFeatures(DataUtilities.collection(inserts));
+            inserted += inserts.size();
+        }
+    }
+
+    /**
+     * Removes the target features whose key is not among the keys of the features merged.
+     *
+     * @return the number of features removed
+     */
+    public int deleteMissing() throws IOException {
+        if (seen == null) {
+            throw new IllegalStateException("Keys of the merged features were not tracked");
+        }
+        flush();
+
+        Set<FeatureId> missing = new LinkedHashSet<FeatureId>();
+        Query query = new Query(typeName, Filter.INCLUDE, keys.toArray(new String[keys.size()]));
+        FeatureReader<SimpleFeatureType, SimpleFeature> reader =
+            dataStore.getFeatureReader(query, transaction);
+        try {
+            while (reader.hasNext()) {
+                SimpleFeature f = reader.next();
+                List<Object> key = key(f);
+                if (key == null || !seen.contains(key)) {
+                    missing.add(FF.featureId(f.getID()));
+                }
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        List<FeatureId> batch = new ArrayList<FeatureId>(batchSize);
+        for (FeatureId fid : missing) {
+            batch.add(fid);
+            if (batch.size() >= batchSize) {
+                store.removeFeatures(FF.id(new HashSet<FeatureId>(batch)));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            store.removeFeatures(FF.id(new HashSet<FeatureId>(batch)));
+        }
+        return missing.size();
+    }
+
+    /*
+     * key values of the feature converted to the key bindings, or null if any is missing
+     */
+    List<Object> key(SimpleFeature feature) {
+        Object[] key = new Object[keyBindings.length];
+        for (int i = 0; i < key.length; i++) {
+            Object value = convert(feature.getAttribute(keys.get(i)), keyBindings[i]);
+            if (value == null) {
+                return null;
+            }
+            key[i] = value;
+        }
+        return Arrays.asList(key);
+    }
+
+    Filter filter(Collection<List<Object>> keySet) {
+        List<Filter> filters = new ArrayList<Filter>(keySet.size());
+        for (List<Object> key : keySet) {
+            List<Filter> equals = new ArrayList<Filter>(key.size());
+            for (int i = 0; i < key.size(); i++) {
+                equals.add(FF.equals(FF.property(keys.get(i)), FF.literal(key.get(i))));
+            }
+            filters.add(equals.size() == 1 ? equals.get(0) : FF.and(equals));
+        }
+        return filters.size() == 1 ? filters.get(0) : FF.or(filters);
+    }
+
+    /*
+     * copies the attributes of the feature over the target, returning whether anything changed
+     */
+    boolean copy(SimpleFeature feature, SimpleFeature target) {
+        boolean changed = false;
+        List<AttributeDescriptor> atts = featureType.getAttributeDescriptors();
+        for (int i = 0; i < atts.size(); i++) {
+            AttributeDescriptor att = atts.get(i);
+            Object value = convert(feature.getAttribute(att.getLocalName()),
+                att.getType().getBinding());
+            if (!Utilities.deepEquals(value, target.getAttribute(i))) {
+                target.setAttribute(i, value);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    Object convert(Object value, Class binding) {
+        if (value == null || binding.isInstance(value)) {
+            return value;
+        }
+        Object converted = Converters.convert(value, binding);
+        return converted != null ? converted : value;
+    }
+}
@@ -34,7 +34,7 @@ public class FileData extends ImportData {
             return new Directory(file);
         }
 
-        if (new VFSWorker().canHandle(file)) {
+        if (new VFSWorker().canHandle(file) && !VFSWorker.isKMZ(file)) {
             return new Archive(file);
         }
 
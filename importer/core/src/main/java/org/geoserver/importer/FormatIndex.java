@@ -0,0 +1,98 @@
+package org.geoserver.importer;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.commons.io.FilenameUtils;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Resolves the format of files during a directory scan, remembering the format found for each
+ * file extension.
+ * <p>
+ * Once a file extension has been resolved, later files with the same extension are only checked
+ * against that format instead of being looked up among all of them. Formats matched from the
+ * extension alone, such as file based datastores, are not checked again at all. Files the
+ * remembered format can't read go through the full {@link DataFormat#lookup(File)}.
+ * </p>
+ */
+class FormatIndex {
+
+    static Logger LOGGER = Logging.getLogger(FormatIndex.class);
+
+    /** format resolved for each extension */
+    ConcurrentMap<String,Resolved> formats = new ConcurrentHashMap<String, Resolved>();
+
+    /** extensions that have failed to resolve to a format */
+    Set<String> unresolved = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    public DataFormat lookup(File file) {
+        String ext = extension(file);
+
+        Resolved resolved = formats.get(ext);
+        if (resolved != null) {
+            if (resolved.byExtension || canRead(resolved.format, file)) {
+                return resolved.format;
+            }
+        }
+
+        boolean byExtension = false;
+        DataFormat format = DataFormat.lookupExtension(file);
+        if (format == null) {
+            format = DataFormat.lookupDataStore(file);
+            byExtension = format != null;
+        }
+        if (format == null) {
+            format = DataFormat.lookupGrid(file);
+        }
+
+        if (format != null) {
+            formats.put(ext, new Resolved(format, byExtension));
+        }
+        else {
+            unresolved.add(ext);
+        }
+        return format;
+    }
+
+    /**
+     * Whether files with the extension of the specified file have only ever failed to resolve
+     * to a format.
+     */
+    public boolean isUnresolved(File file) {
+        String ext = extension(file);
+        return unresolved.contains(ext) && !formats.containsKey(ext);
+    }
+
+    boolean canRead(DataFormat format, File file) {
+        try {
+            return format.canRead(new FileData(file));
+        } catch (IOException e) {
+            LOGGER.log(Level.FINER, "Error checking if format " + format.getName()
+                + " can read file " + file.getPath(), e);
+            return false;
+        }
+    }
+
+    String extension(File file) {
+        return FilenameUtils.getExtension(file.getName());
+    }
+
+    static class Resolved {
+        final DataFormat format;
+
+        /** format was found from the file extension alone, without reading the file */
+        final boolean byExtension;
+
+        Resolved(DataFormat format, boolean byExtension) {
+            this.format = format;
+            this.byExtension = byExtension;
+        }
+    }
+}
@@ -30,6 +30,15 @@ public interface ImportStore {
 
     void add(ImportContext context);
 
+    /**
+     * Saves the context.
+     * <p>
+     * Stores may skip writing tasks whose change stamp did not move since they were last read, 
+     * so changes made through the getters of a task, e.g. <tt>task.getLayer().setName(...)</tt>
+     * or <tt>task.getTransform().add(...)</tt>, must be followed by {@link ImportTask#changed()}
+     * for them to be saved.
+     * </p>
+     */
     void save(ImportContext context);
 
     void remove(ImportContext importContext);
@@ -40,6 +49,20 @@ public interface ImportStore {
 
     Iterator<ImportContext> iterator(String sortBy);
 
+    /**
+     * Iterates over a page of imports in the specified order.
+     *
+     * @param sortBy the sort order, only "updated" (most recently updated first) is required
+     * @param offset number of imports to skip
+     * @param limit maximum number of imports to return, negative for no limit
+     */
+    Iterator<ImportContext> iterator(String sortBy, int offset, int limit);
+
+    /**
+     * The number of imports in the store.
+     */
+    int count();
+
     Iterator<ImportContext> allNonCompleteImports();
     
     Iterator<ImportContext> importsByUser(String user);
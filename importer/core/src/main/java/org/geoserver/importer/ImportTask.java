@@ -6,6 +6,7 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.LogRecord;
 
@@ -54,7 +55,7 @@ public class ImportTask implements Serializable {
     /** 
      * state
      */
-    State state = State.PENDING;
+    volatile State state = State.PENDING;
 
     /**
      * id generator for items
@@ -71,6 +72,17 @@ public class ImportTask implements Serializable {
      */
     UpdateMode updateMode;
 
+    /**
+     * attributes identifying the target features to update, when updateMode is UPDATE
+     */
+    List<String> updateKeys;
+
+    /**
+     * flag signalling that an update removes the target features missing from the data, null 
+     * when not specified
+     */
+    Boolean deleteMissing;
+
     /**
      * The original layer name assigned to the task
      */
@@ -91,6 +103,13 @@ public class ImportTask implements Serializable {
      */
     TransformChain transform;
 
+    /**
+     * resume checkpoint of a chunked load, the number of source features consumed and the number
+     * of features committed to the target
+     */
+    long checkpointOffset;
+    long checkpointCount;
+
     /**
      * messages logged during proessing
      */
@@ -107,6 +126,13 @@ public class ImportTask implements Serializable {
     transient volatile int totalToProcess;
     transient volatile int numberProcessed;
 
+    /**
+     * stamp of the last change, unique across all tasks so stores can skip writing tasks that
+     * did not change, zero for a task just read back
+     */
+    static final AtomicLong CHANGES = new AtomicLong();
+    transient volatile long changeStamp = CHANGES.incrementAndGet();
+
     public ImportTask() {
     }
 
@@ -136,10 +162,12 @@ public class ImportTask implements Serializable {
 
     public void setData(ImportData data) {
         this.data = data;
+        changed();
     }
 
     public void setStore(StoreInfo store) {
         this.store = store;
+        changed();
     }
 
     public StoreInfo getStore() {
@@ -152,6 +180,7 @@ public class ImportTask implements Serializable {
 
     public void setState(State state) {
         this.state = state;
+        changed();
     }
 
     public boolean isDirect() {
@@ -160,6 +189,7 @@ public class ImportTask implements Serializable {
 
     public void setDirect(boolean direct) {
         this.direct = direct;
+        changed();
     }
 
     public LayerInfo getLayer() {
@@ -168,6 +198,7 @@ public class ImportTask implements Serializable {
 
     public void setLayer(LayerInfo layer) {
         this.layer = layer;
+        changed();
     }
 
     public Exception getError() {
@@ -176,6 +207,7 @@ public class ImportTask implements Serializable {
 
     public void setError(Exception error) {
         this.error = error;
+        changed();
     }
 
     public TransformChain getTransform() {
@@ -184,6 +216,7 @@ public class ImportTask implements Serializable {
 
     public void setTransform(TransformChain transform) {
         this.transform = transform;
+        changed();
     }
 
     public Map<Object, Object> getMetadata() {
@@ -193,20 +226,22 @@ public class ImportTask implements Serializable {
         return metadata;
     }
     
-    public void clearMessages() {
+    public synchronized void clearMessages() {
         if (messages != null) {
             messages.clear();
         }
+        changed();
     }
 
-    public void addMessage(Level level,String msg) {
+    public synchronized void addMessage(Level level,String msg) {
         if (messages == null) {
             messages = new ArrayList<LogRecord>();
         }
         messages.add(new LogRecord(level, msg));
+        changed();
     }
     
-    public List<LogRecord> getMessages() {
+    public synchronized List<LogRecord> getMessages() {
         List<LogRecord> retval;
         if (messages == null) {
             retval = Collections.emptyList();
@@ -222,6 +257,7 @@ public class ImportTask implements Serializable {
 
     public void setOriginalLayerName(String originalLayerName) {
         this.originalLayerName = originalLayerName;
+        changed();
     }
     
     public int getNumberProcessed() {
@@ -240,12 +276,75 @@ public class ImportTask implements Serializable {
         this.totalToProcess = totalToProcess;
     }
 
+    public long getCheckpointOffset() {
+        return checkpointOffset;
+    }
+
+    public long getCheckpointCount() {
+        return checkpointCount;
+    }
+
+    public void setCheckpoint(long offset, long count) {
+        this.checkpointOffset = offset;
+        this.checkpointCount = count;
+        changed();
+    }
+
+    public void clearCheckpoint() {
+        setCheckpoint(0, 0);
+    }
+
+    public boolean hasCheckpoint() {
+        return checkpointOffset > 0;
+    }
+
     public UpdateMode getUpdateMode() {
         return updateMode;
     }
 
     public void setUpdateMode(UpdateMode updateMode) {
         this.updateMode = updateMode;
+        changed();
+    }
+
+    public List<String> getUpdateKeys() {
+        if (updateKeys == null) {
+            return Collections.emptyList();
+        }
+        return Collections.unmodifiableList(updateKeys);
+    }
+
+    public void setUpdateKeys(List<String> updateKeys) {
+        this.updateKeys = updateKeys != null ? new ArrayList<String>(updateKeys) : null;
+        changed();
+    }
+
+    public boolean isDeleteMissing() {
+        return Boolean.TRUE.equals(deleteMissing);
+    }
+
+    public Boolean getDeleteMissing() {
+        return deleteMissing;
+    }
+
+    public void setDeleteMissing(Boolean deleteMissing) {
+        this.deleteMissing = deleteMissing;
+        changed();
+    }
+
+    /**
+     * Marks the task as changed, for changes made other than through its setters such as to
+     * its layer.
+     */
+    public void changed() {
+        changeStamp = CHANGES.incrementAndGet();
+    }
+
+    /**
+     * Stamp of the last change to the task, zero if it did not change since it was read back.
+     */
+    public long getChangeStamp() {
+        return changeStamp;
     }
 
     public void reattach(Catalog catalog) {
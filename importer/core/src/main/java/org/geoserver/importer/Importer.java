@@ -15,13 +15,24 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.zip.Deflater;
 
 import org.geoserver.catalog.Catalog;
 import org.geoserver.catalog.CatalogBuilder;
@@ -42,6 +53,7 @@ import org.geoserver.config.util.XStreamPersisterFactory;
 import org.geoserver.platform.ContextLoadedEvent;
 import org.geoserver.platform.GeoServerExtensions;
 import org.geotools.data.DataStore;
+import org.geotools.data.DataUtilities;
 import org.geotools.data.DefaultTransaction;
 import org.geotools.data.FeatureReader;
 import org.geotools.data.FeatureStore;
@@ -57,6 +69,8 @@ import org.geotools.jdbc.JDBCDataStore;
 import org.geotools.referencing.CRS;
 import org.geotools.util.logging.Logging;
 import org.geoserver.importer.ImportTask.State;
+import org.geoserver.importer.jdbc.BulkLoader;
+import org.geoserver.importer.jdbc.StagingTable;
 import org.geoserver.importer.job.Job;
 import org.geoserver.importer.job.JobQueue;
 import org.geoserver.importer.job.ProgressMonitor;
@@ -99,11 +113,116 @@ public class Importer implements DisposableBean, ApplicationListener {
     /** job queue */
     JobQueue jobs = new JobQueue();
     
-    ConcurrentHashMap<Long,ImportTask> currentlyProcessing = new ConcurrentHashMap<Long, ImportTask>();
+    /** tasks being loaded, by context id, a context may have several tasks running at once */
+    ConcurrentHashMap<Long,Set<ImportTask>> currentlyProcessing = 
+        new ConcurrentHashMap<Long, Set<ImportTask>>();
+
+    /** lock guarding catalog and target store updates made by tasks running in parallel */
+    final Object catalogLock = new Object();
+
+    /** 
+     * maximum number of tasks of a single import run at once, 1 means tasks run one after the 
+     * other
+     */
+    int taskParallelism = 1;
+
+    /** 
+     * number of worker threads used to convert features during an indirect import, 0 means 
+     * features are loaded serially on the calling thread
+     */
+    int loadThreads = 0;
+
+    /** number of features handed between stages of the load pipeline at once */
+    int loadBatchSize = 1000;
+
+    /** flag controlling whether the load pipeline preserves the order of the source features */
+    boolean loadOrdered = true;
+
+    /** 
+     * flag controlling whether indirect imports into a database use bulk loading, COPY for 
+     * PostGIS and batched inserts otherwise 
+     */
+    boolean bulkLoad = false;
+
+    /**
+     * number of features after which an indirect import into a database commits and records a 
+     * resume checkpoint, 0 means the whole load runs in a single transaction
+     */
+    int commitInterval = 0;
+
+    /** 
+     * flag controlling whether replacing the content of a PostGIS table loads a staging table 
+     * swapped in place of the live one once complete, rather than emptying the live table
+     */
+    boolean stagedReplace = true;
+
+    /** flag controlling whether the indexes of a staging table are built after the load */
+    boolean deferIndexes = true;
+
+    /** deflate level of archived imports, 0 stores files without compression */
+    int archiveLevel = Deflater.DEFAULT_COMPRESSION;
+
+    /** number of threads compressing an archive */
+    int archiveThreads = Runtime.getRuntime().availableProcessors();
+
+    /** flag controlling whether completed imports are archived in the background */
+    boolean archiveAsync = true;
+
+    /** seconds to wait on shutdown for background archiving to complete */
+    int archiveShutdownTimeout = 60;
+
+    /** archiver of the background archive being written */
+    volatile ZipArchiver archiving;
+
+    /** runs background archiving, one archive at a time */
+    ExecutorService archiveExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "importer-archive");
+            t.setDaemon(true);
+            return t;
+        }
+    });
 
     public Importer(Catalog catalog) {
         this.catalog = catalog;
         this.styleGen = new StyleGenerator(catalog);
+
+        loadThreads = intProperty("org.geoserver.importer.loadThreads", loadThreads);
+        loadBatchSize = intProperty("org.geoserver.importer.loadBatchSize", loadBatchSize);
+        loadOrdered = booleanProperty("org.geoserver.importer.loadOrdered", loadOrdered);
+        bulkLoad = booleanProperty("org.geoserver.importer.bulkLoad", bulkLoad);
+        commitInterval = intProperty("org.geoserver.importer.commitInterval", commitInterval);
+        stagedReplace = booleanProperty("org.geoserver.importer.stagedReplace", stagedReplace);
+        deferIndexes = booleanProperty("org.geoserver.importer.deferIndexes", deferIndexes);
+        taskParallelism = intProperty("org.geoserver.importer.taskParallelism", taskParallelism);
+        archiveLevel = intProperty("org.geoserver.importer.archiveLevel", archiveLevel);
+        archiveThreads = intProperty("org.geoserver.importer.archiveThreads", archiveThreads);
+        archiveAsync = booleanProperty("org.geoserver.importer.archiveAsync", archiveAsync);
+        archiveShutdownTimeout = intProperty("org.geoserver.importer.archiveShutdownTimeout", 
+            archiveShutdownTimeout);
+
+        jobs.setMaxRunning(intProperty("org.geoserver.importer.maxJobs", jobs.getMaxRunning()));
+        jobs.setMaxRunningPerUser(intProperty("org.geoserver.importer.maxJobsPerUser", 0));
+        jobs.setMaxRunningPerStore(intProperty("org.geoserver.importer.maxJobsPerStore", 0));
+    }
+
+    static boolean booleanProperty(String name, boolean def) {
+        String value = GeoServerExtensions.getProperty(name);
+        return value != null ? Boolean.valueOf(value.trim()) : def;
+    }
+
+    static int intProperty(String name, int def) {
+        String value = GeoServerExtensions.getProperty(name);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            }
+            catch(NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + name + ": " + value);
+            }
+        }
+        return def;
     }
 
     ImportStore createContextStore() {
@@ -130,10 +249,17 @@ public class Importer implements DisposableBean, ApplicationListener {
         }
 
         if (store == null) {
-            store = new MemoryImportStore();
+            store = new MemoryImportStore(intProperty("org.geoserver.importer.memoryStoreCapacity",
+                MemoryImportStore.DEFAULT_CAPACITY));
         }
 
         LOGGER.info("Enabling import store: " + store.getName());
+
+        int delay = intProperty("org.geoserver.importer.storeWriteDelay", 0);
+        if (delay > 0) {
+            LOGGER.info("Delaying import store writes by " + delay + "ms");
+            store = new WriteBehindImportStore(store, delay);
+        }
         return store;
     }
 
@@ -142,7 +268,60 @@ public class Importer implements DisposableBean, ApplicationListener {
     }
 
     public ImportTask getCurrentlyProcessingTask(long contextId) {
-        return currentlyProcessing.get(new Long(contextId));
+        List<ImportTask> tasks = getCurrentlyProcessingTasks(contextId);
+        return tasks.isEmpty() ? null : tasks.get(0);
+    }
+
+    public ImportTask getCurrentlyProcessingTask(long contextId, long taskId) {
+        for (ImportTask task : getCurrentlyProcessingTasks(contextId)) {
+            if (task.getId() == taskId) {
+                return task;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The tasks of the specified import that are currently being loaded.
+     */
+    public List<ImportTask> getCurrentlyProcessingTasks(long contextId) {
+        synchronized (currentlyProcessing) {
+            Set<ImportTask> tasks = currentlyProcessing.get(contextId);
+            return tasks != null ? new ArrayList<ImportTask>(tasks) : 
+                Collections.<ImportTask>emptyList();
+        }
+    }
+
+    void processing(ImportTask task) {
+        synchronized (currentlyProcessing) {
+            Long id = task.getContext().getId();
+            Set<ImportTask> tasks = currentlyProcessing.get(id);
+            if (tasks == null) {
+                tasks = new HashSet<ImportTask>();
+                currentlyProcessing.put(id, tasks);
+            }
+            tasks.add(task);
+        }
+    }
+
+    void processed(ImportTask task) {
+        synchronized (currentlyProcessing) {
+            Long id = task.getContext().getId();
+            Set<ImportTask> tasks = currentlyProcessing.get(id);
+            if (tasks != null) {
+                tasks.remove(task);
+                if (tasks.isEmpty()) {
+                    currentlyProcessing.remove(id);
+                }
+            }
+        }
+    }
+
+    boolean isProcessing(ImportTask task) {
+        synchronized (currentlyProcessing) {
+            Set<ImportTask> tasks = currentlyProcessing.get(task.getContext().getId());
+            return tasks != null && tasks.contains(task);
+        }
     }
 
     @Override
@@ -158,6 +337,102 @@ public class Importer implements DisposableBean, ApplicationListener {
         return catalog;
     }
 
+    public int getLoadThreads() {
+        return loadThreads;
+    }
+
+    public void setLoadThreads(int loadThreads) {
+        this.loadThreads = loadThreads;
+    }
+
+    public int getLoadBatchSize() {
+        return loadBatchSize;
+    }
+
+    public void setLoadBatchSize(int loadBatchSize) {
+        this.loadBatchSize = loadBatchSize;
+    }
+
+    public boolean isLoadOrdered() {
+        return loadOrdered;
+    }
+
+    public void setLoadOrdered(boolean loadOrdered) {
+        this.loadOrdered = loadOrdered;
+    }
+
+    public boolean isBulkLoad() {
+        return bulkLoad;
+    }
+
+    public void setBulkLoad(boolean bulkLoad) {
+        this.bulkLoad = bulkLoad;
+    }
+
+    public int getCommitInterval() {
+        return commitInterval;
+    }
+
+    public void setCommitInterval(int commitInterval) {
+        this.commitInterval = commitInterval;
+    }
+
+    public boolean isStagedReplace() {
+        return stagedReplace;
+    }
+
+    public void setStagedReplace(boolean stagedReplace) {
+        this.stagedReplace = stagedReplace;
+    }
+
+    public boolean isDeferIndexes() {
+        return deferIndexes;
+    }
+
+    public void setDeferIndexes(boolean deferIndexes) {
+        this.deferIndexes = deferIndexes;
+    }
+
+    public int getTaskParallelism() {
+        return taskParallelism;
+    }
+
+    public void setTaskParallelism(int taskParallelism) {
+        this.taskParallelism = taskParallelism;
+    }
+
+    public int getArchiveLevel() {
+        return archiveLevel;
+    }
+
+    public void setArchiveLevel(int archiveLevel) {
+        this.archiveLevel = archiveLevel;
+    }
+
+    public int getArchiveThreads() {
+        return archiveThreads;
+    }
+
+    public void setArchiveThreads(int archiveThreads) {
+        this.archiveThreads = archiveThreads;
+    }
+
+    public boolean isArchiveAsync() {
+        return archiveAsync;
+    }
+
+    public void setArchiveAsync(boolean archiveAsync) {
+        this.archiveAsync = archiveAsync;
+    }
+
+    public int getArchiveShutdownTimeout() {
+        return archiveShutdownTimeout;
+    }
+
+    public void setArchiveShutdownTimeout(int archiveShutdownTimeout) {
+        this.archiveShutdownTimeout = archiveShutdownTimeout;
+    }
+
     public ImportContext getContext(long id) {
         ImportContext context = contextStore.get(id);
         return context != null ? reattach(context) : null;
@@ -225,6 +500,31 @@ public class Importer implements DisposableBean, ApplicationListener {
         }
     }
 
+    /**
+     * Returns a page of imports, most recently updated first.
+     * 
+     * @param offset number of imports to skip
+     * @param limit maximum number of imports to return, negative for no limit
+     */
+    public Iterator<ImportContext> getContextsByUpdated(int offset, int limit) {
+        try {
+            return contextStore.iterator("updated", offset, limit);
+        }
+        catch(UnsupportedOperationException e) {
+            //fallback
+            Iterator<ImportContext> it = getAllContextsByUpdated();
+            Iterators.advance(it, offset);
+            return limit < 0 ? it : Iterators.limit(it, limit);
+        }
+    }
+
+    /**
+     * The number of imports in the context store.
+     */
+    public int getContextCount() {
+        return contextStore.count();
+    }
+
     public ImportContext createContext(ImportData data, WorkspaceInfo targetWorkspace) throws IOException {
         return createContext(data, targetWorkspace, null);
     }
@@ -298,6 +598,11 @@ public class Importer implements DisposableBean, ApplicationListener {
                 return createContext(data, targetWorkspace, targetStore, monitor);
             }
 
+            @Override
+            public String getStore() {
+                return targetStore != null ? targetStore.getId() : null;
+            }
+
             @Override
             public String toString() {
                 return "Processing data " + data.toString();
@@ -662,22 +967,35 @@ public class Importer implements DisposableBean, ApplicationListener {
             LOGGER.fine("Running import " + context.getId());
         }
         
+        List<ImportTask> tasks = new ArrayList<ImportTask>();
         for (ImportTask task : context.getTasks()) {
             if (!filter.include(task)) {
                 continue;
             }
-            if (!task.readyForImport()) {
+            if (!task.readyForImport() && !canResume(task)) {
                 continue;
             }
+            tasks.add(task);
+        }
 
-            if (context.progress().isCanceled()) {
-                break;
+        if (taskParallelism > 1 && tasks.size() > 1) {
+            runParallel(context, tasks);
+        }
+        else {
+            for (ImportTask task : tasks) {
+                if (context.progress().isCanceled()) {
+                    break;
+                }
+                run(task);
             }
-            run(task);
         }
 
+        // running changed the tasks in ways their setters don't see, their layers for one
+        for (ImportTask task : tasks) {
+            task.changed();
+        }
         context.updated();
-        contextStore.save(context);
+        save(context);
 
         if (context.isArchive() && context.getState() == ImportContext.State.COMPLETE) {
             boolean canArchive = !Iterables.any(context.getTasks(), new Predicate<ImportTask>() {
@@ -695,19 +1013,186 @@ public class Importer implements DisposableBean, ApplicationListener {
                     directory = new Directory( ((SpatialFile) context.getData()).getFile().getParentFile() );
                 }
                 if (directory != null) {
-                    if (LOGGER.isLoggable(Level.FINE)) {
-                        LOGGER.fine("Archiving directory " + directory.getFile().getAbsolutePath());
-                    }       
+                    archive(directory, getArchiveFile(context));
+                }
+            }
+
+        }
+    }
+
+    /*
+     * archives the directory of a completed import, off the calling thread unless archiving is
+     * configured to run synchronously
+     */
+    void archive(final Directory directory, final File output) {
+        Runnable r = new Runnable() {
+            @Override
+            public void run() {
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.fine("Archiving directory " + directory.getFile().getAbsolutePath());
+                }
+                ZipArchiver archiver = new ZipArchiver(archiveLevel, archiveThreads);
+                archiving = archiver;
+                try {
+                    directory.archive(output, archiver);
+                } catch (Exception ioe) {
+                    // this is not a critical operation, so don't make the whole thing fail
+                    LOGGER.log(Level.WARNING, "Error archiving", ioe);
+                } finally {
+                    archiving = null;
+                }
+            }
+        };
+        if (archiveAsync) {
+            archiveExecutor.execute(r);
+        }
+        else {
+            r.run();
+        }
+    }
+
+    /*
+     * a task that failed, was canceled, or whose import was interrupted by a shutdown, after 
+     * committing part of its data can be run again and will pick up from its last checkpoint
+     */
+    boolean canResume(ImportTask task) {
+        if (!task.hasCheckpoint()) {
+            return false;
+        }
+        if (task.getState() == ImportTask.State.ERROR 
+            || task.getState() == ImportTask.State.CANCELED) {
+            return true;
+        }
+        return task.getState() == ImportTask.State.RUNNING && !isProcessing(task);
+    }
+
+    /*
+     * runs the tasks of an import concurrently, tasks that update the same existing layer are run 
+     * one after the other. the calling thread runs tasks itself while up to taskParallelism - 1 
+     * helper jobs on the job queue share the rest, so the import completes even when the queue 
+     * has no free slots
+     */
+    void runParallel(final ImportContext context, List<ImportTask> tasks) throws IOException {
+        final Queue<List<ImportTask>> groups = 
+            new ConcurrentLinkedQueue<List<ImportTask>>(groupTasks(tasks));
+        final AtomicReference<IOException> error = new AtomicReference<IOException>();
+
+        final Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                List<ImportTask> group;
+                while (error.get() == null && (group = groups.poll()) != null) {
+                    for (ImportTask task : group) {
+                        if (context.progress().isCanceled()) {
+                            return;
+                        }
+                        try {
+                            Importer.this.run(task);
+                        }
+                        catch(IOException e) {
+                            error.compareAndSet(null, e);
+                            return;
+                        }
+                    }
+                }
+            }
+        };
+
+        // helpers only pick up work until the calling thread has run out of tasks
+        final int[] active = new int[1];
+        final boolean[] closed = new boolean[1];
+
+        List<Long> helpers = new ArrayList<Long>();
+        int n = Math.min(taskParallelism, groups.size()) - 1;
+        for (int i = 0; i < n; i++) {
+            helpers.add(jobs.submit(new Job<Object>() {
+                @Override
+                protected Object call(ProgressMonitor monitor) throws Exception {
+                    synchronized (active) {
+                        if (closed[0]) {
+                            return null;
+                        }
+                        active[0]++;
+                    }
                     try {
-                        directory.archive(getArchiveFile(context));
-                    } catch (Exception ioe) {
-                        ioe.printStackTrace();
-                        // this is not a critical operation, so don't make the whole thing fail
-                        LOGGER.log(Level.WARNING, "Error archiving", ioe);
+                        worker.run();
                     }
+                    finally {
+                        synchronized (active) {
+                            active[0]--;
+                            active.notifyAll();
+                        }
+                    }
+                    return null;
+                }
+
+                @Override
+                public String getUser() {
+                    return context.getUser();
                 }
+
+                @Override
+                public String toString() {
+                    return "Processing tasks of import " + context.getId();
+                }
+            }));
+        }
+
+        worker.run();
+
+        synchronized (active) {
+            closed[0] = true;
+            try {
+                while (active[0] > 0) {
+                    active.wait();
+                }
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted waiting for tasks of import " 
+                    + context.getId(), e);
+            }
+        }
+
+        // drop helpers that never got to run
+        for (Long id : helpers) {
+            jobs.getTask(id).cancel(false);
+        }
+
+        if (error.get() != null) {
+            throw error.get();
+        }
+    }
+
+    /*
+     * groups tasks that must not run at the same time, namely tasks appending to or replacing
+     * the same layer
+     */
+    List<List<ImportTask>> groupTasks(List<ImportTask> tasks) {
+        Map<String,List<ImportTask>> groups = new LinkedHashMap<String, List<ImportTask>>();
+        for (ImportTask task : tasks) {
+            String key = "task:" + task.getId();
+            if (task.getUpdateMode() != null && task.getLayer() != null) {
+                key = task.getStore().getId() + ":" 
+                    + task.getLayer().getResource().getNativeName();
+            }
+
+            List<ImportTask> group = groups.get(key);
+            if (group == null) {
+                group = new ArrayList<ImportTask>();
+                groups.put(key, group);
             }
+            group.add(task);
+        }
+        return new ArrayList<List<ImportTask>>(groups.values());
+    }
 
+    /*
+     * saves the context, serialized as tasks running in parallel save their progress
+     */
+    void save(ImportContext context) {
+        synchronized (context) {
+            contextStore.save(context);
         }
     }
 
@@ -735,17 +1220,45 @@ public class Importer implements DisposableBean, ApplicationListener {
         return new File(dir, archiveName);
     }
     
+    /**
+     * Marks every task of the context as changed and saves it. To be called after modifying the 
+     * context or its tasks through their getters, which the store would otherwise not notice.
+     */
     public void changed(ImportContext context) {
+        for (ImportTask task : context.getTasks()) {
+            task.changed();
+        }
         context.updated();
-        contextStore.save(context);
+        save(context);
     }
 
+    /**
+     * Marks the task as changed, prepares it again and saves its context. To be called after 
+     * modifying the task through its getters, such as its layer or transform chain, which the
+     * store would otherwise not notice.
+     * 
+     * @see ImportStore#save(ImportContext)
+     */
     public void changed(ImportTask task)  {
         prep(task);
-        changed(task.getContext());
+        task.changed();
+
+        ImportContext context = task.getContext();
+        context.updated();
+        save(context);
     }
 
     public Long runAsync(final ImportContext context, final ImportFilter filter) {
+        return runAsync(context, filter, 0);
+    }
+
+    /**
+     * Runs an import asynchronously on the job queue.
+     * 
+     * @param priority priority of the job, jobs with a higher priority are run first
+     */
+    public Long runAsync(final ImportContext context, final ImportFilter filter, 
+        final int priority) {
         return jobs.submit(new Job<ImportContext>() {
             @Override
             protected ImportContext call(ProgressMonitor monitor) throws Exception {
@@ -753,6 +1266,22 @@ public class Importer implements DisposableBean, ApplicationListener {
                 return context;
             }
 
+            @Override
+            public int getPriority() {
+                return priority;
+            }
+
+            @Override
+            public String getUser() {
+                return context.getUser();
+            }
+
+            @Override
+            public String getStore() {
+                StoreInfo store = context.getTargetStore();
+                return store != null ? store.getId() : null;
+            }
+
             @Override
             public String toString() {
                 return "Processing import " + context.getId();
@@ -768,33 +1297,40 @@ public class Importer implements DisposableBean, ApplicationListener {
         return (List) jobs.getTasks();
     }
 
+    public JobQueue getJobQueue() {
+        return jobs;
+    }
+
     /* 
      * an import that involves consuming a data source directly
      */
     void doDirectImport(ImportTask task) throws IOException {
         //TODO: this needs to be transactional in case of errors along the way
 
-        //add the store, may have been added in a previous iteration of this task
-        if (task.getStore().getId() == null) {
-            StoreInfo store = task.getStore();
+        //add the store, may have been added in a previous iteration of this task, or by another
+        // task sharing the store
+        synchronized (catalogLock) {
+            if (task.getStore().getId() == null) {
+                StoreInfo store = task.getStore();
 
-            //ensure a unique name
-            store.setName(findUniqueStoreName(task.getStore()));
-            
-            //ensure a namespace connection parameter set matching workspace/namespace
-            if (!store.getConnectionParameters().containsKey("namespace")) {
-                WorkspaceInfo ws = task.getContext().getTargetWorkspace();
-                if (ws == null && task.getContext().getTargetStore() != null) {
-                    ws = task.getContext().getTargetStore().getWorkspace();
-                }
-                if (ws != null) {
-                    NamespaceInfo ns = catalog.getNamespaceByPrefix(ws.getName());
-                    if (ns != null) {
-                        store.getConnectionParameters().put("namespace", ns.getURI());
+                //ensure a unique name
+                store.setName(findUniqueStoreName(task.getStore()));
+
+                //ensure a namespace connection parameter set matching workspace/namespace
+                if (!store.getConnectionParameters().containsKey("namespace")) {
+                    WorkspaceInfo ws = task.getContext().getTargetWorkspace();
+                    if (ws == null && task.getContext().getTargetStore() != null) {
+                        ws = task.getContext().getTargetStore().getWorkspace();
+                    }
+                    if (ws != null) {
+                        NamespaceInfo ns = catalog.getNamespaceByPrefix(ws.getName());
+                        if (ns != null) {
+                            store.getConnectionParameters().put("namespace", ns.getURI());
+                        }
                     }
                 }
+                catalog.add(task.getStore());
             }
-            catalog.add(task.getStore());
         }
 
         task.setState(ImportTask.State.RUNNING);
@@ -850,9 +1386,9 @@ public class Importer implements DisposableBean, ApplicationListener {
         DataFormat format = task.getData().getFormat();
         if (format instanceof VectorFormat) {
             try {
-                currentlyProcessing.put(task.getContext().getId(), task);
-                loadIntoDataStore(task, (DataStoreInfo)task.getStore(), (VectorFormat) format, 
-                    (VectorTransformChain) tx);
+                processing(task);
+                LoadStatistics stats = loadIntoDataStore(task, (DataStoreInfo)task.getStore(), 
+                    (VectorFormat) format, (VectorTransformChain) tx);
                 canceled = task.progress().isCanceled();
 
                 FeatureTypeInfo featureType = (FeatureTypeInfo) task.getLayer().getResource();
@@ -873,9 +1409,12 @@ public class Importer implements DisposableBean, ApplicationListener {
                             featureType.getQualifiedName(), FeatureTypeInfo.class);
                     if (resource.getNativeBoundingBox().isEmpty()
                             || resource.getMetadata().get("recalculate-bounds") != null) {
-                        // force computation
+                        // force computation, from the features just written when they make up 
+                        // all the data
                         CatalogBuilder cb = new CatalogBuilder(getCatalog());
-                        ReferencedEnvelope nativeBounds = cb.getNativeBounds(resource);
+                        ReferencedEnvelope nativeBounds = stats != null && stats.isSpatial() 
+                            ? stats.getBounds(resource.getNativeCRS())
+                            : cb.getNativeBounds(resource);
                         resource.setNativeBoundingBox(nativeBounds);
                         resource.setLatLonBoundingBox(cb.getLatLonBounds(nativeBounds,
                                 resource.getCRS()));
@@ -889,7 +1428,7 @@ public class Importer implements DisposableBean, ApplicationListener {
                 task.setState(ImportTask.State.ERROR);
                 return;
             } finally {
-                currentlyProcessing.remove(task.getContext().getId());
+                processed(task);
             }
         }
         else {
@@ -930,7 +1469,12 @@ public class Importer implements DisposableBean, ApplicationListener {
         return true;
     }
 
-    void loadIntoDataStore(ImportTask task, DataStoreInfo store, VectorFormat format, 
+    /*
+     * loads the features of the task into the target store, returning statistics of the 
+     * features written when they make up all the data of the target, or null when the target
+     * holds other data as well
+     */
+    LoadStatistics loadIntoDataStore(ImportTask task, DataStoreInfo store, VectorFormat format, 
         VectorTransformChain tx) throws Exception {
 
         ImportData data = task.getData();
@@ -952,51 +1496,82 @@ public class Importer implements DisposableBean, ApplicationListener {
         
         featureType = featureDataConverter.convertType(featureType, format, data, task);
         UpdateMode updateMode = task.getUpdateMode();
+
+        //chunked commits only make sense for databases, other stores write on commit. an update 
+        // removing missing features has to see all the keys in one run, so it can't resume, 
+        // neither can a replace loading a staging table that does not lock the live one
+        boolean deleteMissing = updateMode == UpdateMode.UPDATE && task.isDeleteMissing();
+        boolean staged = updateMode == UpdateMode.REPLACE && stagedReplace 
+            && isPostGISDataStore(dataStore);
+        boolean chunked = commitInterval > 0 && dataStore instanceof JDBCDataStore 
+            && !deleteMissing && !staged;
+        boolean resume = task.hasCheckpoint() && chunked && 
+            Arrays.asList(dataStore.getTypeNames()).contains(resumeTypeName(task, featureTypeName));
+        if (!resume) {
+            task.clearCheckpoint();
+        }
+
         final String uniquifiedFeatureTypeName;
-        if (updateMode == null) {
-            //find a unique type name in the target store
-            uniquifiedFeatureTypeName = findUniqueNativeFeatureTypeName(featureType, store);
-            task.setOriginalLayerName(featureTypeName);
-
-            if (!uniquifiedFeatureTypeName.equals(featureTypeName)) {
-                //update the metadata
-                task.getLayer().getResource().setName(uniquifiedFeatureTypeName);
-                task.getLayer().getResource().setNativeName(uniquifiedFeatureTypeName);
+        if (resume) {
+            //pick up the table created by the interrupted load
+            uniquifiedFeatureTypeName = resumeTypeName(task, featureTypeName);
+
+            //initialize the feature type transforms, the schema already exists
+            tx.inline(task, dataStore, featureType);
+            LOGGER.info("resuming import of " + uniquifiedFeatureTypeName + " after " 
+                + task.getCheckpointOffset() + " features");
+        }
+        else if (updateMode == null) {
+            //type name lookup and schema creation must not interleave with other tasks
+            synchronized (catalogLock) {
+                //find a unique type name in the target store
+                uniquifiedFeatureTypeName = findUniqueNativeFeatureTypeName(featureType, store);
+                task.setOriginalLayerName(featureTypeName);
+
+                if (!uniquifiedFeatureTypeName.equals(featureTypeName)) {
+                    //update the metadata
+                    task.getLayer().getResource().setName(uniquifiedFeatureTypeName);
+                    task.getLayer().getResource().setNativeName(uniquifiedFeatureTypeName);
                 
-                //retype
-                SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
-                typeBuilder.setName(uniquifiedFeatureTypeName);
-                typeBuilder.addAll(featureType.getAttributeDescriptors());
-                featureType = typeBuilder.buildFeatureType();
-            }
-
-            // @todo HACK remove this at some point when timezone issues are fixed
-            // this will force postgis to create timezone w/ timestamp fields
-            if (dataStore instanceof JDBCDataStore) {
-                JDBCDataStore ds = (JDBCDataStore) dataStore;
-                // sniff for postgis (h2 is used in tests and will cause failure if this occurs)
-                if (ds.getSqlTypeNameToClassMappings().containsKey("timestamptz")) {
-                    ds.getSqlTypeToSqlTypeNameOverrides().put(java.sql.Types.TIMESTAMP, "timestamptz");
+                    //retype
+                    SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+                    typeBuilder.setName(uniquifiedFeatureTypeName);
+                    typeBuilder.addAll(featureType.getAttributeDescriptors());
+                    featureType = typeBuilder.buildFeatureType();
+                }
+
+                // @todo HACK remove this at some point when timezone issues are fixed
+                // this will force postgis to create timezone w/ timestamp fields
+                if (dataStore instanceof JDBCDataStore) {
+                    JDBCDataStore ds = (JDBCDataStore) dataStore;
+                    // sniff for postgis (h2 is used in tests and will cause failure if this occurs)
+                    if (ds.getSqlTypeNameToClassMappings().containsKey("timestamptz")) {
+                        ds.getSqlTypeToSqlTypeNameOverrides().put(java.sql.Types.TIMESTAMP, "timestamptz");
+                    }
                 }
-            }
 
-            //apply the feature type transform
-            featureType = tx.inline(task, dataStore, featureType);
+                //apply the feature type transform
+                featureType = tx.inline(task, dataStore, featureType);
 
-            dataStore.createSchema(featureType);
+                dataStore.createSchema(featureType);
+            }
         } else {
             // @todo what to do if featureType transform is present?
-            
-            // @todo implement me - need to specify attribute used for id
-            if (updateMode == UpdateMode.UPDATE) {
-                throw new UnsupportedOperationException("updateMode UPDATE is not supported yet");
-            }
             uniquifiedFeatureTypeName = featureTypeName;
         }
+
+        //features are written to the staging table when there is one
+        StagingTable staging = null;
+        if (staged) {
+            staging = StagingTable.create((JDBCDataStore) dataStore, uniquifiedFeatureTypeName, 
+                task.getContext().getId() + "_" + task.getId(), deferIndexes);
+        }
+        final String targetTypeName = staging != null ? staging.getTypeName() 
+            : uniquifiedFeatureTypeName;
             
         Transaction transaction = new DefaultTransaction();
         
-        if (updateMode == UpdateMode.REPLACE) {
+        if (updateMode == UpdateMode.REPLACE && !resume && staging == null) {
             
             FeatureStore fs = (FeatureStore) dataStore.getFeatureSource(featureTypeName);
             fs.setTransaction(transaction);
@@ -1009,12 +1584,13 @@ public class Importer implements DisposableBean, ApplicationListener {
         //start writing features
         // @todo ability to collect transformation errors for use in a dry-run (auto-rollback)
         FeatureWriter writer = null;
+        BulkLoader bulk = null;
+        FeatureUpdater updater = null;
         
         ProgressMonitor monitor = task.progress();
         
         // @todo need better way to communicate to client
-        int skipped = 0;
-        int cnt = 0;
+        LoadCounter counter = new LoadCounter(task, transaction, chunked);
         // metrics
         long startTime = System.currentTimeMillis();
         task.clearMessages();
@@ -1023,42 +1599,102 @@ public class Importer implements DisposableBean, ApplicationListener {
         
         LOGGER.info("begining import");
         try {
-            writer = dataStore.getFeatureWriterAppend(uniquifiedFeatureTypeName, transaction);
-            
-            while(reader.hasNext()) {
-                if (monitor.isCanceled()){
-                    break;
+            if (updateMode == UpdateMode.UPDATE) {
+                //merge by key, in the database when it knows how to
+                updater = new FeatureUpdater(dataStore, uniquifiedFeatureTypeName, 
+                    task.getUpdateKeys(), transaction, loadBatchSize);
+                if (bulkLoad && dataStore instanceof JDBCDataStore) {
+                    bulk = BulkLoader.createUpsert((JDBCDataStore) dataStore, 
+                        uniquifiedFeatureTypeName, task.getUpdateKeys(), transaction, 
+                        loadBatchSize);
                 }
-                SimpleFeature feature = (SimpleFeature) reader.next();
-                SimpleFeature next = (SimpleFeature) writer.next();
+                updater.setUpsertLoader(bulk);
+                updater.setTrackKeys(deleteMissing);
+            }
+            else {
+                if (bulkLoad && dataStore instanceof JDBCDataStore) {
+                    bulk = BulkLoader.create((JDBCDataStore) dataStore, targetTypeName, 
+                        transaction, loadBatchSize);
+                }
+                if (bulk == null) {
+                    writer = dataStore.getFeatureWriterAppend(targetTypeName, transaction);
+                }
+            }
 
-                //(JD) TODO: some formats will rearrange the geometry type (like shapefile) which
-                // makes the goemetry the first attribute reagardless, so blindly copying over
-                // attributes won't work unless the source type also  has the geometry as the 
-                // first attribute in the schema
-                featureDataConverter.convert(feature, next);
-                
-                // @hack #45678 - mask empty geometry or postgis will complain
-                Geometry geom = (Geometry) next.getDefaultGeometry();
-                if (geom != null && geom.isEmpty()) {
-                    next.setDefaultGeometry(null);
+            counter.bulk = bulk;
+            counter.updater = updater;
+            counter.stats = new LoadStatistics(updater != null ? updater.getFeatureType() 
+                : bulk != null ? bulk.getFeatureType() 
+                : (SimpleFeatureType) writer.getFeatureType());
+
+            if (resume) {
+                counter.resume(reader);
+            }
+
+            if (updater != null) {
+                loadPipelined(task, dataStore, reader, updater.getFeatureType(), 
+                    updaterSink(updater), counter, featureDataConverter, tx);
+                updater.flush();
+                if (deleteMissing && !monitor.isCanceled()) {
+                    int deleted = updater.deleteMissing();
+                    LOGGER.info("removed " + deleted + " features missing from the data");
                 }
-                
-                //apply the feature transform
-                next = tx.inline(task, dataStore, feature, next);
-                
-                if (next == null) {
-                    skipped++;
-                } else {
-                    writer.write();
+                if (LOGGER.isLoggable(Level.FINE) && bulk == null) {
+                    LOGGER.fine("updated " + updater.getUpdated() + " features, inserted " 
+                        + updater.getInserted());
                 }
-                task.setNumberProcessed(++cnt);
             }
-            transaction.commit();
-            if (skipped > 0) {
-                task.addMessage(Level.WARNING,skipped + " features were skipped.");
+            else if (bulk != null) {
+                loadPipelined(task, dataStore, reader, bulk.getFeatureType(), bulkSink(bulk), 
+                    counter, featureDataConverter, tx);
+                bulk.flush();
+            }
+            else if (loadThreads > 0) {
+                loadPipelined(task, dataStore, reader, (SimpleFeatureType) writer.getFeatureType(), 
+                    writerSink(writer), counter, featureDataConverter, tx);
+            }
+            else {
+                while(reader.hasNext()) {
+                    if (monitor.isCanceled()){
+                        break;
+                    }
+                    SimpleFeature feature = (SimpleFeature) reader.next();
+                    SimpleFeature next = (SimpleFeature) writer.next();
+
+                    //(JD) TODO: some formats will rearrange the geometry type (like shapefile) 
+                    // which makes the goemetry the first attribute reagardless, so blindly 
+                    // copying over attributes won't work unless the source type also  has the 
+                    // geometry as the first attribute in the schema
+                    featureDataConverter.convert(feature, next);
+                    maskEmptyGeometry(next);
+
+                    //apply the feature transform
+                    next = tx.inline(task, dataStore, feature, next);
+
+                    if (next == null) {
+                        counter.skip();
+                    } else {
+                        counter.write(next);
+                        writer.write();
+                    }
+                    counter.process();
+                }
+            }
+            //a canceled load is rolled back below, back to the last checkpoint if any
+            if (!monitor.isCanceled()) {
+                transaction.commit();
+                if (staging != null) {
+                    staging.swap();
+                }
+                task.clearCheckpoint();
+            }
+            if (counter.skipped > 0) {
+                task.addMessage(Level.WARNING,counter.skipped + " features were skipped.");
             }
             LOGGER.info("load to target took " + (System.currentTimeMillis() - startTime));
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("loaded " + counter.stats);
+            }
         } 
         catch (Exception e) {
             error = e;
@@ -1076,14 +1712,28 @@ public class Importer implements DisposableBean, ApplicationListener {
                 LOGGER.log(Level.WARNING, "Error rolling back transaction",e1);
             }
 
-            //attempt to drop the type that was created as well
-            try {
-                dropSchema(dataStore,featureTypeName);
-            } catch(Exception e1) {
-                LOGGER.log(Level.WARNING, "Error dropping schema in rollback",e1);
+            //drop the staging table, the live table is untouched
+            if (staging != null) {
+                staging.drop();
+            }
+
+            //attempt to drop the type that was created as well, unless data has been committed
+            // that a later run can resume from or the type existed before the load. the type 
+            // created may have been renamed to not clash with an existing one, leave that alone
+            if (!task.hasCheckpoint() && updateMode == null) {
+                try {
+                    dropSchema(dataStore,uniquifiedFeatureTypeName);
+                } catch(Exception e1) {
+                    LOGGER.log(Level.WARNING, "Error dropping schema in rollback",e1);
+                }
             }
         }
 
+        // release bulk load statements before the transaction closes the connection
+        if (bulk != null) {
+            bulk.close();
+        }
+
         // try to cleanup, but if an error occurs here and one hasn't already been set, set the error
         try {
             transaction.close();
@@ -1128,6 +1778,167 @@ public class Importer implements DisposableBean, ApplicationListener {
         if (error != null) {
             throw error;
         }
+
+        // statistics only cover the features written by this run, appends, updates keeping
+        // missing features and resumed loads leave other features in the target
+        boolean complete = !resume && updateMode != UpdateMode.APPEND 
+            && (updateMode != UpdateMode.UPDATE || deleteMissing);
+        return complete && !monitor.isCanceled() ? counter.stats : null;
+    }
+
+    /*
+     * loads features through a staged pipeline, converting and transforming features on worker
+     * threads while the calling thread hands them to the target sink
+     */
+    void loadPipelined(final ImportTask task, final DataStore dataStore, FeatureReader reader, 
+        final SimpleFeatureType targetType, final FeatureLoadPipeline.Sink target, 
+        final LoadCounter counter, final FeatureDataConverter featureDataConverter, 
+        final VectorTransformChain tx) throws Exception {
+
+        //checkpoints record an offset into the source, so chunked loads must stay in order, as
+        // must keyed updates for the last of several features with the same key to win
+        FeatureLoadPipeline pipeline = new FeatureLoadPipeline(loadThreads, loadBatchSize, 
+            loadOrdered || counter.chunked || counter.updater != null);
+        pipeline.run(reader, new FeatureLoadPipeline.Converter() {
+            @Override
+            public SimpleFeature convert(SimpleFeature feature) throws Exception {
+                SimpleFeature next = DataUtilities.template(targetType);
+                featureDataConverter.convert(feature, next);
+                maskEmptyGeometry(next);
+                next = tx.inline(task, dataStore, feature, next);
+
+                //features without a key can't be matched against the target, skip them
+                if (next != null && counter.updater != null && !counter.updater.hasKey(next)) {
+                    return null;
+                }
+                return next;
+            }
+        }, new FeatureLoadPipeline.Sink() {
+            @Override
+            public void write(SimpleFeature feature) throws Exception {
+                if (feature == null) {
+                    counter.skip();
+                }
+                else {
+                    counter.write(feature);
+                    target.write(feature);
+                }
+                counter.process();
+            }
+        }, task.progress());
+    }
+
+    FeatureLoadPipeline.Sink writerSink(final FeatureWriter writer) {
+        return new FeatureLoadPipeline.Sink() {
+            @Override
+            public void write(SimpleFeature feature) throws Exception {
+                SimpleFeature next = (SimpleFeature) writer.next();
+                next.setAttributes(feature.getAttributes());
+                next.getUserData().putAll(feature.getUserData());
+                writer.write();
+            }
+        };
+    }
+
+    FeatureLoadPipeline.Sink updaterSink(final FeatureUpdater updater) {
+        return new FeatureLoadPipeline.Sink() {
+            @Override
+            public void write(SimpleFeature feature) throws Exception {
+                updater.add(feature);
+            }
+        };
+    }
+
+    FeatureLoadPipeline.Sink bulkSink(final BulkLoader bulk) {
+        return new FeatureLoadPipeline.Sink() {
+            @Override
+            public void write(SimpleFeature feature) throws Exception {
+                bulk.add(feature);
+            }
+        };
+    }
+
+    /*
+     * name of the table an interrupted load was writing to
+     */
+    String resumeTypeName(ImportTask task, String featureTypeName) {
+        if (task.getUpdateMode() != null) {
+            return featureTypeName;
+        }
+        String nativeName = task.getLayer().getResource().getNativeName();
+        return nativeName != null ? nativeName : featureTypeName;
+    }
+
+    /*
+     * tracks the number of features processed by a load, and when running in chunked mode 
+     * commits and records a checkpoint every commitInterval features
+     */
+    class LoadCounter {
+        ImportTask task;
+        Transaction transaction;
+        BulkLoader bulk;
+        FeatureUpdater updater;
+        boolean chunked;
+
+        /** number of source features processed, and skipped by the transform chain */
+        int processed, skipped;
+
+        /** statistics of the features written */
+        LoadStatistics stats;
+
+        LoadCounter(ImportTask task, Transaction transaction, boolean chunked) {
+            this.task = task;
+            this.transaction = transaction;
+            this.chunked = chunked;
+        }
+
+        /*
+         * skips over the source features already committed by a previous run
+         */
+        void resume(FeatureReader reader) throws IOException {
+            processed = (int) task.getCheckpointOffset();
+            skipped = (int) (task.getCheckpointOffset() - task.getCheckpointCount());
+            for (int i = 0; i < processed && reader.hasNext(); i++) {
+                reader.next();
+            }
+            task.setNumberProcessed(processed);
+        }
+
+        void skip() {
+            skipped++;
+        }
+
+        void write(SimpleFeature feature) {
+            stats.add(feature);
+        }
+
+        void process() throws IOException {
+            task.setNumberProcessed(++processed);
+            if (chunked && processed % commitInterval == 0) {
+                checkpoint();
+            }
+        }
+
+        void checkpoint() throws IOException {
+            if (updater != null) {
+                updater.flush();
+            }
+            else if (bulk != null) {
+                bulk.flush();
+            }
+            transaction.commit();
+
+            task.setCheckpoint(processed, processed - skipped);
+            save(task.getContext());
+        }
+    }
+
+    void maskEmptyGeometry(SimpleFeature feature) {
+        // @hack #45678 - mask empty geometry or postgis will complain
+        Geometry geom = (Geometry) feature.getDefaultGeometry();
+        if (geom != null && geom.isEmpty()) {
+            feature.setDefaultGeometry(null);
+        }
     }
 
     StoreInfo lookupDefaultStore() {
@@ -1140,28 +1951,30 @@ public class Importer implements DisposableBean, ApplicationListener {
     }
 
     void addToCatalog(ImportTask task) throws IOException {
-        LayerInfo layer = task.getLayer();
-        ResourceInfo resource = layer.getResource();
-        resource.setStore(task.getStore());
-
-        //add the resource
-        String name = findUniqueResourceName(resource);
-        resource.setName(name); 
-
-        //JD: not setting a native name, it should actually already be set by this point and we 
-        // don't want to blindly set it to the same name as the resource name, which might have 
-        // changed to deal with name clashes
-        //resource.setNativeName(name);
-        resource.setEnabled(true);
-        catalog.add(resource);
+        synchronized (catalogLock) {
+            LayerInfo layer = task.getLayer();
+            ResourceInfo resource = layer.getResource();
+            resource.setStore(task.getStore());
+
+            //add the resource
+            String name = findUniqueResourceName(resource);
+            resource.setName(name); 
+
+            //JD: not setting a native name, it should actually already be set by this point and we 
+            // don't want to blindly set it to the same name as the resource name, which might have 
+            // changed to deal with name clashes
+            //resource.setNativeName(name);
+            resource.setEnabled(true);
+            catalog.add(resource);
+
+            //add the layer (and style)
+            if (layer.getDefaultStyle().getId() == null) {
+                catalog.add(layer.getDefaultStyle());
+            }
 
-        //add the layer (and style)
-        if (layer.getDefaultStyle().getId() == null) {
-            catalog.add(layer.getDefaultStyle());
+            layer.setEnabled(true);
+            catalog.add(layer);
         }
-
-        layer.setEnabled(true);
-        catalog.add(layer);
     }
 
     String findUniqueStoreName(StoreInfo store) {
@@ -1238,8 +2051,7 @@ public class Importer implements DisposableBean, ApplicationListener {
     }
 
     boolean isPostGISDataStore(DataStore dataStore) {
-        return dataStore instanceof JDBCDataStore && ((JDBCDataStore)dataStore).getSQLDialect()
-            .getClass().getName().startsWith("org.geotools.data.postgis");
+        return BulkLoader.isPostGIS(dataStore);
     }
 
     /*
@@ -1278,6 +2090,18 @@ public class Importer implements DisposableBean, ApplicationListener {
 
     public void destroy() throws Exception {
         jobs.shutdown();
+        // let pending archives finish, their directories are removed once archived
+        archiveExecutor.shutdown();
+        if (!archiveExecutor.awaitTermination(archiveShutdownTimeout, TimeUnit.SECONDS)) {
+            // don't leave a truncated zip behind, the directories not archived are kept
+            LOGGER.warning("Archiving not complete after " + archiveShutdownTimeout 
+                + "s, aborting");
+            ZipArchiver archiver = archiving;
+            if (archiver != null) {
+                archiver.abort();
+            }
+            archiveExecutor.shutdownNow();
+        }
         contextStore.destroy();
     }
 
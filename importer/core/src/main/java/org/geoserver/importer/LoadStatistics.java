@@ -0,0 +1,136 @@
+package org.geoserver.importer;
+
+import java.util.List;
+
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Statistics of the features written by a load, gathered as the features are written.
+ * <p>
+ * Keeps the bounds of the default geometry, the number of features, and for each attribute the
+ * number of null values along with the minimum and maximum of comparable values. Not thread
+ * safe, features are expected to be added by the thread writing them.
+ * </p>
+ */
+public class LoadStatistics {
+
+    final SimpleFeatureType featureType;
+
+    /** index of the default geometry, -1 if the type has none */
+    final int geometryIndex;
+
+    final Envelope bounds = new Envelope();
+
+    int count;
+
+    final int[] nulls;
+    final Comparable[] min;
+    final Comparable[] max;
+
+    public LoadStatistics(SimpleFeatureType featureType) {
+        this.featureType = featureType;
+
+        GeometryDescriptor gd = featureType.getGeometryDescriptor();
+        geometryIndex = gd != null ? featureType.indexOf(gd.getLocalName()) : -1;
+
+        int n = featureType.getAttributeCount();
+        nulls = new int[n];
+        min = new Comparable[n];
+        max = new Comparable[n];
+    }
+
+    public void add(SimpleFeature feature) {
+        count++;
+
+        List<Object> values = feature.getAttributes();
+        for (int i = 0; i < nulls.length && i < values.size(); i++) {
+            Object value = values.get(i);
+            if (value == null) {
+                nulls[i]++;
+            }
+            else if (i == geometryIndex) {
+                bounds.expandToInclude(((Geometry) value).getEnvelopeInternal());
+            }
+            else if (value instanceof Comparable && !(value instanceof Geometry)) {
+                update(i, (Comparable) value);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void update(int i, Comparable value) {
+        try {
+            if (min[i] == null || value.compareTo(min[i]) < 0) {
+                min[i] = value;
+            }
+            if (max[i] == null || value.compareTo(max[i]) > 0) {
+                max[i] = value;
+            }
+        } catch (ClassCastException e) {
+            // values of mixed types, no range for this attribute
+        }
+    }
+
+    /**
+     * Whether the features have a default geometry to compute bounds from.
+     */
+    public boolean isSpatial() {
+        return geometryIndex >= 0;
+    }
+
+    /**
+     * Bounds of the default geometries written, in the specified crs.
+     */
+    public ReferencedEnvelope getBounds(CoordinateReferenceSystem crs) {
+        ReferencedEnvelope env = new ReferencedEnvelope(crs);
+        if (!bounds.isNull()) {
+            env.expandToInclude(bounds);
+        }
+        return env;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public int getNullCount(String attribute) {
+        int i = featureType.indexOf(attribute);
+        return i >= 0 ? nulls[i] : 0;
+    }
+
+    public Object getMin(String attribute) {
+        int i = featureType.indexOf(attribute);
+        return i >= 0 ? min[i] : null;
+    }
+
+    public Object getMax(String attribute) {
+        int i = featureType.indexOf(attribute);
+        return i >= 0 ? max[i] : null;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(count).append(" features");
+        if (isSpatial()) {
+            sb.append(", bounds ").append(bounds);
+        }
+        for (int i = 0; i < nulls.length; i++) {
+            AttributeDescriptor att = featureType.getDescriptor(i);
+            sb.append(", ").append(att.getLocalName()).append(": ").append(nulls[i])
+                .append(" nulls");
+            if (min[i] != null) {
+                sb.append(", range ").append(min[i]).append(" - ").append(max[i]);
+            }
+        }
+        return sb.toString();
+    }
+}
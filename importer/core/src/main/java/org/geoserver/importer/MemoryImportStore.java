@@ -3,15 +3,53 @@ package org.geoserver.importer;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Import store that keeps imports in memory.
+ * <p>
+ * Imports are kept in a map keyed by id, along with an index ordering them by last update. Once
+ * the number of imports exceeds the store capacity completed imports are evicted, least recently
+ * updated first. Imports that are not complete are never evicted.
+ * </p>
+ */
 public class MemoryImportStore implements ImportStore {
 
+    /** default maximum number of imports kept */
+    public static final int DEFAULT_CAPACITY = 100;
+
     AtomicLong idseq = new AtomicLong();
 
-    Queue<ImportContext> imports = new ConcurrentLinkedQueue<ImportContext>();
+    /** imports by id */
+    ConcurrentSkipListMap<Long,ImportContext> imports =
+        new ConcurrentSkipListMap<Long, ImportContext>();
+
+    /** imports ordered by last update, and the key of each import in that ordering */
+    NavigableSet<UpdatedKey> byUpdated = new ConcurrentSkipListSet<UpdatedKey>();
+    Map<Long,UpdatedKey> updatedKeys = new ConcurrentHashMap<Long, UpdatedKey>();
+
+    int capacity;
+
+    public MemoryImportStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MemoryImportStore(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
 
     @Override
     public String getName() {
@@ -24,12 +62,7 @@ public class MemoryImportStore implements ImportStore {
 
     @Override
     public ImportContext get(long id) {
-        for (ImportContext context : imports) {
-            if (context.getId() == id) {
-                return context;
-            }
-        }
-        return null;
+        return imports.get(id);
     }
 
     @Override
@@ -41,52 +74,103 @@ public class MemoryImportStore implements ImportStore {
         }
         return id;
     }
-    
+
     @Override
     public void add(ImportContext context) {
         context.setId(idseq.getAndIncrement());
-        imports.add(context);
-        if (imports.size() > 100) {
+        put(context);
+        if (imports.size() > capacity) {
             clearCompletedImports();
         }
     }
-    
-    void clearCompletedImports() {
-        List<ImportContext> completed = collect(new ImportCollector() {
-            @Override
-            protected boolean capture(ImportContext context) {
-                return context.getState() == ImportContext.State.COMPLETE;
+
+    synchronized void clearCompletedImports() {
+        // evict the least recently updated completed imports until back within capacity
+        Iterator<UpdatedKey> it = byUpdated.iterator();
+        while (imports.size() > capacity && it.hasNext()) {
+            UpdatedKey key = it.next();
+            ImportContext context = imports.get(key.id);
+            if (context != null && context.getState() == ImportContext.State.COMPLETE) {
+                remove(context);
             }
-        });
-        imports.removeAll(completed);
+        }
     }
 
     @Override
     public void save(ImportContext context) {
-        imports.remove(context);
-        imports.add(context);
+        if (context.getId() == null) {
+            add(context);
+        }
+        else {
+            put(context);
+        }
+    }
+
+    synchronized void put(ImportContext context) {
+        Long id = context.getId();
+        imports.put(id, context);
+
+        UpdatedKey key = new UpdatedKey(context);
+        UpdatedKey old = updatedKeys.put(id, key);
+        if (old != null) {
+            byUpdated.remove(old);
+        }
+        byUpdated.add(key);
     }
-    
+
     @Override
-    public void remove(ImportContext importContext) {
-        imports.remove(importContext);
+    public synchronized void remove(ImportContext importContext) {
+        Long id = importContext.getId();
+        imports.remove(id);
+
+        UpdatedKey key = updatedKeys.remove(id);
+        if (key != null) {
+            byUpdated.remove(key);
+        }
     }
-    
+
     @Override
-    public void removeAll() {
+    public synchronized void removeAll() {
         imports.clear();
+        updatedKeys.clear();
+        byUpdated.clear();
     }
-    
+
     @Override
     public Iterator<ImportContext> iterator() {
-        return imports.iterator();
+        return imports.values().iterator();
     }
 
+    @Override
     public Iterator<ImportContext> iterator(String sortBy) {
+        return iterator(sortBy, 0, -1);
+    }
+
+    @Override
+    public Iterator<ImportContext> iterator(String sortBy, int offset, int limit) {
         if (sortBy == null) {
             return iterator();
         }
-        throw new UnsupportedOperationException();
+        if (!"updated".equals(sortBy)) {
+            throw new UnsupportedOperationException();
+        }
+
+        // most recently updated first
+        List<ImportContext> sorted = new ArrayList<ImportContext>();
+        int i = 0;
+        for (Iterator<UpdatedKey> it = byUpdated.descendingIterator(); 
+            it.hasNext() && (limit < 0 || sorted.size() < limit);) {
+            ImportContext context = imports.get(it.next().id);
+            if (context != null && i++ >= offset) {
+                sorted.add(context);
+            }
+        }
+        return sorted.iterator();
+    }
+
+    @Override
+    public int count() {
+        return imports.size();
     }
 
     @Override
@@ -98,7 +182,7 @@ public class MemoryImportStore implements ImportStore {
             }
         }).iterator();
     }
-    
+
     @Override
     public Iterator<ImportContext> importsByUser(final String user) {
         return collect(new ImportCollector() {
@@ -108,10 +192,10 @@ public class MemoryImportStore implements ImportStore {
             }
         }).iterator();
     }
-    
+
     @Override
     public void query(ImportVisitor visitor) {
-        for (ImportContext context : imports) {
+        for (ImportContext context : imports.values()) {
             visitor.visit(context);
         }
     }
@@ -123,7 +207,7 @@ public class MemoryImportStore implements ImportStore {
 
     @Override
     public void destroy() {
-        imports.clear();
+        removeAll();
     }
 
     static abstract class ImportCollector implements ImportVisitor {
@@ -143,4 +227,40 @@ public class MemoryImportStore implements ImportStore {
 
         protected abstract boolean capture(ImportContext context);
     }
+
+    /**
+     * Position of an import in the update ordering, the id breaks ties between imports updated
+     * at the same time.
+     */
+    static class UpdatedKey implements Comparable<UpdatedKey> {
+        final long updated;
+        final long id;
+
+        UpdatedKey(ImportContext context) {
+            this.updated = context.getUpdated() != null ? context.getUpdated().getTime() : 0;
+            this.id = context.getId();
+        }
+
+        @Override
+        public int compareTo(UpdatedKey o) {
+            if (updated != o.updated) {
+                return updated < o.updated ? -1 : 1;
+            }
+            return id < o.id ? -1 : (id == o.id ? 0 : 1);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof UpdatedKey)) {
+                return false;
+            }
+            UpdatedKey other = (UpdatedKey) obj;
+            return updated == other.updated && id == other.id;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (updated ^ (updated >>> 32)) * 31 + (int) (id ^ (id >>> 32));
+        }
+    }
 }
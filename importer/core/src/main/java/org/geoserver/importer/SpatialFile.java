@@ -7,6 +7,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 import java.util.logging.Level;
 
 import org.apache.commons.io.FileUtils;
@@ -59,6 +61,20 @@ public class SpatialFile extends FileData {
 
     @Override
     public void prepare(ProgressMonitor m) throws IOException {
+        NavigableMap<String,File> siblings = new TreeMap<String, File>();
+        for (File f : file.getParentFile().listFiles()) {
+            if (f.isFile()) {
+                siblings.put(f.getName(), f);
+            }
+        }
+        prepare(m, siblings);
+    }
+
+    /**
+     * Prepares the file given the regular files of its directory keyed by name, so that a 
+     * directory scan lists each directory only once.
+     */
+    void prepare(ProgressMonitor m, NavigableMap<String,File> siblings) throws IOException {
         //round up all the files with the same name
         suppFiles = new ArrayList();
         prjFile = null;
@@ -66,22 +82,15 @@ public class SpatialFile extends FileData {
         // getBaseName only gets the LAST extension so beware for .shp.aux.xml stuff
         final String baseName = getBaseName(file.getName());
         
-        for (File f : file.getParentFile().listFiles()) {
+        for (File f : siblings.subMap(baseName, true, baseName + Character.MAX_VALUE, false)
+                .values()) {
             if (f.equals(file)) {
                 continue;
             }
-            
-            if (!f.getName().startsWith(baseName)) {
-                continue;
-            }
-
-            if (!f.isFile()) {
-                continue;
-            }
 
             String ext = f.getName().substring(baseName.length());
             // once the basename is stripped, extension(s) should be present
-            if (ext.charAt(0) == '.') {
+            if (ext.length() > 0 && ext.charAt(0) == '.') {
                 if (".prj".equalsIgnoreCase(ext)) {
                     prjFile = f;
                 }
@@ -49,6 +49,14 @@ public class VFSWorker {
         return false;
     }
 
+    /**
+     * Whether the file is a kmz archive, which the KML format reads in place rather than having
+     * it extracted.
+     */
+    public static boolean isKMZ(final File file) {
+        return file.getName().toLowerCase().endsWith(".kmz");
+    }
+
     public static String getExtension(String name) {
         for (String supportedExtension : extensions) {
             if (name.endsWith(supportedExtension)) {
@@ -157,8 +165,35 @@ public class VFSWorker {
     /**
      * Extracts the archive file {@code archiveFile} to {@code targetFolder}; both shall previously
      * exist.
+     * <p>
+     * Zip, tar and gzipped archives are streamed straight to disk, zip entries being written in 
+     * parallel; other archives are copied through commons-vfs.
+     * </p>
      */
     public void extractTo(File archiveFile, File targetFolder) throws IOException {
+        extractTo(archiveFile, targetFolder, null);
+    }
+
+    /**
+     * Extracts the archive file, telling the listener about each directory as it is completed
+     * when the archive is streamed. Nothing is reported for archives copied through commons-vfs.
+     *
+     * @return whether the archive was streamed, rather than copied through commons-vfs
+     */
+    boolean extractTo(File archiveFile, File targetFolder, ArchiveExtractor.Listener listener) 
+        throws IOException {
+        if (ArchiveExtractor.canExtract(archiveFile)) {
+            int threads = Importer.intProperty("org.geoserver.importer.extractThreads", 
+                Math.min(4, Runtime.getRuntime().availableProcessors()));
+            try {
+                new ArchiveExtractor(threads, listener).extract(archiveFile, targetFolder);
+                return true;
+            } catch (IllegalArgumentException e) {
+                // entry names not in utf-8, let vfs deal with it
+                LOGGER.fine("Unable to stream " + archiveFile.getName() + ", falling back to vfs: "
+                    + e.getMessage());
+            }
+        }
 
         FileSystemManager manager = VFS.getManager();
         String sourceURI = resolveArchiveURI(archiveFile);
@@ -178,6 +213,7 @@ public class VFSWorker {
             }
         };
         target.copyFrom(source, selector);
+        return false;
     }
 
     @SuppressWarnings("unchecked")
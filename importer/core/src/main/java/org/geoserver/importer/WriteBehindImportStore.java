@@ -0,0 +1,236 @@
+package org.geoserver.importer;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.util.logging.Logging;
+
+/**
+ * Import store that delays and coalesces saves before handing them to another store.
+ * <p>
+ * A save of an import that has already been persisted is buffered, and written after a delay
+ * along with any other saves of the same import made in the meantime. Saves that change the
+ * state of the import or of one of its tasks, or record a new checkpoint, are written right
+ * away, as are new imports. Buffered imports are also written before any query of the store and
+ * when the store is destroyed.
+ * </p>
+ * <p>
+ * Lookups of a single import are served from the buffer when the import has unwritten changes.
+ * </p>
+ */
+public class WriteBehindImportStore implements ImportStore {
+
+    static Logger LOGGER = Logging.getLogger(WriteBehindImportStore.class);
+
+    ImportStore delegate;
+
+    /** delay in milliseconds before a buffered save is written */
+    long delay;
+
+    /** imports with unwritten changes, by id */
+    ConcurrentMap<Long,ImportContext> dirty = new ConcurrentHashMap<Long, ImportContext>();
+
+    /** state of each import as last written, by id */
+    Map<Long,String> written = new ConcurrentHashMap<Long, String>();
+
+    AtomicBoolean scheduled = new AtomicBoolean();
+
+    ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "importer-store-writer");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+    public WriteBehindImportStore(ImportStore delegate, long delay) {
+        this.delegate = delegate;
+        this.delay = delay;
+    }
+
+    public ImportStore getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public void init() {
+        delegate.init();
+    }
+
+    @Override
+    public Long advanceId(Long id) {
+        return delegate.advanceId(id);
+    }
+
+    @Override
+    public ImportContext get(long id) {
+        ImportContext context = dirty.get(id);
+        return context != null ? context : delegate.get(id);
+    }
+
+    @Override
+    public void add(ImportContext context) {
+        delegate.add(context);
+        written.put(context.getId(), state(context));
+    }
+
+    @Override
+    public void save(ImportContext context) {
+        Long id = context.getId();
+        String state = state(context);
+        if (id == null || !state.equals(written.get(id))) {
+            // new import or state transition, write through
+            if (id != null) {
+                dirty.remove(id);
+            }
+            write(context, state);
+            return;
+        }
+
+        dirty.put(id, context);
+        schedule();
+    }
+
+    void schedule() {
+        if (!executor.isShutdown() && scheduled.compareAndSet(false, true)) {
+            executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    scheduled.set(false);
+                    flush();
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void remove(ImportContext importContext) {
+        dirty.remove(importContext.getId());
+        written.remove(importContext.getId());
+        delegate.remove(importContext);
+    }
+
+    @Override
+    public void removeAll() {
+        dirty.clear();
+        written.clear();
+        delegate.removeAll();
+    }
+
+    @Override
+    public Iterator<ImportContext> iterator() {
+        flush();
+        return delegate.iterator();
+    }
+
+    @Override
+    public Iterator<ImportContext> iterator(String sortBy) {
+        flush();
+        return delegate.iterator(sortBy);
+    }
+
+    @Override
+    public Iterator<ImportContext> iterator(String sortBy, int offset, int limit) {
+        flush();
+        return delegate.iterator(sortBy, offset, limit);
+    }
+
+    @Override
+    public int count() {
+        flush();
+        return delegate.count();
+    }
+
+    @Override
+    public Iterator<ImportContext> allNonCompleteImports() {
+        flush();
+        return delegate.allNonCompleteImports();
+    }
+
+    @Override
+    public Iterator<ImportContext> importsByUser(String user) {
+        flush();
+        return delegate.importsByUser(user);
+    }
+
+    @Override
+    public void query(ImportVisitor visitor) {
+        flush();
+        delegate.query(visitor);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+        flush();
+        delegate.destroy();
+    }
+
+    /**
+     * Writes all buffered imports. Each import is written holding its lock, like the importer
+     * does when saving it, so it is not serialized while a task is changing it. Imports that
+     * fail to be written are buffered again and retried later.
+     */
+    public void flush() {
+        List<ImportContext> failed = new ArrayList<ImportContext>();
+        for (Long id : dirty.keySet()) {
+            ImportContext context = dirty.remove(id);
+            if (context != null) {
+                synchronized (context) {
+                    try {
+                        write(context, state(context));
+                    }
+                    catch(RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Error saving import " + id, e);
+                        failed.add(context);
+                    }
+                }
+            }
+        }
+
+        if (!failed.isEmpty()) {
+            for (ImportContext context : failed) {
+                // keep any newer save made in the meantime
+                dirty.putIfAbsent(context.getId(), context);
+            }
+            schedule();
+        }
+    }
+
+    void write(ImportContext context, String state) {
+        delegate.save(context);
+        written.put(context.getId(), state);
+    }
+
+    /*
+     * the state of an import and its tasks, along with task checkpoints, which must never be
+     * lost on a crash
+     */
+    String state(ImportContext context) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(context.getState());
+        for (ImportTask task : context.getTasks()) {
+            sb.append(',').append(task.getId()).append(':').append(task.getState())
+              .append(':').append(task.getCheckpointOffset());
+        }
+        return sb.toString();
+    }
+}
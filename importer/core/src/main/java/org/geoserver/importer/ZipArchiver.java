@@ -0,0 +1,594 @@
+package org.geoserver.importer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FilenameUtils;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Zips up a directory compressing each file in blocks on several threads.
+ * <p>
+ * Files are read in blocks that are deflated independently, each block but the last ending
+ * with a sync flush so that the compressed blocks concatenate into a single deflate stream.
+ * Files that are already compressed, such as tiffs, jpeg 2000 and zip files, are stored as is,
+ * as is everything when the level is 0.
+ * </p>
+ * <p>
+ * Archives too large for the plain zip format are written through {@link ZipOutputStream} on
+ * a single thread instead. The size of the archive is estimated up front, and should the 
+ * estimate fall short the archive is rewritten as soon as an offset or size overflows.
+ * </p>
+ */
+class ZipArchiver {
+
+    static Logger LOGGER = Logging.getLogger(ZipArchiver.class);
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /** extensions of files stored without compression */
+    static final Set<String> STORED_EXTENSIONS = new HashSet<String>(Arrays.asList("tif", "tiff",
+        "jp2", "j2k", "ecw", "sid", "jpg", "jpeg", "png", "zip", "kmz", "gz", "tgz", "bz2"));
+
+    /** size of the blocks compressed in parallel */
+    static final int BLOCK_SIZE = 1024 * 1024;
+
+    /** largest size or offset, and number of entries, the plain zip format can hold */
+    static final long ZIP_LIMIT = 0xFFFFFFFFL;
+    static final int ZIP64_ENTRIES = 0xFFFF;
+
+    int level;
+
+    int threads;
+
+    /** largest size or offset written without the zip64 extensions */
+    long limit = ZIP_LIMIT;
+
+    /** archive being written */
+    volatile File output;
+
+    volatile boolean aborted;
+
+    boolean done;
+
+    ZipArchiver(int level, int threads) {
+        this.level = level;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Whether a file is stored rather than deflated.
+     */
+    boolean isStored(File file) {
+        return level == 0 ||
+            STORED_EXTENSIONS.contains(FilenameUtils.getExtension(file.getName()).toLowerCase());
+    }
+
+    void archive(File dir, File output) throws IOException {
+        List<File> files = new ArrayList<File>();
+        list(dir, files);
+
+        this.output = output;
+        write(dir, files, output);
+        synchronized (this) {
+            if (aborted) {
+                throw new InterruptedIOException("Archiving aborted");
+            }
+            done = true;
+        }
+    }
+
+    void write(File dir, List<File> files, File output) throws IOException {
+        if (estimate(dir, files) <= limit && files.size() < ZIP64_ENTRIES) {
+            OutputStream out = open(output);
+            try {
+                archiveParallel(dir, files, out);
+                return;
+            }
+            catch(ZipOverflowException e) {
+                // estimate fell short, start over with zip64
+                LOGGER.log(Level.FINE, "Archive too large for plain zip, rewriting", e);
+            }
+            finally {
+                out.close();
+            }
+        }
+
+        OutputStream out = open(output);
+        try {
+            archiveLarge(dir, files, out);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    OutputStream open(File output) throws IOException {
+        return new BufferedOutputStream(new FileOutputStream(output), 64 * 1024);
+    }
+
+    /**
+     * Stops the archive being written and deletes what was written of it.
+     *
+     * @return <code>false</code> if the archive was already complete and has been left alone
+     */
+    boolean abort() {
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            aborted = true;
+        }
+        File f = output;
+        if (f != null && f.exists() && !f.delete()) {
+            LOGGER.warning("Unable to delete partial archive " + f.getAbsolutePath());
+        }
+        return true;
+    }
+
+    void checkAborted() throws IOException {
+        if (aborted || Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Archiving aborted");
+        }
+    }
+
+    /**
+     * Estimates the size of the archive on the high side, counting headers, data descriptors,
+     * the central directory and the worst case expansion of deflating incompressible data.
+     */
+    long estimate(File dir, List<File> files) {
+        // end of central directory record
+        long total = 22;
+        for (File f : files) {
+            long size = f.length();
+            int name = entryName(dir, f).getBytes(UTF8).length;
+
+            // local header and central directory entry
+            total += 30 + 46 + 2 * name;
+            if (isStored(f)) {
+                total += size;
+            }
+            else {
+                // stored deflate blocks cost 5 bytes per 16k at worst, plus the sync flush 
+                // and last block markers, and a data descriptor
+                total += size + (size / 16384 + 1) * 5 + (size / BLOCK_SIZE + 1) * 16 + 16;
+            }
+        }
+        return total;
+    }
+
+    void list(File dir, List<File> files) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File f : children) {
+            if (f.isDirectory()) {
+                list(f, files);
+            }
+            else {
+                files.add(f);
+            }
+        }
+    }
+
+    String entryName(File dir, File file) {
+        String root = dir.getAbsolutePath();
+        String path = file.getAbsolutePath().substring(root.length() + 1);
+        return path.replace(File.separatorChar, '/');
+    }
+
+    /*
+     * zip64 capable fallback through ZipOutputStream
+     */
+    void archiveLarge(File dir, List<File> files, OutputStream out) throws IOException {
+        ZipOutputStream zout = new ZipOutputStream(out);
+        zout.setLevel(level);
+        byte[] buf = new byte[64 * 1024];
+        for (File f : files) {
+            ZipEntry entry = new ZipEntry(entryName(dir, f));
+            entry.setTime(f.lastModified());
+            zout.putNextEntry(entry);
+            InputStream in = new FileInputStream(f);
+            try {
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    checkAborted();
+                    zout.write(buf, 0, n);
+                }
+            }
+            finally {
+                in.close();
+            }
+            zout.closeEntry();
+        }
+        zout.finish();
+    }
+
+    void archiveParallel(File dir, List<File> files, OutputStream out) throws IOException {
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads,
+            new ThreadFactory() {
+                AtomicInteger seq = new AtomicInteger();
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "importer-archive-" + seq.getAndIncrement());
+                    t.setDaemon(true);
+                    return t;
+                }
+            }) : null;
+        try {
+            ZipWriter zip = new ZipWriter(out);
+            for (File f : files) {
+                String name = entryName(dir, f);
+                if (isStored(f)) {
+                    zip.store(name, f);
+                }
+                else {
+                    zip.deflate(name, f, executor);
+                }
+            }
+            zip.finish();
+        }
+        finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Deflates a block on its own, ending it with a sync flush unless it is the last one of the
+     * file.
+     */
+    byte[] deflate(byte[] data, int len, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, 0, len);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(len / 2 + 64);
+            byte[] buf = new byte[64 * 1024];
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    int n = deflater.deflate(buf);
+                    out.write(buf, 0, n);
+                }
+            }
+            else {
+                int n;
+                do {
+                    n = deflater.deflate(buf, 0, buf.length, Deflater.SYNC_FLUSH);
+                    out.write(buf, 0, n);
+                } while (n == buf.length);
+            }
+            return out.toByteArray();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Writes the zip structures, local headers followed by data and a data descriptor for each
+     * entry and the central directory at the end.
+     */
+    class ZipWriter {
+
+        static final int STORED = 0;
+        static final int DEFLATED = 8;
+
+        /** utf-8 names, and sizes in a data descriptor following the data */
+        static final int FLAG_UTF8 = 0x0800;
+        static final int FLAG_DESCRIPTOR = 0x0008;
+
+        OutputStream out;
+
+        long offset;
+
+        ByteArrayOutputStream central = new ByteArrayOutputStream();
+
+        int entries;
+
+        ZipWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        void store(String name, File f) throws IOException {
+            // stored entries need the crc up front
+            CRC32 crc = new CRC32();
+            byte[] buf = new byte[64 * 1024];
+            InputStream in = new FileInputStream(f);
+            try {
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    checkAborted();
+                    crc.update(buf, 0, n);
+                }
+            }
+            finally {
+                in.close();
+            }
+
+            long size = f.length();
+            check(size);
+            long headerOffset = offset;
+            byte[] nameBytes = name.getBytes(UTF8);
+            int[] time = dosTime(f.lastModified());
+            writeLocalHeader(nameBytes, FLAG_UTF8, STORED, time, crc.getValue(), size, size);
+
+            in = new FileInputStream(f);
+            try {
+                int n;
+                while ((n = in.read(buf)) > 0) {
+                    write(buf, 0, n);
+                }
+            }
+            finally {
+                in.close();
+            }
+
+            addCentral(nameBytes, FLAG_UTF8, STORED, time, crc.getValue(), size, size,
+                headerOffset);
+        }
+
+        void deflate(String name, File f, ExecutorService executor) throws IOException {
+            long headerOffset = offset;
+            byte[] nameBytes = name.getBytes(UTF8);
+            int[] time = dosTime(f.lastModified());
+            int flags = FLAG_UTF8 | FLAG_DESCRIPTOR;
+            writeLocalHeader(nameBytes, flags, DEFLATED, time, 0, 0, 0);
+
+            CRC32 crc = new CRC32();
+            long size = 0;
+            long start = offset;
+
+            // blocks in flight, written out in order as they complete
+            Deque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+            int maxPending = threads * 2;
+
+            InputStream in = new FileInputStream(f);
+            try {
+                byte[] data = new byte[BLOCK_SIZE];
+                int len = read(in, data);
+                while (true) {
+                    crc.update(data, 0, len);
+                    size += len;
+
+                    // look ahead to know whether this is the last block
+                    byte[] next = len < BLOCK_SIZE ? null : new byte[BLOCK_SIZE];
+                    int nextLen = next != null ? read(in, next) : 0;
+                    boolean last = nextLen == 0;
+
+                    if (executor == null) {
+                        write(ZipArchiver.this.deflate(data, len, last));
+                    }
+                    else {
+                        pending.add(executor.submit(new Block(data, len, last)));
+                        while (pending.size() >= maxPending || (last && !pending.isEmpty())) {
+                            write(get(pending.poll()));
+                        }
+                    }
+
+                    if (last) {
+                        break;
+                    }
+                    data = next;
+                    len = nextLen;
+                }
+            }
+            finally {
+                in.close();
+                for (Future<byte[]> block : pending) {
+                    block.cancel(true);
+                }
+            }
+
+            long csize = offset - start;
+            check(size);
+
+            // data descriptor
+            writeInt(0x08074b50);
+            writeInt(crc.getValue());
+            writeInt(csize);
+            writeInt(size);
+
+            addCentral(nameBytes, flags, DEFLATED, time, crc.getValue(), csize, size,
+                headerOffset);
+        }
+
+        /*
+         * fills the buffer as far as the stream allows, returning the number of bytes read
+         */
+        int read(InputStream in, byte[] buf) throws IOException {
+            int len = 0;
+            int n;
+            while (len < buf.length && (n = in.read(buf, len, buf.length - len)) > 0) {
+                len += n;
+            }
+            return len;
+        }
+
+        byte[] get(Future<byte[]> f) throws IOException {
+            try {
+                return f.get();
+            } catch (InterruptedException e) {
+                throw (IOException) new IOException("Interrupted archiving").initCause(e);
+            } catch (ExecutionException e) {
+                throw (IOException) new IOException("Error compressing").initCause(e.getCause());
+            }
+        }
+
+        void writeLocalHeader(byte[] name, int flags, int method, int[] time, long crc,
+            long csize, long size) throws IOException {
+            entries++;
+            writeInt(0x04034b50);
+            writeShort(20);
+            writeShort(flags);
+            writeShort(method);
+            writeShort(time[0]);
+            writeShort(time[1]);
+            writeInt(crc);
+            writeInt(csize);
+            writeInt(size);
+            writeShort(name.length);
+            writeShort(0);
+            write(name);
+        }
+
+        void addCentral(byte[] name, int flags, int method, int[] time, long crc, long csize,
+            long size, long headerOffset) throws IOException {
+            OutputStream saved = out;
+            long savedOffset = offset;
+            out = central;
+            try {
+                writeInt(0x02014b50);
+                writeShort(20);
+                writeShort(20);
+                writeShort(flags);
+                writeShort(method);
+                writeShort(time[0]);
+                writeShort(time[1]);
+                writeInt(crc);
+                writeInt(csize);
+                writeInt(size);
+                writeShort(name.length);
+                writeShort(0);
+                writeShort(0);
+                writeShort(0);
+                writeShort(0);
+                writeInt(0);
+                writeInt(headerOffset);
+                write(name);
+            }
+            finally {
+                out = saved;
+                offset = savedOffset;
+            }
+        }
+
+        void finish() throws IOException {
+            long centralOffset = offset;
+            byte[] dir = central.toByteArray();
+            write(dir);
+            check(offset + 22);
+
+            writeInt(0x06054b50);
+            writeShort(0);
+            writeShort(0);
+            writeShort(entries);
+            writeShort(entries);
+            writeInt(dir.length);
+            writeInt(centralOffset);
+            writeShort(0);
+            out.flush();
+        }
+
+        void write(byte[] b) throws IOException {
+            write(b, 0, b.length);
+        }
+
+        void write(byte[] b, int off, int len) throws IOException {
+            checkAborted();
+            out.write(b, off, len);
+            offset += len;
+            check(offset);
+        }
+
+        /*
+         * fails with a ZipOverflowException once a size or offset no longer fits in 32 bits,
+         * offsets only grow so checking after each write covers the header offsets as well
+         */
+        void check(long v) throws ZipOverflowException {
+            if (v > limit) {
+                throw new ZipOverflowException(v);
+            }
+        }
+
+        void writeShort(int v) throws IOException {
+            out.write(v & 0xff);
+            out.write((v >>> 8) & 0xff);
+            offset += 2;
+        }
+
+        void writeInt(long v) throws IOException {
+            out.write((int) (v & 0xff));
+            out.write((int) ((v >>> 8) & 0xff));
+            out.write((int) ((v >>> 16) & 0xff));
+            out.write((int) ((v >>> 24) & 0xff));
+            offset += 4;
+        }
+    }
+
+    /**
+     * Thrown when the archive outgrows the plain zip format.
+     */
+    static class ZipOverflowException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ZipOverflowException(long v) {
+            super(v + " exceeds the size limit of a plain zip archive");
+        }
+    }
+
+    class Block implements Callable<byte[]> {
+        byte[] data;
+        int len;
+        boolean last;
+
+        Block(byte[] data, int len, boolean last) {
+            this.data = data;
+            this.len = len;
+            this.last = last;
+        }
+
+        @Override
+        public byte[] call() throws Exception {
+            return deflate(data, len, last);
+        }
+    }
+
+    /**
+     * Converts a timestamp to the ms-dos time and date used by zip entries.
+     */
+    static int[] dosTime(long time) {
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(time);
+        int year = c.get(Calendar.YEAR);
+        if (year < 1980) {
+            return new int[] { 0, (1 << 5) | 1 };
+        }
+        int dosTime = (c.get(Calendar.HOUR_OF_DAY) << 11) | (c.get(Calendar.MINUTE) << 5)
+            | (c.get(Calendar.SECOND) >> 1);
+        int dosDate = ((year - 1980) << 9) | ((c.get(Calendar.MONTH) + 1) << 5)
+            | c.get(Calendar.DAY_OF_MONTH);
+        return new int[] { dosTime, dosDate };
+    }
+}
@@ -88,4 +88,8 @@ public class CSVDataStore extends ContentDataStore implements FileDataStore {
         return csvStrategy;
     }
 
+    public CSVFileState getCSVFileState() {
+        return csvFileState;
+    }
+
 }
@@ -44,7 +44,11 @@ public class CSVDataStoreFactory implements FileDataStoreFactorySpi {
     public static final Param WKTP = new Param("wktField", String.class,
             "WKT field. Assumes a CSVSpecifiedWKTStrategy", false);
 
-    public static final Param[] parametersInfo = new Param[] { FILE_PARAM };
+    public static final Param SAMPLEP = new Param("sampleSize", Integer.class,
+            "Number of records sampled to profile the file, 0 to read every record", false, null,
+            new KVP(Param.LEVEL, "advanced"));
+
+    public static final Param[] parametersInfo = new Param[] { FILE_PARAM, SAMPLEP };
 
     @Override
     public String getDisplayName() {
@@ -133,6 +137,10 @@ public class CSVDataStoreFactory implements FileDataStoreFactorySpi {
     private FileDataStore createDataStoreFromFile(File file, URI namespace,
             Map<String, Serializable> params) throws IOException {
         CSVFileState csvFileState = new CSVFileState(file, namespace);
+        Integer sampleSize = (Integer) SAMPLEP.lookUp(params);
+        if (sampleSize != null) {
+            csvFileState.setSampleSize(sampleSize);
+        }
         Object strategyParam = STRATEGYP.lookUp(params);
         CSVStrategy csvStrategy = null;
         if (strategyParam != null) {
@@ -9,6 +9,7 @@ import org.geotools.data.store.ContentFeatureSource;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.filter.Filter;
 
 @SuppressWarnings("unchecked")
 public class CSVFeatureSource extends ContentFeatureSource {
@@ -34,6 +35,14 @@ public class CSVFeatureSource extends ContentFeatureSource {
     }
 
     protected ReferencedEnvelope getBoundsInternal(Query query) throws IOException {
+        if (isAll(query)) {
+            // use the bounds gathered when the file was profiled if the strategy knows them
+            ReferencedEnvelope bounds = getDataStore().getCSVStrategy().getBounds();
+            if (bounds != null) {
+                return bounds;
+            }
+        }
+
         ReferencedEnvelope bounds = new ReferencedEnvelope(getSchema()
                 .getCoordinateReferenceSystem());
         FeatureReader<SimpleFeatureType, SimpleFeature> featureReader = getReader(query);
@@ -49,6 +58,11 @@ public class CSVFeatureSource extends ContentFeatureSource {
     }
 
     protected int getCountInternal(Query query) throws IOException {
+        if (isAll(query)) {
+            long count = getDataStore().getCSVFileState().getProfile().getCount();
+            return (int) Math.min(count, Integer.MAX_VALUE);
+        }
+
         FeatureReader<SimpleFeatureType, SimpleFeature> featureReader = getReader(query);
         int n = 0;
         try {
@@ -61,6 +75,11 @@ public class CSVFeatureSource extends ContentFeatureSource {
         return n;
     }
 
+    boolean isAll(Query query) {
+        return (query.getFilter() == null || query.getFilter() == Filter.INCLUDE)
+                && query.getStartIndex() == null && query.isMaxFeaturesUnlimited();
+    }
+
     protected FeatureReader<SimpleFeatureType, SimpleFeature> getReaderInternal(Query query)
             throws IOException {
         CSVDataStore dataStore = getDataStore();
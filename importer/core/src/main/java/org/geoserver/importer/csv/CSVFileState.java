@@ -33,6 +33,16 @@ public class CSVFileState {
 
     private volatile String[] headers = null;
 
+    /** number of records to sample when profiling, 0 to profile every record */
+    private volatile int sampleSize = 0;
+
+    /** cached profile, along with the size and modification time of the file it was read from */
+    private CSVProfile profile;
+
+    private long profileLength;
+
+    private long profileModified;
+
     public CSVFileState(File file) {
         this(file, null, null, null);
     }
@@ -111,6 +121,46 @@ public class CSVFileState {
         return headers;
     }
 
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    public synchronized void setSampleSize(int sampleSize) {
+        if (sampleSize != this.sampleSize) {
+            this.sampleSize = sampleSize;
+            profile = null;
+        }
+    }
+
+    /**
+     * Returns the profile of the file, reading the file only if it has not been read yet or has
+     * changed since.
+     */
+    public synchronized CSVProfile getProfile() {
+        long length = file != null ? file.length() : 0;
+        long modified = file != null ? file.lastModified() : 0;
+        if (profile == null || length != profileLength || modified != profileModified) {
+            profile = readProfile();
+            profileLength = length;
+            profileModified = modified;
+        }
+        return profile;
+    }
+
+    private CSVProfile readProfile() {
+        CsvReader csvReader = null;
+        try {
+            csvReader = openCSVReader();
+            return CSVProfile.profile(csvReader, csvReader.getHeaders(), sampleSize);
+        } catch (IOException e) {
+            throw new RuntimeException("Failure reading csv file", e);
+        } finally {
+            if (csvReader != null) {
+                csvReader.close();
+            }
+        }
+    }
+
     private String[] readCSVHeaders() {
         CsvReader csvReader = null;
         try {
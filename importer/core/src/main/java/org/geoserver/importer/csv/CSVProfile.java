@@ -0,0 +1,186 @@
+package org.geoserver.importer.csv;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.csvreader.CsvReader;
+
+/**
+ * Summary of the contents of a csv file gathered in a single read: the most specific type of
+ * each column, the number of records and the range of each numeric column.
+ * <p>
+ * When profiling with a sample size the column types and ranges are computed from the first
+ * records of the file plus a random sample of the rest, the record count is always exact.
+ * </p>
+ */
+public class CSVProfile {
+
+    private final String[] headers;
+
+    private final Class<?>[] types;
+
+    private final double[] min;
+
+    private final double[] max;
+
+    private long count;
+
+    private boolean sampled;
+
+    CSVProfile(String[] headers) {
+        this.headers = headers;
+        this.types = new Class<?>[headers.length];
+        this.min = new double[headers.length];
+        this.max = new double[headers.length];
+
+        // start off assuming Integers for everything
+        Arrays.fill(types, Integer.class);
+        Arrays.fill(min, Double.NaN);
+        Arrays.fill(max, Double.NaN);
+    }
+
+    /**
+     * Profiles the remaining records of a reader positioned after the headers.
+     *
+     * @param sampleSize number of records to sample, 0 to profile every record
+     */
+    public static CSVProfile profile(CsvReader csvReader, String[] headers, int sampleSize)
+            throws IOException {
+        CSVProfile profile = new CSVProfile(headers);
+        if (sampleSize <= 0) {
+            while (csvReader.readRecord()) {
+                profile.include(csvReader.getValues());
+                profile.count++;
+            }
+            return profile;
+        }
+
+        // the first records, then a reservoir sample of the rest
+        Random random = new Random(0);
+        List<String[]> reservoir = new ArrayList<String[]>(sampleSize);
+        long seen = 0;
+        while (csvReader.readRecord()) {
+            profile.count++;
+            if (profile.count <= sampleSize) {
+                profile.include(csvReader.getValues());
+                continue;
+            }
+
+            seen++;
+            if (reservoir.size() < sampleSize) {
+                reservoir.add(csvReader.getValues());
+            } else {
+                long i = (long) (random.nextDouble() * seen);
+                if (i < sampleSize) {
+                    reservoir.set((int) i, csvReader.getValues());
+                }
+            }
+        }
+        for (String[] record : reservoir) {
+            profile.include(record);
+        }
+        profile.sampled = seen > reservoir.size();
+        return profile;
+    }
+
+    void include(String[] record) {
+        int n = Math.min(record.length, headers.length);
+        for (int i = 0; i < n; i++) {
+            String value = record[i];
+            Class<?> type = types[i];
+            if (type == String.class) {
+                continue;
+            }
+
+            double d;
+            if (type == Integer.class) {
+                try {
+                    d = Integer.parseInt(value);
+                } catch (NumberFormatException e) {
+                    try {
+                        d = Double.parseDouble(value);
+                        types[i] = Double.class;
+                    } catch (NumberFormatException ex) {
+                        types[i] = String.class;
+                        continue;
+                    }
+                }
+            } else {
+                try {
+                    d = Double.parseDouble(value);
+                } catch (NumberFormatException e) {
+                    types[i] = String.class;
+                    continue;
+                }
+            }
+
+            if (Double.isNaN(min[i]) || d < min[i]) {
+                min[i] = d;
+            }
+            if (Double.isNaN(max[i]) || d > max[i]) {
+                max[i] = d;
+            }
+        }
+    }
+
+    public String[] getHeaders() {
+        return headers;
+    }
+
+    /**
+     * The most specific type of each column, keyed by column name.
+     */
+    public Map<String, Class<?>> getTypes() {
+        Map<String, Class<?>> result = new HashMap<String, Class<?>>();
+        for (int i = 0; i < headers.length; i++) {
+            result.put(headers[i], types[i]);
+        }
+        return result;
+    }
+
+    /**
+     * The number of records in the file, excluding the header.
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Whether the types and ranges were computed from a sample of the records.
+     */
+    public boolean isSampled() {
+        return sampled;
+    }
+
+    /**
+     * The smallest value of a numeric column, <code>NaN</code> if the column is not numeric or
+     * has no values.
+     */
+    public double getMin(String column) {
+        int i = indexOf(column);
+        return i >= 0 && types[i] != String.class ? min[i] : Double.NaN;
+    }
+
+    /**
+     * The largest value of a numeric column, <code>NaN</code> if the column is not numeric or
+     * has no values.
+     */
+    public double getMax(String column) {
+        int i = indexOf(column);
+        return i >= 0 && types[i] != String.class ? max[i] : Double.NaN;
+    }
+
+    int indexOf(String column) {
+        for (int i = 0; i < headers.length; i++) {
+            if (headers[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
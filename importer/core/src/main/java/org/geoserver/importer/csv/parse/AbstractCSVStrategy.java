@@ -2,7 +2,10 @@ package org.geoserver.importer.csv.parse;
 
 import java.io.IOException;
 
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geoserver.importer.csv.CSVFileState;
+import org.geoserver.importer.csv.CSVProfile;
+import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 
 public abstract class AbstractCSVStrategy implements CSVStrategy {
@@ -35,4 +38,44 @@ public abstract class AbstractCSVStrategy implements CSVStrategy {
         return new CSVIterator(csvFileState, this);
     }
 
+    @Override
+    public SimpleFeature createFeature(String recordId, String[] csvRecord) {
+        return createFeatureBuilder().build(recordId, csvRecord);
+    }
+
+    /**
+     * Creates a builder copying every column to the attribute of the same name, subclasses 
+     * add the columns the geometry is built from.
+     */
+    @Override
+    public CSVFeatureBuilder createFeatureBuilder() {
+        return new CSVFeatureBuilder(getFeatureType(), csvFileState.getCSVHeaders(),
+                csvFileState.getTypeName() + "-");
+    }
+
+    @Override
+    public ReferencedEnvelope getBounds() {
+        return null;
+    }
+
+    /**
+     * Computes bounds from the range of the columns holding x and y, <code>null</code> if the 
+     * file was profiled from a sample.
+     */
+    protected ReferencedEnvelope getBounds(String xField, String yField) {
+        CSVProfile profile = csvFileState.getProfile();
+        if (profile.isSampled()) {
+            return null;
+        }
+
+        ReferencedEnvelope bounds = new ReferencedEnvelope(
+                getFeatureType().getCoordinateReferenceSystem());
+        double minx = profile.getMin(xField), maxx = profile.getMax(xField);
+        double miny = profile.getMin(yField), maxy = profile.getMax(yField);
+        if (!Double.isNaN(minx) && !Double.isNaN(miny)) {
+            bounds.init(minx, maxx, miny, maxy);
+        }
+        return bounds;
+    }
+
 }
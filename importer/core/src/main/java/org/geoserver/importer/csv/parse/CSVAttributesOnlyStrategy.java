@@ -1,9 +1,7 @@
 package org.geoserver.importer.csv.parse;
 
-import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geoserver.importer.csv.CSVFileState;
-import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 
 public class CSVAttributesOnlyStrategy extends AbstractCSVStrategy implements CSVStrategy {
@@ -17,23 +15,4 @@ public class CSVAttributesOnlyStrategy extends AbstractCSVStrategy implements CS
         return builder.buildFeatureType();
     }
 
-    @Override
-    public SimpleFeature createFeature(String recordId, String[] csvRecord) {
-        SimpleFeatureType featureType = getFeatureType();
-        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(featureType);
-        String[] headers;
-        headers = csvFileState.getCSVHeaders();
-        for (int i = 0; i < headers.length; i++) {
-            String header = headers[i];
-            if (i < csvRecord.length) {
-                String value = csvRecord[i].trim();
-                builder.set(header, value);
-            } else {
-                // geotools converters take care of converting for us
-                builder.set(header, null);
-            }
-        }
-        return builder.buildFeature(csvFileState.getTypeName() + "-" + recordId);
-    }
-
 }
@@ -0,0 +1,150 @@
+package org.geoserver.importer.csv.parse;
+
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.GeometryDescriptor;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKTReader;
+
+/**
+ * Builds features from csv records following a plan worked out once per file: the attribute each
+ * column maps to, and the columns the geometry is built from.
+ * <p>
+ * The feature builder and geometry factory are reused for every record, so an instance must
+ * not be shared between threads. Each {@link CSVIterator} uses its own.
+ * </p>
+ */
+public class CSVFeatureBuilder {
+
+    private final SimpleFeatureType featureType;
+
+    private final SimpleFeatureBuilder builder;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    private final String idPrefix;
+
+    /** index of the attribute each column is copied to, -1 for columns not copied as is */
+    private final int[] attributes;
+
+    /** geometry attribute and the columns it is built from */
+    private int geometryAttribute = -1;
+
+    private int xColumn = -1;
+
+    private int yColumn = -1;
+
+    private int wktColumn = -1;
+
+    private WKTReader wktReader;
+
+    /** number of records left without a geometry as their coordinates could not be parsed */
+    private long skipped;
+
+    public CSVFeatureBuilder(SimpleFeatureType featureType, String[] headers, String idPrefix) {
+        this.featureType = featureType;
+        this.builder = new SimpleFeatureBuilder(featureType);
+        this.idPrefix = idPrefix;
+        this.attributes = new int[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            attributes[i] = featureType.indexOf(headers[i]);
+        }
+    }
+
+    /**
+     * Builds a point geometry from the x and y columns, if the feature type has a geometry.
+     */
+    public void setPointColumns(int xColumn, int yColumn) {
+        GeometryDescriptor geometryDescriptor = featureType.getGeometryDescriptor();
+        if (geometryDescriptor == null || xColumn < 0 || yColumn < 0) {
+            return;
+        }
+        this.geometryAttribute = featureType.indexOf(geometryDescriptor.getLocalName());
+        this.xColumn = xColumn;
+        this.yColumn = yColumn;
+        skipColumn(xColumn);
+        skipColumn(yColumn);
+    }
+
+    /**
+     * Parses the geometry from a column holding WKT, if the feature type has a geometry.
+     */
+    public void setWKTColumn(int wktColumn) {
+        GeometryDescriptor geometryDescriptor = featureType.getGeometryDescriptor();
+        if (geometryDescriptor == null || wktColumn < 0) {
+            return;
+        }
+        this.geometryAttribute = featureType.indexOf(geometryDescriptor.getLocalName());
+        this.wktColumn = wktColumn;
+        this.wktReader = new WKTReader(geometryFactory);
+        skipColumn(wktColumn);
+    }
+
+    /**
+     * Excludes a column from the attributes copied as is.
+     */
+    public void skipColumn(int column) {
+        if (column >= 0 && column < attributes.length) {
+            attributes[column] = -1;
+        }
+    }
+
+    public SimpleFeature build(String recordId, String[] csvRecord) {
+        double x = Double.NaN, y = Double.NaN;
+
+        int n = Math.min(csvRecord.length, attributes.length);
+        for (int i = 0; i < n; i++) {
+            if (i == xColumn) {
+                x = parseDouble(csvRecord[i]);
+            } else if (i == yColumn) {
+                y = parseDouble(csvRecord[i]);
+            } else if (i == wktColumn) {
+                builder.set(geometryAttribute, parseWKT(csvRecord[i]));
+            } else if (attributes[i] >= 0) {
+                // missing columns are left null, the builder is reset after each feature
+                builder.set(attributes[i], csvRecord[i].trim());
+            }
+        }
+
+        if (xColumn >= 0) {
+            if (!Double.isNaN(x) && !Double.isNaN(y)) {
+                builder.set(geometryAttribute, geometryFactory.createPoint(new Coordinate(x, y)));
+            } else {
+                skipped++;
+            }
+        }
+        return builder.buildFeature(idPrefix + recordId);
+    }
+
+    /**
+     * Number of records built so far without a geometry because their coordinates or WKT could
+     * not be parsed.
+     */
+    public long getSkipped() {
+        return skipped;
+    }
+
+    double parseDouble(String value) {
+        try {
+            return Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            // no geometry for this record
+            return Double.NaN;
+        }
+    }
+
+    Geometry parseWKT(String value) {
+        try {
+            return wktReader.read(value.trim());
+        } catch (ParseException e) {
+            // policy decision here that just nulls out unparseable geometry
+            skipped++;
+            return null;
+        }
+    }
+}
@@ -3,32 +3,38 @@ package org.geoserver.importer.csv.parse;
 import java.io.IOException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.logging.Logger;
 
 import org.geoserver.importer.csv.CSVFileState;
+import org.geotools.util.logging.Logging;
 import org.opengis.feature.simple.SimpleFeature;
 
 import com.csvreader.CsvReader;
 
 public class CSVIterator implements Iterator<SimpleFeature> {
 
+    static Logger LOGGER = Logging.getLogger(CSVIterator.class);
+
     private int idx;
 
     private SimpleFeature next;
 
     private final CsvReader csvReader;
 
-    private final CSVStrategy csvStrategy;
+    private final CSVFeatureBuilder featureBuilder;
+
+    private final CSVFileState csvFileState;
 
     public CSVIterator(CSVFileState csvFileState, CSVStrategy csvStrategy) throws IOException {
-        this.csvStrategy = csvStrategy;
+        this.csvFileState = csvFileState;
+        featureBuilder = csvStrategy.createFeatureBuilder();
         csvReader = csvFileState.openCSVReader();
         idx = 1;
         next = null;
     }
 
     private SimpleFeature buildFeature(String[] csvRecord) {
-        String id = "" + idx;
-        SimpleFeature feature = csvStrategy.createFeature(id, csvRecord);
+        SimpleFeature feature = featureBuilder.build(String.valueOf(idx), csvRecord);
         idx++;
         return feature;
     }
@@ -80,6 +86,11 @@ public class CSVIterator implements Iterator<SimpleFeature> {
 
     public void close() {
         csvReader.close();
+        if (featureBuilder.getSkipped() > 0) {
+            LOGGER.warning(featureBuilder.getSkipped() + " records of " 
+                + csvFileState.getTypeName() + " have no geometry, their coordinates could not "
+                + "be parsed");
+        }
     }
 
 }
@@ -1,43 +1,32 @@
 package org.geoserver.importer.csv.parse;
 
-import java.io.IOException;
 import java.util.Map;
 
-import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geoserver.importer.csv.CSVFileState;
-import org.opengis.feature.simple.SimpleFeature;
+import org.geoserver.importer.csv.CSVProfile;
 import org.opengis.feature.simple.SimpleFeatureType;
-import org.opengis.feature.type.GeometryDescriptor;
 
-import com.csvreader.CsvReader;
-import com.vividsolutions.jts.geom.Coordinate;
-import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.Point;
 
 public class CSVLatLonStrategy extends AbstractCSVStrategy implements CSVStrategy {
 
     private static final String GEOMETRY_COLUMN = "location";
 
+    /** columns the point geometry is built from, set when building the feature type */
+    private String latField;
+
+    private String lonField;
+
     public CSVLatLonStrategy(CSVFileState csvFileState) {
         super(csvFileState);
     }
 
     protected SimpleFeatureType buildFeatureType() {
-        String[] headers;
-        Map<String, Class<?>> typesFromData;
-        CsvReader csvReader = null;
-        try {
-            csvReader = csvFileState.openCSVReader();
-            headers = csvReader.getHeaders();
-            typesFromData = CSVStrategySupport.findMostSpecificTypesFromData(csvReader, headers);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } finally {
-            if (csvReader != null) {
-                csvReader.close();
-            }
-        }
+        CSVProfile profile = csvFileState.getProfile();
+        String[] headers = profile.getHeaders();
+        Map<String, Class<?>> typesFromData = profile.getTypes();
         SimpleFeatureTypeBuilder builder = CSVStrategySupport.createBuilder(csvFileState, headers,
                 typesFromData);
         boolean validLat = false;
@@ -62,39 +51,38 @@ public class CSVLatLonStrategy extends AbstractCSVStrategy implements CSVStrateg
             builder.add(GEOMETRY_COLUMN, Point.class);
             builder.remove(latSpelling);
             builder.remove(lonSpelling);
+            latField = latSpelling;
+            lonField = lonSpelling;
         }
         return builder.buildFeatureType();
     }
 
     @Override
-    public SimpleFeature createFeature(String recordId, String[] csvRecord) {
-        SimpleFeatureType featureType = getFeatureType();
-        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(featureType);
-        GeometryDescriptor geometryDescriptor = featureType.getGeometryDescriptor();
-        GeometryFactory geometryFactory = new GeometryFactory();
-        Double x = null, y = null;
-        String[] headers = csvFileState.getCSVHeaders();
-        for (int i = 0; i < headers.length; i++) {
-            String header = headers[i];
-            if (i < csvRecord.length) {
-                String value = csvRecord[i].trim();
-                if (geometryDescriptor != null && isLatitude(header)) {
-                    y = Double.valueOf(value);
-                } else if (geometryDescriptor != null && isLongitude(header)) {
-                    x = Double.valueOf(value);
-                } else {
-                    builder.set(header, value);
+    public ReferencedEnvelope getBounds() {
+        if (getFeatureType().getGeometryDescriptor() == null) {
+            return null;
+        }
+        return getBounds(lonField, latField);
+    }
+
+    @Override
+    public CSVFeatureBuilder createFeatureBuilder() {
+        CSVFeatureBuilder builder = super.createFeatureBuilder();
+        if (getFeatureType().getGeometryDescriptor() != null) {
+            String[] headers = csvFileState.getCSVHeaders();
+            int x = -1, y = -1;
+            for (int i = 0; i < headers.length; i++) {
+                if (isLatitude(headers[i])) {
+                    y = i;
+                    builder.skipColumn(i);
+                } else if (isLongitude(headers[i])) {
+                    x = i;
+                    builder.skipColumn(i);
                 }
-            } else {
-                builder.set(header, null);
             }
+            builder.setPointColumns(x, y);
         }
-        if (x != null && y != null && geometryDescriptor != null) {
-            Coordinate coordinate = new Coordinate(x, y);
-            Point point = geometryFactory.createPoint(coordinate);
-            builder.set(geometryDescriptor.getLocalName(), point);
-        }
-        return builder.buildFeature(csvFileState.getTypeName() + "-" + recordId);
+        return builder;
     }
 
     private boolean isLatitude(String s) {
@@ -1,18 +1,15 @@
 package org.geoserver.importer.csv.parse;
 
-import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
-import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geoserver.importer.csv.CSVFileState;
-import org.opengis.feature.simple.SimpleFeature;
+import org.geoserver.importer.csv.CSVProfile;
 import org.opengis.feature.simple.SimpleFeatureType;
-import org.opengis.feature.type.GeometryDescriptor;
 
-import com.csvreader.CsvReader;
-import com.vividsolutions.jts.geom.Coordinate;
-import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.Point;
 
 public class CSVSpecifiedLatLngStrategy extends AbstractCSVStrategy implements CSVStrategy {
@@ -37,20 +34,9 @@ public class CSVSpecifiedLatLngStrategy extends AbstractCSVStrategy implements C
 
     @Override
     protected SimpleFeatureType buildFeatureType() {
-        String[] headers;
-        Map<String, Class<?>> typesFromData;
-        CsvReader csvReader = null;
-        try {
-            csvReader = csvFileState.openCSVReader();
-            headers = csvReader.getHeaders();
-            typesFromData = CSVStrategySupport.findMostSpecificTypesFromData(csvReader, headers);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } finally {
-            if (csvReader != null) {
-                csvReader.close();
-            }
-        }
+        CSVProfile profile = csvFileState.getProfile();
+        String[] headers = profile.getHeaders();
+        Map<String, Class<?>> typesFromData = profile.getTypes();
         SimpleFeatureTypeBuilder builder = CSVStrategySupport.createBuilder(csvFileState, headers,
                 typesFromData);
         Class<?> latClass = typesFromData.get(latField);
@@ -64,34 +50,20 @@ public class CSVSpecifiedLatLngStrategy extends AbstractCSVStrategy implements C
     }
 
     @Override
-    public SimpleFeature createFeature(String recordId, String[] csvRecord) {
-        SimpleFeatureType featureType = getFeatureType();
-        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(featureType);
-        GeometryDescriptor geometryDescriptor = featureType.getGeometryDescriptor();
-        GeometryFactory geometryFactory = new GeometryFactory();
-        Double lat = null, lng = null;
-        String[] headers = csvFileState.getCSVHeaders();
-        for (int i = 0; i < headers.length; i++) {
-            String header = headers[i];
-            if (i < csvRecord.length) {
-                String value = csvRecord[i].trim();
-                if (geometryDescriptor != null && header.equals(latField)) {
-                    lat = Double.valueOf(value);
-                } else if (geometryDescriptor != null && header.equals(lngField)) {
-                    lng = Double.valueOf(value);
-                } else {
-                    builder.set(header, value);
-                }
-            } else {
-                builder.set(header, null);
-            }
-        }
-        if (geometryDescriptor != null && lat != null && lng != null) {
-            Coordinate coordinate = new Coordinate(lat, lng);
-            Point point = geometryFactory.createPoint(coordinate);
-            builder.set(geometryDescriptor.getLocalName(), point);
+    public ReferencedEnvelope getBounds() {
+        if (getFeatureType().getGeometryDescriptor() == null) {
+            return null;
         }
-        return builder.buildFeature(csvFileState.getTypeName() + "-" + recordId);
+        return getBounds(latField, lngField);
+    }
+
+    @Override
+    public CSVFeatureBuilder createFeatureBuilder() {
+        CSVFeatureBuilder builder = super.createFeatureBuilder();
+        List<String> headers = Arrays.asList(csvFileState.getCSVHeaders());
+        // features are built with the latitude as x
+        builder.setPointColumns(headers.indexOf(latField), headers.indexOf(lngField));
+        return builder;
     }
 
 }
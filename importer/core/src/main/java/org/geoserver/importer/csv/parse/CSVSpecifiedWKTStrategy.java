@@ -3,16 +3,11 @@ package org.geoserver.importer.csv.parse;
 import java.util.Arrays;
 import java.util.List;
 
-import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geoserver.importer.csv.CSVFileState;
-import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
-import org.opengis.feature.type.GeometryDescriptor;
 
 import com.vividsolutions.jts.geom.Geometry;
-import com.vividsolutions.jts.io.ParseException;
-import com.vividsolutions.jts.io.WKTReader;
 
 public class CSVSpecifiedWKTStrategy extends AbstractCSVStrategy implements CSVStrategy {
 
@@ -36,33 +31,10 @@ public class CSVSpecifiedWKTStrategy extends AbstractCSVStrategy implements CSVS
     }
 
     @Override
-    public SimpleFeature createFeature(String recordId, String[] csvRecord) {
-        SimpleFeatureType featureType = getFeatureType();
-        SimpleFeatureBuilder builder = new SimpleFeatureBuilder(featureType);
-        GeometryDescriptor geometryDescriptor = featureType.getGeometryDescriptor();
-        String[] headers = csvFileState.getCSVHeaders();
-        for (int i = 0; i < headers.length; i++) {
-            String header = headers[i];
-            if (i < csvRecord.length) {
-                String value = csvRecord[i].trim();
-                if (geometryDescriptor != null && header.equals(wktField)) {
-                    WKTReader wktReader = new WKTReader();
-                    Geometry geometry;
-                    try {
-                        geometry = wktReader.read(value);
-                    } catch (ParseException e) {
-                        // policy decision here that just nulls out unparseable geometry
-                        geometry = null;
-                    }
-                    builder.set(wktField, geometry);
-                } else {
-                    builder.set(header, value);
-                }
-            } else {
-                builder.set(header, null);
-            }
-        }
-        return builder.buildFeature(csvFileState.getTypeName() + "-" + recordId);
+    public CSVFeatureBuilder createFeatureBuilder() {
+        CSVFeatureBuilder builder = super.createFeatureBuilder();
+        builder.setWKTColumn(Arrays.asList(csvFileState.getCSVHeaders()).indexOf(wktField));
+        return builder;
     }
 
 }
@@ -2,6 +2,7 @@ package org.geoserver.importer.csv.parse;
 
 import java.io.IOException;
 
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 
@@ -11,4 +12,16 @@ public interface CSVStrategy {
     public CSVIterator iterator() throws IOException;
 
     public SimpleFeature createFeature(String recordId, String[] csvRecord);
+
+    /**
+     * Creates a builder turning records into features, meant to be reused for every record read
+     * by a single thread.
+     */
+    public CSVFeatureBuilder createFeatureBuilder();
+
+    /**
+     * Returns the bounds of all features, or <code>null</code> if they can't be known without
+     * reading every feature.
+     */
+    public ReferencedEnvelope getBounds();
 }
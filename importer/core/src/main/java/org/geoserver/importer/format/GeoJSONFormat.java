@@ -81,7 +81,12 @@ public class GeoJSONFormat extends VectorFormat {
     
     @Override
     public int getFeatureCount(ImportData data, ImportTask item) throws IOException {
-        return -1;
+        // usually cached from when the task was created
+        GeoJSONIndex index = GeoJSONIndex.get(file(data, item));
+        if (!index.isCollection()) {
+            return -1;
+        }
+        return (int) Math.min(index.getCount(), Integer.MAX_VALUE);
     }
     
     @Override
@@ -178,13 +183,12 @@ public class GeoJSONFormat extends VectorFormat {
             ft.setSRS(srs);
         }
 
-        // bounds
+        // bounds, scanned from the raw coordinates rather than parsing every feature
         ReferencedEnvelope bounds = new ReferencedEnvelope(crs);
 
-        FeatureIterator<SimpleFeature> it = new FeatureJSON().streamFeatureCollection(file);
-        while(it.hasNext()) {
-            SimpleFeature f = it.next();
-            bounds.include(f.getBounds());
+        GeoJSONIndex index = GeoJSONIndex.get(file);
+        if (index.getBounds() != null) {
+            bounds.init(index.getBounds());
         }
         ft.setNativeBoundingBox(bounds);
 
@@ -0,0 +1,217 @@
+package org.geoserver.importer.format;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+import org.json.simple.parser.ContentHandler;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Feature count and bounds of a GeoJSON feature collection, gathered by streaming through the
+ * raw json tokens without building features or geometries.
+ * <p>
+ * Indexes are cached by file and recomputed once the file length or modification time changes,
+ * so that listing a file and later loading it only scan it once.
+ * </p>
+ */
+class GeoJSONIndex {
+
+    static Cache<String,GeoJSONIndex> CACHE = CacheBuilder.newBuilder().maximumSize(100).build();
+
+    /**
+     * Returns the index of a file, scanning it if not already cached.
+     */
+    static GeoJSONIndex get(File file) throws IOException {
+        String key = file.getCanonicalPath();
+        GeoJSONIndex index = CACHE.getIfPresent(key);
+        if (index == null || !index.isCurrent(file)) {
+            index = scan(file);
+            CACHE.put(key, index);
+        }
+        return index;
+    }
+
+    static GeoJSONIndex scan(File file) throws IOException {
+        GeoJSONIndex index = new GeoJSONIndex(file.length(), file.lastModified());
+        Reader reader = new BufferedReader(
+            new InputStreamReader(new FileInputStream(file), "UTF-8"), 64 * 1024);
+        try {
+            new JSONParser().parse(reader, index.new Scanner());
+        } catch (ParseException e) {
+            throw new IOException("Error scanning " + file.getPath(), e);
+        } finally {
+            IOUtils.closeQuietly(reader);
+        }
+        return index;
+    }
+
+    final long length;
+    final long lastModified;
+
+    boolean collection;
+    long count;
+    Envelope bounds = new Envelope();
+
+    GeoJSONIndex(long length, long lastModified) {
+        this.length = length;
+        this.lastModified = lastModified;
+    }
+
+    boolean isCurrent(File file) {
+        return file.length() == length && file.lastModified() == lastModified;
+    }
+
+    /**
+     * Whether the file holds a feature collection.
+     */
+    boolean isCollection() {
+        return collection;
+    }
+
+    /**
+     * Number of features in the collection.
+     */
+    long getCount() {
+        return count;
+    }
+
+    /**
+     * Envelope of all feature coordinates, null if there are none.
+     */
+    Envelope getBounds() {
+        return bounds.isNull() ? null : bounds;
+    }
+
+    /*
+     * tracks the nesting of objects and arrays, counting the members of the top level "features"
+     * array and expanding the bounds with the first two ordinates of each "coordinates" position
+     * within the "geometry" member of a feature, coordinates in properties are ignored
+     */
+    class Scanner implements ContentHandler {
+
+        int depth;
+
+        /** key of the object entry whose value comes next */
+        String key;
+
+        /** 
+         * depth of the features array, of the geometry of the current feature and of the 
+         * enclosing coordinates array, -1 if outside 
+         */
+        int features = -1;
+        int geometry = -1;
+        int coordinates = -1;
+
+        /** number of values seen so far in the array at each depth */
+        int[] position = new int[16];
+
+        double x;
+
+        @Override
+        public void startJSON() throws ParseException, IOException {
+        }
+
+        @Override
+        public void endJSON() throws ParseException, IOException {
+        }
+
+        @Override
+        public boolean startObject() throws ParseException, IOException {
+            String k = key;
+            if (depth == features) {
+                count++;
+            }
+            push();
+            if (geometry < 0 && "geometry".equals(k) && isFeature(depth - 1)) {
+                geometry = depth;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean endObject() throws ParseException, IOException {
+            if (depth == geometry) {
+                geometry = -1;
+            }
+            depth--;
+            return true;
+        }
+
+        @Override
+        public boolean startObjectEntry(String key) throws ParseException, IOException {
+            this.key = key;
+            return true;
+        }
+
+        @Override
+        public boolean endObjectEntry() throws ParseException, IOException {
+            return true;
+        }
+
+        @Override
+        public boolean startArray() throws ParseException, IOException {
+            String k = key;
+            push();
+            if (depth == 2 && "features".equals(k)) {
+                features = depth;
+                collection = true;
+            } else if (geometry > 0 && coordinates < 0 && "coordinates".equals(k)) {
+                coordinates = depth;
+            }
+            return true;
+        }
+
+        @Override
+        public boolean endArray() throws ParseException, IOException {
+            if (depth == coordinates) {
+                coordinates = -1;
+            } else if (depth == features) {
+                features = -1;
+            }
+            depth--;
+            return true;
+        }
+
+        @Override
+        public boolean primitive(Object value) throws ParseException, IOException {
+            key = null;
+            if (coordinates > 0 && value instanceof Number) {
+                double d = ((Number) value).doubleValue();
+                int i = position[depth]++;
+                if (i == 0) {
+                    x = d;
+                } else if (i == 1) {
+                    bounds.expandToInclude(x, d);
+                }
+            }
+            return true;
+        }
+
+        /*
+         * a member of the features array, or the top level object of a single feature
+         */
+        boolean isFeature(int d) {
+            return features > 0 ? d == features + 1 : d == 1;
+        }
+
+        void push() {
+            key = null;
+            depth++;
+            if (depth == position.length) {
+                position = Arrays.copyOf(position, depth * 2);
+            }
+            position[depth] = 0;
+        }
+    }
+}
@@ -2,16 +2,27 @@ package org.geoserver.importer.format;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.commons.io.FilenameUtils;
 import org.geoserver.catalog.AttributeTypeInfo;
@@ -24,13 +35,16 @@ import org.geoserver.catalog.MetadataMap;
 import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.StoreInfo;
 import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.platform.GeoServerExtensions;
 import org.geotools.data.FeatureReader;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
+import org.geotools.util.logging.Logging;
 import org.geoserver.importer.FileData;
 import org.geoserver.importer.ImportData;
 import org.geoserver.importer.ImportTask;
+import org.geoserver.importer.VFSWorker;
 import org.geoserver.importer.VectorFormat;
 import org.geoserver.importer.job.ProgressMonitor;
 import org.geoserver.importer.transform.KMLPlacemarkTransform;
@@ -53,6 +67,11 @@ public class KMLFileFormat extends VectorFormat {
 
     private static ReferencedEnvelope EMPTY_BOUNDS = new ReferencedEnvelope();
 
+    static Logger LOGGER = Logging.getLogger(KMLFileFormat.class);
+
+    /** bindings of the kml simple field types */
+    static final Map<String, Class<?>> SIMPLE_FIELD_TYPES = new HashMap<String, Class<?>>();
+
     static {
         try {
             KML_CRS = CRS.decode(KML_SRS);
@@ -60,6 +79,42 @@ public class KMLFileFormat extends VectorFormat {
             throw new RuntimeException("Could not decode: EPSG:4326", e);
         }
         EMPTY_BOUNDS.setToNull();
+
+        SIMPLE_FIELD_TYPES.put("string", String.class);
+        SIMPLE_FIELD_TYPES.put("int", Integer.class);
+        SIMPLE_FIELD_TYPES.put("uint", Integer.class);
+        SIMPLE_FIELD_TYPES.put("short", Short.class);
+        SIMPLE_FIELD_TYPES.put("ushort", Short.class);
+        SIMPLE_FIELD_TYPES.put("float", Float.class);
+        SIMPLE_FIELD_TYPES.put("double", Double.class);
+        SIMPLE_FIELD_TYPES.put("bool", Boolean.class);
+    }
+
+    /** 
+     * number of placemarks parsed to build the feature type of a file, the rest of the file is 
+     * only scanned for extended data and schemas
+     */
+    int schemaSample = schemaSampleProperty();
+
+    static int schemaSampleProperty() {
+        String value = GeoServerExtensions.getProperty("org.geoserver.importer.kmlSchemaSample");
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            }
+            catch(NumberFormatException e) {
+                LOGGER.warning("Invalid value for org.geoserver.importer.kmlSchemaSample: " + value);
+            }
+        }
+        return 1000;
+    }
+
+    public int getSchemaSample() {
+        return schemaSample;
+    }
+
+    public void setSchemaSample(int schemaSample) {
+        this.schemaSample = schemaSample;
     }
 
     @SuppressWarnings("rawtypes")
@@ -94,7 +149,7 @@ public class KMLFileFormat extends VectorFormat {
     public FeatureReader<SimpleFeatureType, SimpleFeature> read(SimpleFeatureType featureType,
             File file) {
         try {
-            return new KMLTransformingFeatureReader(featureType, new FileInputStream(file));
+            return new KMLTransformingFeatureReader(featureType, open(file));
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -126,7 +181,56 @@ public class KMLFileFormat extends VectorFormat {
     @Override
     public boolean canRead(ImportData data) throws IOException {
         File file = getFileFromData(data);
-        return file.canRead() && "kml".equalsIgnoreCase(FilenameUtils.getExtension(file.getName()));
+        return file.canRead() && ("kml".equalsIgnoreCase(FilenameUtils.getExtension(file.getName()))
+            || VFSWorker.isKMZ(file));
+    }
+
+    /**
+     * Opens the kml document of a file, reading it straight out of the archive for a kmz file.
+     */
+    static InputStream open(File file) throws IOException {
+        if (!VFSWorker.isKMZ(file)) {
+            return new FileInputStream(file);
+        }
+
+        final ZipFile zip = new ZipFile(file);
+        ZipEntry entry = documentEntry(zip);
+        if (entry == null) {
+            zip.close();
+            throw new IOException("No kml document found in " + file.getPath());
+        }
+        return new FilterInputStream(zip.getInputStream(entry)) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                }
+                finally {
+                    zip.close();
+                }
+            }
+        };
+    }
+
+    /*
+     * the document of a kmz is the first kml file at the root of the archive 
+     */
+    static ZipEntry documentEntry(ZipFile zip) {
+        ZipEntry nested = null;
+        for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
+            ZipEntry entry = e.nextElement();
+            String name = entry.getName();
+            if (entry.isDirectory() || !name.toLowerCase().endsWith(".kml")) {
+                continue;
+            }
+            if (name.indexOf('/') < 0) {
+                return entry;
+            }
+            if (nested == null) {
+                nested = entry;
+            }
+        }
+        return nested;
     }
 
     private File getFileFromData(ImportData data) {
@@ -147,8 +251,8 @@ public class KMLFileFormat extends VectorFormat {
             throws IOException {
         InputStream inputStream = null;
         try {
-            inputStream = new FileInputStream(file);
-            return parseFeatureTypes(typeName, inputStream);
+            inputStream = open(file);
+            return parseFeatureTypes(typeName, inputStream, file);
         } finally {
             if (inputStream != null) {
                 inputStream.close();
@@ -197,17 +301,33 @@ public class KMLFileFormat extends VectorFormat {
 
     public List<SimpleFeatureType> parseFeatureTypes(String typeName, InputStream inputStream)
             throws IOException {
+        return parseFeatureTypes(typeName, inputStream, null);
+    }
+
+    /*
+     * Builds the feature type from the placemarks and schemas of the document. When reading a 
+     * file only the first placemarks are parsed, the rest of the file is scanned for the names
+     * of extended data and for schemas to widen the type with, skipping the parsed placemarks.
+     */
+    List<SimpleFeatureType> parseFeatureTypes(String typeName, InputStream inputStream, File file)
+            throws IOException {
         KMLRawReader reader = new KMLRawReader(inputStream,
                 KMLRawReader.ReadType.SCHEMA_AND_FEATURES);
         Set<String> untypedAttributes = new HashSet<String>();
         List<String> schemaNames = new ArrayList<String>();
         List<SimpleFeatureType> schemas = new ArrayList<SimpleFeatureType>();
         SimpleFeatureType aggregateFeatureType = null;
+        SimpleFeatureType lastFeatureType = null;
+        int placemarks = 0;
+        boolean sampled = false;
         for (Object object : reader) {
             if (object instanceof SimpleFeature) {
                 SimpleFeature feature = (SimpleFeature) object;
                 SimpleFeatureType ft = feature.getFeatureType();
-                aggregateFeatureType = unionFeatureTypes(aggregateFeatureType, ft);
+                if (ft != lastFeatureType) {
+                    aggregateFeatureType = unionFeatureTypes(aggregateFeatureType, ft);
+                    lastFeatureType = ft;
+                }
                 Map<Object, Object> userData = feature.getUserData();
                 @SuppressWarnings("unchecked")
                 Map<String, Object> untypedData = (Map<String, Object>) userData
@@ -215,12 +335,19 @@ public class KMLFileFormat extends VectorFormat {
                 if (untypedData != null) {
                     untypedAttributes.addAll(untypedData.keySet());
                 }
+                if (file != null && ++placemarks >= schemaSample) {
+                    sampled = true;
+                    break;
+                }
             } else if (object instanceof SimpleFeatureType) {
                 SimpleFeatureType schema = (SimpleFeatureType) object;
                 schemas.add(schema);
                 schemaNames.add(schema.getName().getLocalPart());
             }
         }
+        if (sampled) {
+            scanExtendedData(file, placemarks, schemas, schemaNames, untypedAttributes);
+        }
         if (aggregateFeatureType == null && schemas.isEmpty()) {
             throw new IllegalArgumentException("No features found");
         }
@@ -236,6 +363,79 @@ public class KMLFileFormat extends VectorFormat {
         return Collections.singletonList(featureType);
     }
 
+    /*
+     * scans a kml document for untyped extended data names and schemas not seen yet, without 
+     * parsing placemarks, skipping over the first placemarks that were already parsed
+     */
+    void scanExtendedData(File file, int skip, List<SimpleFeatureType> schemas, 
+            List<String> schemaNames, Set<String> untypedAttributes) throws IOException {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+
+        InputStream in = open(file);
+        try {
+            XMLStreamReader xml = factory.createXMLStreamReader(in);
+            try {
+                SimpleFeatureTypeBuilder schema = null;
+                int placemarks = 0;
+                while (xml.hasNext()) {
+                    int event = xml.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String element = xml.getLocalName();
+                        if ("Placemark".equals(element) && ++placemarks <= skip) {
+                            skipElement(xml);
+                            continue;
+                        }
+                        String name = xml.getAttributeValue(null, "name");
+                        if ("Data".equals(element) && name != null) {
+                            untypedAttributes.add(name);
+                        }
+                        else if ("Schema".equals(element) && name != null 
+                            && !schemaNames.contains(name)) {
+                            schema = new SimpleFeatureTypeBuilder();
+                            schema.setName(name);
+                        }
+                        else if ("SimpleField".equals(element) && schema != null && name != null) {
+                            Class<?> binding = SIMPLE_FIELD_TYPES.get(
+                                String.valueOf(xml.getAttributeValue(null, "type")).toLowerCase());
+                            schema.add(name, binding != null ? binding : String.class);
+                        }
+                    }
+                    else if (event == XMLStreamConstants.END_ELEMENT && schema != null 
+                        && "Schema".equals(xml.getLocalName())) {
+                        SimpleFeatureType ft = schema.buildFeatureType();
+                        schemas.add(ft);
+                        schemaNames.add(ft.getTypeName());
+                        schema = null;
+                    }
+                }
+            }
+            finally {
+                xml.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Error scanning " + file.getPath(), e);
+        } finally {
+            in.close();
+        }
+    }
+
+    /*
+     * moves the reader past the end of the element it is positioned on
+     */
+    static void skipElement(XMLStreamReader xml) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            }
+            else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
     @Override
     public List<ImportTask> list(ImportData data, Catalog catalog, ProgressMonitor monitor)
             throws IOException {
@@ -4,6 +4,7 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import org.geotools.data.FeatureReader;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geoserver.importer.transform.KMLPlacemarkTransform;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -15,6 +16,8 @@ public class KMLTransformingFeatureReader implements
 
     private final FeatureReader<SimpleFeatureType, SimpleFeature> reader;
 
+    private final SimpleFeatureBuilder builder;
+
     private static final KMLPlacemarkTransform placemarkTransformer = new KMLPlacemarkTransform();
 
     public KMLTransformingFeatureReader(SimpleFeatureType featureType, InputStream inputStream) {
@@ -25,6 +28,7 @@ public class KMLTransformingFeatureReader implements
             FeatureReader<SimpleFeatureType, SimpleFeature> reader) {
         this.featureType = featureType;
         this.reader = reader;
+        this.builder = new SimpleFeatureBuilder(featureType);
     }
 
     @Override
@@ -50,7 +54,7 @@ public class KMLTransformingFeatureReader implements
             throw new RuntimeException(e);
         }
         SimpleFeature transformedFeature = placemarkTransformer
-                .convertFeature(feature, featureType);
+                .convertFeature(feature, builder);
         return transformedFeature;
     }
 
@@ -0,0 +1,223 @@
+package org.geoserver.importer.jdbc;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.DataStore;
+import org.geotools.data.Transaction;
+import org.geotools.factory.Hints;
+import org.geotools.jdbc.AutoGeneratedPrimaryKeyColumn;
+import org.geotools.jdbc.JDBCDataStore;
+import org.geotools.jdbc.JDBCFeatureSource;
+import org.geotools.jdbc.JDBCFeatureStore;
+import org.geotools.jdbc.PrimaryKey;
+import org.geotools.jdbc.PrimaryKeyColumn;
+import org.geotools.jdbc.SQLDialect;
+import org.geotools.jdbc.SequencedPrimaryKeyColumn;
+import org.geotools.util.logging.Logging;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+
+/**
+ * Writes features into a table of a {@link JDBCDataStore} in batches, bypassing the per row
+ * overhead of the regular feature writer.
+ * <p>
+ * Features are buffered by {@link #add(SimpleFeature)} and written out every
+ * <tt>batchSize</tt> features, or on {@link #flush()}. All writes go through the connection
+ * bound to the transaction the loader was created with, so commit and rollback work exactly as
+ * they do with a feature writer.
+ * </p>
+ * <p>
+ * Use {@link #create(JDBCDataStore, String, Transaction, int)} to obtain a loader, it returns
+ * <code>null</code> when the target table can't be bulk loaded, for example when its primary key
+ * has to be generated on the client side.
+ * </p>
+ */
+public abstract class BulkLoader {
+
+    static Logger LOGGER = Logging.getLogger(BulkLoader.class);
+
+    /**
+     * Creates the best bulk loader for the specified table, PostgreSQL <tt>COPY</tt> for PostGIS
+     * and batched inserts for any other database.
+     *
+     * @return the loader, or <code>null</code> if the table does not support bulk loading
+     */
+    public static BulkLoader create(JDBCDataStore dataStore, String typeName,
+        Transaction transaction, int batchSize) throws IOException {
+
+        SimpleFeatureType featureType = dataStore.getSchema(typeName);
+        List<PrimaryKeyColumn> sequenced = sequencedColumns(dataStore, typeName);
+        if (sequenced == null) {
+            return null;
+        }
+
+        Connection cx = dataStore.getConnection(transaction);
+        if (sequenced.isEmpty()) {
+            BulkLoader copy = CopyBulkLoader.create(dataStore, featureType, cx, batchSize);
+            if (copy != null) {
+                return copy;
+            }
+        }
+        return new InsertBulkLoader(dataStore, featureType, sequenced, cx, batchSize);
+    }
+
+    /**
+     * Creates a loader that inserts features into the specified table, or updates the row having
+     * the same values for the key attributes, with <tt>INSERT ... ON CONFLICT</tt>. Only 
+     * available on PostgreSQL 9.5 or newer and when a unique index spans the key attributes.
+     *
+     * @return the loader, or <code>null</code> if the table does not support bulk upserts
+     */
+    public static BulkLoader createUpsert(JDBCDataStore dataStore, String typeName, 
+        List<String> keys, Transaction transaction, int batchSize) throws IOException {
+
+        if (!isPostGIS(dataStore)) {
+            return null;
+        }
+        List<PrimaryKeyColumn> sequenced = sequencedColumns(dataStore, typeName);
+        if (sequenced == null) {
+            return null;
+        }
+
+        Connection cx = dataStore.getConnection(transaction);
+        if (!UpsertBulkLoader.supports(dataStore, typeName, keys, cx)) {
+            return null;
+        }
+        return new UpsertBulkLoader(dataStore, dataStore.getSchema(typeName), sequenced, keys, 
+            cx, batchSize);
+    }
+
+    /**
+     * Whether the data store is a PostGIS one. Looks at the class name of the dialect, so the
+     * PostGIS module does not have to be on the classpath.
+     */
+    public static boolean isPostGIS(DataStore dataStore) {
+        return dataStore instanceof JDBCDataStore && ((JDBCDataStore) dataStore).getSQLDialect()
+            .getClass().getName().startsWith("org.geotools.data.postgis");
+    }
+
+    /*
+     * primary key columns the insert has to fill from a sequence, or null if key values have to 
+     * be generated on the client side
+     */
+    static List<PrimaryKeyColumn> sequencedColumns(JDBCDataStore dataStore, String typeName) 
+        throws IOException {
+        PrimaryKey key = primaryKey(dataStore, typeName);
+        if (key == null) {
+            return null;
+        }
+
+        List<PrimaryKeyColumn> sequenced = new ArrayList<PrimaryKeyColumn>();
+        for (PrimaryKeyColumn col : key.getColumns()) {
+            if (col instanceof SequencedPrimaryKeyColumn) {
+                sequenced.add(col);
+            }
+            else if (!(col instanceof AutoGeneratedPrimaryKeyColumn)) {
+                // key values have to be generated by the client, leave it to the feature writer
+                return null;
+            }
+        }
+        return sequenced;
+    }
+
+    static PrimaryKey primaryKey(JDBCDataStore dataStore, String typeName) throws IOException {
+        Object source = dataStore.getFeatureSource(typeName);
+        if (source instanceof JDBCFeatureStore) {
+            return ((JDBCFeatureStore)source).getPrimaryKey();
+        }
+        if (source instanceof JDBCFeatureSource) {
+            return ((JDBCFeatureSource)source).getPrimaryKey();
+        }
+        return null;
+    }
+
+    protected JDBCDataStore dataStore;
+    protected SimpleFeatureType featureType;
+    protected Connection cx;
+    protected int batchSize;
+
+    protected List<SimpleFeature> buffer;
+
+    protected BulkLoader(JDBCDataStore dataStore, SimpleFeatureType featureType, Connection cx,
+        int batchSize) {
+        this.dataStore = dataStore;
+        this.featureType = featureType;
+        this.cx = cx;
+        this.batchSize = Math.max(1, batchSize);
+        this.buffer = new ArrayList<SimpleFeature>(this.batchSize);
+    }
+
+    public SimpleFeatureType getFeatureType() {
+        return featureType;
+    }
+
+    /**
+     * Adds a feature to the load, writing out the current batch once it is full.
+     */
+    public void add(SimpleFeature feature) throws IOException {
+        buffer.add(feature);
+        if (buffer.size() >= batchSize) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes out any buffered features.
+     */
+    public void flush() throws IOException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        try {
+            write(buffer);
+        }
+        finally {
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Releases any resources held by the loader, buffered features that have not been flushed
+     * are discarded. The connection belongs to the transaction and is not closed.
+     */
+    public void close() {
+        buffer.clear();
+        try {
+            dispose();
+        }
+        catch(Exception e) {
+            LOGGER.log(Level.FINE, "Error disposing bulk loader", e);
+        }
+    }
+
+    protected abstract void write(List<SimpleFeature> features) throws IOException;
+
+    protected void dispose() throws Exception {
+    }
+
+    protected void encodeTableName(StringBuffer sql) {
+        SQLDialect dialect = dataStore.getSQLDialect();
+        if (dataStore.getDatabaseSchema() != null) {
+            dialect.encodeSchemaName(dataStore.getDatabaseSchema(), sql);
+            sql.append(".");
+        }
+        dialect.encodeTableName(featureType.getTypeName(), sql);
+    }
+
+    protected static int srid(GeometryDescriptor gd) {
+        Object srid = gd.getUserData().get(JDBCDataStore.JDBC_NATIVE_SRID);
+        return srid instanceof Integer ? (Integer) srid : -1;
+    }
+
+    protected static int dimension(AttributeDescriptor gd) {
+        Object dim = gd.getUserData().get(Hints.COORDINATE_DIMENSION);
+        return dim instanceof Integer ? (Integer) dim : 2;
+    }
+}
@@ -0,0 +1,200 @@
+package org.geoserver.importer.jdbc;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.geotools.data.jdbc.datasource.DataSourceFinder;
+import org.geotools.data.jdbc.datasource.UnWrapper;
+import org.geotools.jdbc.JDBCDataStore;
+import org.geotools.jdbc.SQLDialect;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKBWriter;
+
+/**
+ * Bulk loader that streams features into a PostgreSQL table with <tt>COPY ... FROM STDIN</tt>.
+ * <p>
+ * Rows are encoded in the <tt>COPY</tt> text format, with geometries written as hex encoded
+ * EWKB straight from JTS so no server side parsing of WKT is involved.
+ * </p>
+ */
+public class CopyBulkLoader extends BulkLoader {
+
+    static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * Creates a new loader if the connection is a PostgreSQL one.
+     *
+     * @return the loader, or <code>null</code> if <tt>COPY</tt> is not available
+     */
+    static CopyBulkLoader create(JDBCDataStore dataStore, SimpleFeatureType featureType,
+        Connection cx, int batchSize) {
+        if (!isPostGIS(dataStore)) {
+            return null;
+        }
+
+        PGConnection pgcx = unwrap(cx);
+        if (pgcx == null) {
+            LOGGER.fine("Unable to obtain native PostgreSQL connection, COPY not available");
+            return null;
+        }
+        try {
+            return new CopyBulkLoader(dataStore, featureType, cx, pgcx.getCopyAPI(), batchSize);
+        }
+        catch(SQLException e) {
+            LOGGER.log(Level.FINE, "Unable to obtain copy manager", e);
+            return null;
+        }
+    }
+
+    static PGConnection unwrap(Connection cx) {
+        if (cx instanceof PGConnection) {
+            return (PGConnection) cx;
+        }
+
+        UnWrapper unwrapper = DataSourceFinder.getUnWrapper(cx);
+        if (unwrapper != null) {
+            Connection unwrapped = unwrapper.unwrap(cx);
+            if (unwrapped instanceof PGConnection) {
+                return (PGConnection) unwrapped;
+            }
+        }
+
+        try {
+            if (cx.isWrapperFor(PGConnection.class)) {
+                return cx.unwrap(PGConnection.class);
+            }
+        }
+        catch(Throwable t) {
+            // pre JDBC 4 driver or pool
+            LOGGER.log(Level.FINEST, "Unable to unwrap connection", t);
+        }
+        return null;
+    }
+
+    CopyManager copyManager;
+    String copySql;
+
+    /** date formats, not thread safe, the loader is only ever used from one thread */
+    SimpleDateFormat timestampFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSSXXX");
+
+    /** geometry writers, indexed by attribute */
+    WKBWriter[] wkbWriters;
+    int[] srids;
+
+    CopyBulkLoader(JDBCDataStore dataStore, SimpleFeatureType featureType, Connection cx,
+        CopyManager copyManager, int batchSize) {
+        super(dataStore, featureType, cx, batchSize);
+        this.copyManager = copyManager;
+
+        SQLDialect dialect = dataStore.getSQLDialect();
+        StringBuffer sql = new StringBuffer("COPY ");
+        encodeTableName(sql);
+        sql.append(" (");
+
+        List<AttributeDescriptor> atts = featureType.getAttributeDescriptors();
+        wkbWriters = new WKBWriter[atts.size()];
+        srids = new int[atts.size()];
+        for (int i = 0; i < atts.size(); i++) {
+            AttributeDescriptor att = atts.get(i);
+            if (i > 0) {
+                sql.append(", ");
+            }
+            dialect.encodeColumnName(null, att.getLocalName(), sql);
+
+            if (att instanceof GeometryDescriptor) {
+                srids[i] = srid((GeometryDescriptor) att);
+                wkbWriters[i] = new WKBWriter(Math.min(3, dimension(att)), srids[i] <= 0);
+            }
+        }
+        sql.append(") FROM STDIN");
+        copySql = sql.toString();
+    }
+
+    @Override
+    protected void write(List<SimpleFeature> features) throws IOException {
+        StringBuilder rows = new StringBuilder(features.size() * 128);
+        for (SimpleFeature f : features) {
+            List<Object> values = f.getAttributes();
+            for (int i = 0; i < values.size(); i++) {
+                if (i > 0) {
+                    rows.append('\t');
+                }
+                encode(values.get(i), i, rows);
+            }
+            rows.append('\n');
+        }
+
+        try {
+            copyManager.copyIn(copySql, new ByteArrayInputStream(rows.toString().getBytes(UTF8)));
+        }
+        catch(SQLException e) {
+            throw new IOException("Error copying features into " + featureType.getTypeName(), e);
+        }
+    }
+
+    void encode(Object value, int i, StringBuilder row) {
+        if (value == null) {
+            row.append("\\N");
+        }
+        else if (wkbWriters[i] != null) {
+            byte[] wkb = wkbWriters[i].write((Geometry) value);
+            row.append(WKBWriter.toHex(srids[i] > 0 ? ewkb(wkb, srids[i]) : wkb));
+        }
+        else if (value instanceof java.sql.Date || value instanceof java.sql.Time) {
+            row.append(value.toString());
+        }
+        else if (value instanceof Date) {
+            row.append(timestampFormat.format((Date) value));
+        }
+        else if (value instanceof Boolean) {
+            row.append(((Boolean) value).booleanValue() ? 't' : 'f');
+        }
+        else if (value instanceof byte[]) {
+            row.append("\\\\x").append(WKBWriter.toHex((byte[]) value));
+        }
+        else {
+            escape(value.toString(), row);
+        }
+    }
+
+    /**
+     * Adds the srid to big endian wkb written without one. The geometry itself is left alone
+     * since it may be shared with other readers of the feature.
+     */
+    static byte[] ewkb(byte[] wkb, int srid) {
+        byte[] ewkb = new byte[wkb.length + 4];
+        ewkb[0] = wkb[0];
+        ByteBuffer.wrap(ewkb, 1, 8)
+            .putInt(ByteBuffer.wrap(wkb, 1, 4).getInt() | 0x20000000).putInt(srid);
+        System.arraycopy(wkb, 5, ewkb, 9, wkb.length - 5);
+        return ewkb;
+    }
+
+    static void escape(String s, StringBuilder row) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch(c) {
+            case '\\': row.append("\\\\"); break;
+            case '\t': row.append("\\t"); break;
+            case '\n': row.append("\\n"); break;
+            case '\r': row.append("\\r"); break;
+            default: row.append(c);
+            }
+        }
+    }
+}
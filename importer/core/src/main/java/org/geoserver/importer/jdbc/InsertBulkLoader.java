@@ -0,0 +1,211 @@
+package org.geoserver.importer.jdbc;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.geotools.jdbc.BasicSQLDialect;
+import org.geotools.jdbc.JDBCDataStore;
+import org.geotools.jdbc.PreparedStatementSQLDialect;
+import org.geotools.jdbc.PrimaryKeyColumn;
+import org.geotools.jdbc.SQLDialect;
+import org.geotools.jdbc.SequencedPrimaryKeyColumn;
+import org.geotools.util.Converters;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+
+import com.vividsolutions.jts.geom.Geometry;
+
+/**
+ * Bulk loader that writes features with JDBC batched inserts, used for databases that have no
+ * native bulk load facility we know of, such as H2 and Oracle.
+ * <p>
+ * Values are encoded through the data store {@link SQLDialect}, as prepared statement parameters
+ * when the dialect supports them or as literals otherwise. Each batch of features is sent to the
+ * database in a single round trip.
+ * </p>
+ */
+public class InsertBulkLoader extends BulkLoader {
+
+    List<PrimaryKeyColumn> sequenced;
+
+    /** statements for the current batch, keyed by sql */
+    Map<String,PreparedStatement> prepared = new LinkedHashMap<String, PreparedStatement>();
+    Statement statement;
+
+    InsertBulkLoader(JDBCDataStore dataStore, SimpleFeatureType featureType,
+        List<PrimaryKeyColumn> sequenced, Connection cx, int batchSize) {
+        super(dataStore, featureType, cx, batchSize);
+        this.sequenced = sequenced;
+    }
+
+    @Override
+    protected void write(List<SimpleFeature> features) throws IOException {
+        SQLDialect dialect = dataStore.getSQLDialect();
+        try {
+            for (SimpleFeature f : features) {
+                if (dialect instanceof PreparedStatementSQLDialect) {
+                    insertPrepared(f, (PreparedStatementSQLDialect) dialect);
+                }
+                else {
+                    insert(f, (BasicSQLDialect) dialect);
+                }
+            }
+
+            for (PreparedStatement ps : prepared.values()) {
+                ps.executeBatch();
+                ps.clearBatch();
+            }
+            if (statement != null) {
+                statement.executeBatch();
+                statement.clearBatch();
+            }
+        }
+        catch(SQLException e) {
+            throw new IOException("Error inserting features into " + featureType.getTypeName(), e);
+        }
+    }
+
+    void insertPrepared(SimpleFeature f, PreparedStatementSQLDialect dialect)
+        throws IOException, SQLException {
+        List<AttributeDescriptor> atts = featureType.getAttributeDescriptors();
+
+        StringBuffer sql = insertPrefix(dialect);
+        for (int i = 0; i < atts.size(); i++) {
+            AttributeDescriptor att = atts.get(i);
+            if (i > 0) {
+                sql.append(", ");
+            }
+            if (att instanceof GeometryDescriptor) {
+                GeometryDescriptor gd = (GeometryDescriptor) att;
+                dialect.prepareGeometryValue((Geometry) f.getAttribute(i), dimension(gd), srid(gd),
+                    gd.getType().getBinding(), sql);
+            }
+            else {
+                sql.append("?");
+            }
+        }
+        sql.append(")");
+        insertSuffix(dialect, sql);
+
+        String key = sql.toString();
+        PreparedStatement ps = prepared.get(key);
+        if (ps == null) {
+            ps = cx.prepareStatement(key);
+            prepared.put(key, ps);
+        }
+
+        for (int i = 0; i < atts.size(); i++) {
+            AttributeDescriptor att = atts.get(i);
+            Class binding = att.getType().getBinding();
+            if (att instanceof GeometryDescriptor) {
+                GeometryDescriptor gd = (GeometryDescriptor) att;
+                dialect.setGeometryValue((Geometry) f.getAttribute(i), dimension(gd), srid(gd),
+                    binding, ps, i+1);
+            }
+            else {
+                dialect.setValue(convert(f.getAttribute(i), binding), binding, ps, i+1, cx);
+            }
+        }
+        ps.addBatch();
+    }
+
+    void insert(SimpleFeature f, BasicSQLDialect dialect) throws IOException, SQLException {
+        List<AttributeDescriptor> atts = featureType.getAttributeDescriptors();
+
+        StringBuffer sql = insertPrefix(dialect);
+        for (int i = 0; i < atts.size(); i++) {
+            AttributeDescriptor att = atts.get(i);
+            if (i > 0) {
+                sql.append(", ");
+            }
+
+            Object value = f.getAttribute(i);
+            if (value == null) {
+                sql.append("null");
+            }
+            else if (att instanceof GeometryDescriptor) {
+                GeometryDescriptor gd = (GeometryDescriptor) att;
+                dialect.encodeGeometryValue((Geometry) value, dimension(gd), srid(gd), sql);
+            }
+            else {
+                Class binding = att.getType().getBinding();
+                dialect.encodeValue(convert(value, binding), binding, sql);
+            }
+        }
+        sql.append(")");
+        insertSuffix(dialect, sql);
+
+        if (statement == null) {
+            statement = cx.createStatement();
+        }
+        statement.addBatch(sql.toString());
+    }
+
+    StringBuffer insertPrefix(SQLDialect dialect) {
+        StringBuffer sql = new StringBuffer("INSERT INTO ");
+        encodeTableName(sql);
+        if (tableAlias() != null) {
+            sql.append(" AS ").append(tableAlias());
+        }
+        sql.append(" (");
+        for (PrimaryKeyColumn col : sequenced) {
+            dialect.encodeColumnName(null, col.getName(), sql);
+            sql.append(", ");
+        }
+        List<AttributeDescriptor> atts = featureType.getAttributeDescriptors();
+        for (int i = 0; i < atts.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            dialect.encodeColumnName(null, atts.get(i).getLocalName(), sql);
+        }
+        sql.append(") VALUES (");
+        for (PrimaryKeyColumn col : sequenced) {
+            dialect.encodeNextSequenceValue(dataStore.getDatabaseSchema(),
+                ((SequencedPrimaryKeyColumn) col).getSequenceName(), sql);
+            sql.append(", ");
+        }
+        return sql;
+    }
+
+    /**
+     * Hook for subclasses to name the target table in the rest of the statement.
+     */
+    String tableAlias() {
+        return null;
+    }
+
+    /**
+     * Hook for subclasses to append to the insert statement, after the list of values.
+     */
+    void insertSuffix(SQLDialect dialect, StringBuffer sql) {
+    }
+
+    Object convert(Object value, Class binding) {
+        if (value == null || binding.isInstance(value)) {
+            return value;
+        }
+        Object converted = Converters.convert(value, binding);
+        return converted != null ? converted : value;
+    }
+
+    @Override
+    protected void dispose() throws Exception {
+        for (PreparedStatement ps : prepared.values()) {
+            dataStore.closeSafe(ps);
+        }
+        prepared.clear();
+        if (statement != null) {
+            dataStore.closeSafe(statement);
+            statement = null;
+        }
+    }
+}
@@ -0,0 +1,494 @@
+package org.geoserver.importer.jdbc;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.geotools.data.Transaction;
+import org.geotools.jdbc.JDBCDataStore;
+import org.geotools.jdbc.SQLDialect;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Table that a replacing load writes to in place of the live table, swapped in once the load is
+ * complete so that readers of the live table never see it empty or locked for the whole load.
+ * <p>
+ * The staging table is created with the columns, defaults and check constraints of the live
+ * table, followed by copies of its primary key, unique, exclusion and foreign key constraints.
+ * The other indexes are copied from the definitions of the live table indexes, either right away
+ * or, when deferred, once the data is loaded, which is quicker than maintaining them row by row.
+ * </p>
+ * <p>
+ * {@link #swap()} drops the live table and renames the staging table, its constraints and its
+ * indexes to the live names in one short transaction, handing over the sequences owned by the
+ * live table along the way. The owner, privileges, comment, triggers and row level security
+ * policies of the live table are read at the start of that transaction and applied to the
+ * renamed table, storage parameters and column comments are copied when the staging table is
+ * created. When the live table can't be dropped, because views depend on it or foreign keys
+ * reference it, the rows are copied over instead. Only PostGIS tables can be staged.
+ * </p>
+ * <p>
+ * Staging tables are named after the task loading them, and marked with a comment so that only
+ * tables created by the importer are ever dropped.
+ * </p>
+ */
+public class StagingTable {
+
+    static Logger LOGGER = Logging.getLogger(StagingTable.class);
+
+    static final String PREFIX = "imp_";
+
+    /** comment marking the tables created by the importer */
+    static final String MARKER = "geoserver importer staging table";
+
+    /** maximum length of a PostgreSQL identifier */
+    static final int MAX_NAME_LENGTH = 63;
+
+    /**
+     * Creates the staging table for the specified live table.
+     *
+     * @param id identifier of the load, unique among the loads that may run at the same time
+     *
+     * @return the staging table, or <code>null</code> if the table can't be staged
+     */
+    public static StagingTable create(JDBCDataStore dataStore, String typeName, String id,
+        boolean deferIndexes) throws IOException {
+        if (!BulkLoader.isPostGIS(dataStore)) {
+            return null;
+        }
+
+        StagingTable staging = new StagingTable(dataStore, typeName, id, deferIndexes);
+        Connection cx = dataStore.getConnection(Transaction.AUTO_COMMIT);
+        try {
+            staging.create(cx);
+            return staging;
+        }
+        catch(SQLException e) {
+            LOGGER.log(Level.WARNING, "Unable to create staging table for " + typeName, e);
+            staging.drop(cx);
+            return null;
+        }
+        finally {
+            dataStore.closeSafe(cx);
+        }
+    }
+
+    JDBCDataStore dataStore;
+    String typeName;
+    String name;
+    boolean deferIndexes;
+
+    /** whether the staging table was created by this load, and so can be dropped */
+    boolean created;
+
+    /** whether the live table can't be dropped, so rows must be copied */
+    boolean copyRows;
+
+    /** statements creating the indexes, not yet run when deferred */
+    List<String> indexes = new ArrayList<String>();
+
+    /** names of the staging constraints and indexes, mapped to the live names */
+    Map<String,String> constraintNames = new LinkedHashMap<String, String>();
+    Map<String,String> indexNames = new LinkedHashMap<String, String>();
+
+    StagingTable(JDBCDataStore dataStore, String typeName, String id, boolean deferIndexes) {
+        this.dataStore = dataStore;
+        this.typeName = typeName;
+        this.name = truncate(PREFIX + id + "_" + typeName, MAX_NAME_LENGTH);
+        this.deferIndexes = deferIndexes;
+    }
+
+    /**
+     * Name of the staging table, the feature type features are loaded into.
+     */
+    public String getTypeName() {
+        return name;
+    }
+
+    void create(Connection cx) throws SQLException {
+        Statement st = cx.createStatement();
+        try {
+            // left over by an interrupted run of the same load
+            if (isStagingTable(cx)) {
+                st.execute("DROP TABLE " + table(name));
+            }
+            st.execute("CREATE TABLE " + table(name) + " (LIKE " + table(typeName)
+                + " INCLUDING DEFAULTS INCLUDING CONSTRAINTS INCLUDING STORAGE "
+                + "INCLUDING COMMENTS)");
+            created = true;
+            st.execute("COMMENT ON TABLE " + table(name) + " IS '" + MARKER + "'");
+
+            List<String[]> options = query(cx, "SELECT array_to_string(reloptions, ', ') "
+                + "FROM pg_class WHERE oid = ?::regclass AND reloptions IS NOT NULL");
+            if (!options.isEmpty()) {
+                st.execute("ALTER TABLE " + table(name) + " SET (" + options.get(0)[0] + ")");
+            }
+
+            String blocker = dropBlocker(cx);
+            copyRows = blocker != null;
+            if (copyRows) {
+                LOGGER.warning(typeName + " can't be swapped, " + blocker + ". Rows will be "
+                    + "copied back to it, rewriting the whole table in one transaction");
+            }
+
+            List<String[]> constraints = query(cx, "SELECT conname, pg_get_constraintdef(oid) "
+                + "FROM pg_constraint WHERE conrelid = ?::regclass "
+                + "AND contype IN ('p', 'u', 'x', 'f')");
+            for (String[] c : constraints) {
+                String tmp = tempName();
+                st.execute("ALTER TABLE " + table(name) + " ADD CONSTRAINT " + quote(tmp) + " "
+                    + c[1]);
+                constraintNames.put(tmp, c[0]);
+            }
+
+            // indexes not backing a constraint
+            List<String[]> defs = query(cx, "SELECT i.relname, pg_get_indexdef(i.oid), "
+                + "CASE WHEN x.indisunique THEN 'UNIQUE ' ELSE '' END "
+                + "FROM pg_index x JOIN pg_class i ON i.oid = x.indexrelid "
+                + "WHERE x.indrelid = ?::regclass AND NOT EXISTS "
+                + "(SELECT 1 FROM pg_constraint c WHERE c.conindid = i.oid)");
+            for (String[] d : defs) {
+                int using = d[1].indexOf(" USING ");
+                if (using < 0) {
+                    LOGGER.warning("Unable to copy index " + d[0] + ": " + d[1]);
+                    continue;
+                }
+                String tmp = tempName();
+                indexes.add("CREATE " + d[2] + "INDEX " + quote(tmp) + " ON " + table(name)
+                    + d[1].substring(using));
+                indexNames.put(tmp, d[0]);
+            }
+
+            if (copyRows) {
+                // the rows go back to the live table, which has its own indexes
+                indexes.clear();
+            }
+            else if (!deferIndexes) {
+                buildIndexes(st);
+            }
+        }
+        finally {
+            dataStore.closeSafe(st);
+        }
+    }
+
+    void buildIndexes(Statement st) throws SQLException {
+        for (String sql : indexes) {
+            LOGGER.fine(sql);
+            st.execute(sql);
+        }
+        indexes.clear();
+    }
+
+    /**
+     * Builds any deferred index and puts the staging table in place of the live table.
+     */
+    public void swap() throws IOException {
+        Connection cx = dataStore.getConnection(Transaction.AUTO_COMMIT);
+        try {
+            Statement st = cx.createStatement();
+            try {
+                // outside of the swap, building indexes does not lock the live table
+                buildIndexes(st);
+
+                cx.setAutoCommit(false);
+                if (!copyRows) {
+                    try {
+                        rename(cx, st);
+                        cx.commit();
+                        return;
+                    }
+                    catch(SQLException e) {
+                        cx.rollback();
+                        LOGGER.log(Level.WARNING, "Unable to swap " + name + " in place of " 
+                            + typeName + ", copying rows instead", e);
+                    }
+                }
+
+                st.execute("DELETE FROM " + table(typeName));
+                st.execute("INSERT INTO " + table(typeName) + " SELECT * FROM " + table(name));
+                st.execute("DROP TABLE " + table(name));
+                cx.commit();
+            }
+            finally {
+                dataStore.closeSafe(st);
+            }
+        }
+        catch(SQLException e) {
+            rollback(cx);
+            throw new IOException("Error replacing " + typeName + " with " + name, e);
+        }
+        finally {
+            try {
+                cx.setAutoCommit(true);
+            }
+            catch(SQLException e) {
+                LOGGER.log(Level.FINE, "Error resetting auto commit", e);
+            }
+            dataStore.closeSafe(cx);
+        }
+    }
+
+    void rename(Connection cx, Statement st) throws SQLException {
+        // read before the live table goes, applied once the staging table has taken its name
+        List<String> properties = properties(cx);
+
+        // sequences owned by the live table would go with it
+        List<String[]> owned = query(cx, "SELECT attname, pg_get_serial_sequence(?, attname) "
+            + "FROM pg_attribute WHERE attrelid = ?::regclass AND attnum > 0 "
+            + "AND NOT attisdropped AND pg_get_serial_sequence(?, attname) IS NOT NULL");
+        for (String[] col : owned) {
+            st.execute("ALTER SEQUENCE " + col[1] + " OWNED BY " + table(name) + "."
+                + quote(col[0]));
+        }
+
+        st.execute("DROP TABLE " + table(typeName));
+        st.execute("ALTER TABLE " + table(name) + " RENAME TO " + quote(typeName));
+
+        for (Map.Entry<String,String> e : constraintNames.entrySet()) {
+            st.execute("ALTER TABLE " + table(typeName) + " RENAME CONSTRAINT "
+                + quote(e.getKey()) + " TO " + quote(e.getValue()));
+        }
+        for (Map.Entry<String,String> e : indexNames.entrySet()) {
+            st.execute("ALTER INDEX " + table(e.getKey()) + " RENAME TO " + quote(e.getValue()));
+        }
+
+        for (String sql : properties) {
+            LOGGER.fine(sql);
+            st.execute(sql);
+        }
+    }
+
+    /*
+     * statements giving the table under the live name the comment, owner, privileges, triggers
+     * and row level security of the live table
+     */
+    List<String> properties(Connection cx) throws SQLException {
+        List<String> sql = new ArrayList<String>();
+        String table = table(typeName);
+
+        List<String[]> rows = query(cx, "SELECT coalesce(quote_literal(obj_description(c.oid, "
+            + "'pg_class')), 'NULL'), quote_ident(pg_get_userbyid(c.relowner)), "
+            + "pg_get_userbyid(c.relowner) = current_user FROM pg_class c "
+            + "WHERE c.oid = ?::regclass");
+        sql.add("COMMENT ON TABLE " + table + " IS " + rows.get(0)[0]);
+        if (!isTrue(rows.get(0)[2])) {
+            sql.add("ALTER TABLE " + table + " OWNER TO " + rows.get(0)[1]);
+        }
+
+        rows = query(cx, "SELECT a.privilege_type, CASE WHEN a.grantee = 0 THEN 'PUBLIC' "
+            + "ELSE quote_ident(pg_get_userbyid(a.grantee)) END, a.is_grantable "
+            + "FROM pg_class c, aclexplode(c.relacl) a WHERE c.oid = ?::regclass");
+        for (String[] grant : rows) {
+            sql.add("GRANT " + grant[0] + " ON " + table + " TO " + grant[1]
+                + (isTrue(grant[2]) ? " WITH GRANT OPTION" : ""));
+        }
+
+        rows = query(cx, "SELECT pg_get_triggerdef(t.oid), quote_ident(t.tgname), t.tgenabled "
+            + "FROM pg_trigger t WHERE t.tgrelid = ?::regclass AND NOT t.tgisinternal");
+        for (String[] trigger : rows) {
+            sql.add(trigger[0]);
+            if ("D".equals(trigger[2])) {
+                sql.add("ALTER TABLE " + table + " DISABLE TRIGGER " + trigger[1]);
+            }
+            else if ("R".equals(trigger[2])) {
+                sql.add("ALTER TABLE " + table + " ENABLE REPLICA TRIGGER " + trigger[1]);
+            }
+            else if ("A".equals(trigger[2])) {
+                sql.add("ALTER TABLE " + table + " ENABLE ALWAYS TRIGGER " + trigger[1]);
+            }
+        }
+
+        DatabaseMetaData md = cx.getMetaData();
+        int major = md.getDatabaseMajorVersion();
+        if (major > 9 || major == 9 && md.getDatabaseMinorVersion() >= 5) {
+            rows = query(cx, "SELECT c.relrowsecurity, c.relforcerowsecurity FROM pg_class c "
+                + "WHERE c.oid = ?::regclass");
+            if (isTrue(rows.get(0)[0])) {
+                sql.add("ALTER TABLE " + table + " ENABLE ROW LEVEL SECURITY");
+            }
+            if (isTrue(rows.get(0)[1])) {
+                sql.add("ALTER TABLE " + table + " FORCE ROW LEVEL SECURITY");
+            }
+
+            // permissive and restrictive policies came with PostgreSQL 10
+            rows = query(cx, "SELECT quote_ident(p.policyname), " 
+                + (major >= 10 ? "p.permissive" : "'PERMISSIVE'") + ", p.cmd, "
+                + "array_to_string(ARRAY(SELECT CASE WHEN r = 'public' THEN 'PUBLIC' "
+                + "ELSE quote_ident(r) END FROM unnest(p.roles) r), ', '), "
+                + "p.qual, p.with_check FROM pg_policies p JOIN pg_class c "
+                + "ON c.relname = p.tablename JOIN pg_namespace n ON n.oid = c.relnamespace "
+                + "AND n.nspname = p.schemaname WHERE c.oid = ?::regclass");
+            for (String[] policy : rows) {
+                sql.add("CREATE POLICY " + policy[0] + " ON " + table 
+                    + (major >= 10 ? " AS " + policy[1] : "") + " FOR " + policy[2] 
+                    + " TO " + policy[3] 
+                    + (policy[4] != null ? " USING (" + policy[4] + ")" : "")
+                    + (policy[5] != null ? " WITH CHECK (" + policy[5] + ")" : ""));
+            }
+        }
+        return sql;
+    }
+
+    /**
+     * Drops the staging table, used when the load fails or is canceled.
+     */
+    public void drop() {
+        try {
+            Connection cx = dataStore.getConnection(Transaction.AUTO_COMMIT);
+            try {
+                drop(cx);
+            }
+            finally {
+                dataStore.closeSafe(cx);
+            }
+        }
+        catch(IOException e) {
+            LOGGER.log(Level.WARNING, "Error dropping staging table " + name, e);
+        }
+    }
+
+    void drop(Connection cx) {
+        if (!created) {
+            return;
+        }
+        Statement st = null;
+        try {
+            st = cx.createStatement();
+            st.execute("DROP TABLE IF EXISTS " + table(name));
+        }
+        catch(SQLException e) {
+            LOGGER.log(Level.WARNING, "Error dropping staging table " + name, e);
+        }
+        finally {
+            dataStore.closeSafe(st);
+        }
+    }
+
+    /*
+     * whether a table with the staging name exists, created by an earlier run of the importer
+     */
+    boolean isStagingTable(Connection cx) throws SQLException {
+        PreparedStatement ps = cx.prepareStatement("SELECT obj_description(c.oid, 'pg_class') "
+            + "FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace "
+            + "WHERE c.relname = ? AND n.nspname = coalesce(?, current_schema())");
+        try {
+            ps.setString(1, name);
+            ps.setString(2, dataStore.getDatabaseSchema());
+            ResultSet rs = ps.executeQuery();
+            try {
+                return rs.next() && MARKER.equals(rs.getString(1));
+            }
+            finally {
+                dataStore.closeSafe(rs);
+            }
+        }
+        finally {
+            dataStore.closeSafe(ps);
+        }
+    }
+
+    /*
+     * what keeps the live table from being dropped, views depending on it or foreign keys
+     * referencing it, or null if nothing does
+     */
+    String dropBlocker(Connection cx) throws SQLException {
+        List<String[]> rows = query(cx, "SELECT DISTINCT r.ev_class::regclass::text "
+            + "FROM pg_depend d JOIN pg_rewrite r ON r.oid = d.objid "
+            + "WHERE d.classid = 'pg_rewrite'::regclass AND d.refobjid = ?::regclass "
+            + "AND r.ev_class <> d.refobjid");
+        if (!rows.isEmpty()) {
+            return "views depend on it: " + rows.get(0)[0];
+        }
+        rows = query(cx, "SELECT conname, conrelid::regclass::text FROM pg_constraint "
+            + "WHERE contype = 'f' AND confrelid = ?::regclass");
+        if (!rows.isEmpty()) {
+            return "foreign key " + rows.get(0)[0] + " of " + rows.get(0)[1] + " references it";
+        }
+        return null;
+    }
+
+    static boolean isTrue(String value) {
+        return "t".equals(value) || "true".equals(value);
+    }
+
+    /*
+     * runs a query against the live table, each parameter is bound to its qualified name
+     */
+    List<String[]> query(Connection cx, String sql) throws SQLException {
+        List<String[]> rows = new ArrayList<String[]>();
+        PreparedStatement ps = cx.prepareStatement(sql);
+        try {
+            String table = table(typeName);
+            int param = 1;
+            for (int i = sql.indexOf('?'); i >= 0; i = sql.indexOf('?', i + 1)) {
+                ps.setString(param++, table);
+            }
+            ResultSet rs = ps.executeQuery();
+            try {
+                int n = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+                    String[] row = new String[n];
+                    for (int i = 0; i < n; i++) {
+                        row[i] = rs.getString(i+1);
+                    }
+                    rows.add(row);
+                }
+            }
+            finally {
+                dataStore.closeSafe(rs);
+            }
+        }
+        finally {
+            dataStore.closeSafe(ps);
+        }
+        return rows;
+    }
+
+    String tempName() {
+        String suffix = "_" + (constraintNames.size() + indexNames.size());
+        return truncate(name, MAX_NAME_LENGTH - suffix.length()) + suffix;
+    }
+
+    String table(String table) {
+        StringBuffer sql = new StringBuffer();
+        SQLDialect dialect = dataStore.getSQLDialect();
+        if (dataStore.getDatabaseSchema() != null) {
+            dialect.encodeSchemaName(dataStore.getDatabaseSchema(), sql);
+            sql.append(".");
+        }
+        dialect.encodeTableName(table, sql);
+        return sql.toString();
+    }
+
+    String quote(String identifier) {
+        StringBuffer sql = new StringBuffer();
+        dataStore.getSQLDialect().encodeColumnName(null, identifier, sql);
+        return sql.toString();
+    }
+
+    void rollback(Connection cx) {
+        try {
+            if (!cx.getAutoCommit()) {
+                cx.rollback();
+            }
+        }
+        catch(SQLException e) {
+            LOGGER.log(Level.FINE, "Error rolling back", e);
+        }
+    }
+
+    static String truncate(String name, int length) {
+        return name.length() > length ? name.substring(0, length) : name;
+    }
+}
@@ -0,0 +1,161 @@
+package org.geoserver.importer.jdbc;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+import org.geotools.jdbc.JDBCDataStore;
+import org.geotools.jdbc.PrimaryKeyColumn;
+import org.geotools.jdbc.SQLDialect;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+import org.opengis.feature.type.GeometryDescriptor;
+
+/**
+ * Bulk loader that merges features into a PostgreSQL table by the value of key attributes, with
+ * batched <tt>INSERT ... ON CONFLICT (keys) DO UPDATE</tt> statements.
+ * <p>
+ * Rows are matched by the database against a unique index spanning the key attributes, so each
+ * batch of features is merged in a single round trip whatever the number of rows that change.
+ * Matched rows are only updated when a value differs, unchanged rows are not rewritten. Within a
+ * batch later features win over earlier ones with the same key.
+ * </p>
+ */
+public class UpsertBulkLoader extends InsertBulkLoader {
+
+    /**
+     * Whether the table can be merged into, that is the server supports <tt>ON CONFLICT</tt>
+     * and a unique index covers exactly the key attributes.
+     */
+    static boolean supports(JDBCDataStore dataStore, String typeName, List<String> keys,
+        Connection cx) {
+        try {
+            DatabaseMetaData md = cx.getMetaData();
+            int major = md.getDatabaseMajorVersion();
+            if (major < 9 || major == 9 && md.getDatabaseMinorVersion() < 5) {
+                LOGGER.fine("INSERT ... ON CONFLICT requires PostgreSQL 9.5 or newer");
+                return false;
+            }
+
+            Map<String,Set<String>> indexes = new LinkedHashMap<String, Set<String>>();
+            ResultSet rs = md.getIndexInfo(null, dataStore.getDatabaseSchema(), typeName, true,
+                true);
+            try {
+                while (rs.next()) {
+                    String column = rs.getString("COLUMN_NAME");
+                    if (column == null) {
+                        continue;
+                    }
+                    String index = rs.getString("INDEX_NAME");
+                    Set<String> columns = indexes.get(index);
+                    if (columns == null) {
+                        columns = new HashSet<String>();
+                        indexes.put(index, columns);
+                    }
+                    columns.add(column);
+                }
+            }
+            finally {
+                dataStore.closeSafe(rs);
+            }
+
+            Set<String> keySet = new HashSet<String>(keys);
+            if (indexes.values().contains(keySet)) {
+                return true;
+            }
+            LOGGER.fine("No unique index on " + keys + " for " + typeName);
+        }
+        catch(SQLException e) {
+            LOGGER.log(Level.FINE, "Unable to look up unique indexes of " + typeName, e);
+        }
+        return false;
+    }
+
+    List<String> keys;
+
+    UpsertBulkLoader(JDBCDataStore dataStore, SimpleFeatureType featureType,
+        List<PrimaryKeyColumn> sequenced, List<String> keys, Connection cx, int batchSize) {
+        super(dataStore, featureType, sequenced, cx, batchSize);
+        this.keys = keys;
+    }
+
+    public List<String> getKeys() {
+        return keys;
+    }
+
+    @Override
+    String tableAlias() {
+        return "t";
+    }
+
+    @Override
+    void insertSuffix(SQLDialect dialect, StringBuffer sql) {
+        sql.append(" ON CONFLICT (");
+        for (int i = 0; i < keys.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            dialect.encodeColumnName(null, keys.get(i), sql);
+        }
+        sql.append(") DO ");
+
+        List<AttributeDescriptor> values = new ArrayList<AttributeDescriptor>();
+        for (AttributeDescriptor att : featureType.getAttributeDescriptors()) {
+            if (!keys.contains(att.getLocalName())) {
+                values.add(att);
+            }
+        }
+        if (values.isEmpty()) {
+            // nothing but keys, the row is already there
+            sql.append("NOTHING");
+            return;
+        }
+
+        sql.append("UPDATE SET ");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            dialect.encodeColumnName(null, values.get(i).getLocalName(), sql);
+            sql.append(" = EXCLUDED.");
+            dialect.encodeColumnName(null, values.get(i).getLocalName(), sql);
+        }
+
+        // leave rows that would not change alone, rewriting them costs a new row version each
+        sql.append(" WHERE (");
+        compared(dialect, values, tableAlias(), sql);
+        sql.append(") IS DISTINCT FROM (");
+        compared(dialect, values, "EXCLUDED", sql);
+        sql.append(")");
+    }
+
+    /*
+     * the values compared to tell whether a row changed, geometries as binary since the geometry 
+     * equality operator only compares bounding boxes
+     */
+    void compared(SQLDialect dialect, List<AttributeDescriptor> values, String table, 
+        StringBuffer sql) {
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            boolean geometry = values.get(i) instanceof GeometryDescriptor;
+            if (geometry) {
+                sql.append("ST_AsEWKB(");
+            }
+            sql.append(table).append(".");
+            dialect.encodeColumnName(null, values.get(i).getLocalName(), sql);
+            if (geometry) {
+                sql.append(")");
+            }
+        }
+    }
+}
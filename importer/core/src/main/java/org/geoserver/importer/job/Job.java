@@ -15,6 +15,28 @@ public abstract class Job<V> implements Callable<V> {
         this.monitor = monitor;
     }
 
+    /**
+     * The priority of the job, jobs with a higher priority are run first.
+     */
+    public int getPriority() {
+        return 0;
+    }
+
+    /**
+     * The user the job runs on behalf of, used to cap the number of jobs a single user can run
+     * at once. May be <code>null</code>.
+     */
+    public String getUser() {
+        return null;
+    }
+
+    /**
+     * Identifier of the store the job writes to, used to cap the number of jobs running against
+     * a single store at once. May be <code>null</code>.
+     */
+    public String getStore() {
+        return null;
+    }
+
     protected abstract V call(ProgressMonitor monitor) throws Exception;
 }
-
@@ -1,21 +1,29 @@
 package org.geoserver.importer.job;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
+import java.util.PriorityQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.FutureTask;
-import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Queue of asynchronous import jobs.
+ * <p>
+ * Jobs run on a bounded pool of worker threads. Jobs that can't run right away wait in a queue
+ * ordered by priority, and then submission order. Optionally the number of jobs running at once
+ * for a single user, or against a single target store, can be capped, in which case a job whose
+ * user or store is at its limit is held back while jobs behind it in the queue are allowed to
+ * run.
+ * </p>
+ */
 public class JobQueue {
 
     /** job id counter */
@@ -24,29 +32,31 @@ public class JobQueue {
     /** recent jobs */
     ConcurrentHashMap<Long,Task<?>> jobs = new ConcurrentHashMap<Long, Task<?>>();
 
-    /** job runner */
-    //ExecutorService pool = Executors.newCachedThreadPool();
-    ExecutorService pool = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS,
-            new SynchronousQueue<Runnable>()) {
-        protected <T extends Object> RunnableFuture<T> newTaskFor(Callable<T> callable) {
-            if (callable instanceof Job) {
-                return new Task((Job) callable);
-            }
-            return super.newTaskFor(callable);
-        };
-        
-        protected void beforeExecute(Thread t, Runnable r) {
-            if (t != null && r instanceof Task) {
-                ((Task)r).started();
-            }
-        };
-        
-        protected void afterExecute(Runnable r, Throwable t) {
-            if (t != null && r instanceof Task) {
-                ((Task)r).setError(t);
+    /** maximum number of jobs running at once */
+    int maxRunning;
+
+    /** maximum number of jobs running at once per user and per target store, 0 for no limit */
+    int maxRunningPerUser = 0;
+    int maxRunningPerStore = 0;
+
+    /** jobs waiting to run, highest priority first */
+    PriorityQueue<Task<?>> pending = new PriorityQueue<Task<?>>(11, new Comparator<Task<?>>() {
+        @Override
+        public int compare(Task<?> t1, Task<?> t2) {
+            if (t1.getPriority() != t2.getPriority()) {
+                return t1.getPriority() > t2.getPriority() ? -1 : 1;
             }
-        };
-    };
+            return t1.getId().compareTo(t2.getId());
+        }
+    });
+
+    /** number of running jobs, in total and per user/store */
+    int running = 0;
+    Map<String,Integer> runningByUser = new HashMap<String, Integer>();
+    Map<String,Integer> runningByStore = new HashMap<String, Integer>();
+
+    /** job runner, never handed more jobs than it has threads */
+    ThreadPoolExecutor pool;
 
     /** job cleaner */
     ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor();
@@ -66,12 +76,77 @@ public class JobQueue {
         }, 60, 60, TimeUnit.SECONDS);
     }
 
-    public Long submit(Job<?> task) {
+    public JobQueue() {
+        this(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    public JobQueue(int maxRunning) {
+        this.maxRunning = Math.max(1, maxRunning);
+        pool = new ThreadPoolExecutor(this.maxRunning, this.maxRunning, 60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>()) {
+            protected void beforeExecute(Thread t, Runnable r) {
+                if (t != null && r instanceof Task) {
+                    ((Task)r).started();
+                }
+            };
+
+            protected void afterExecute(Runnable r, Throwable t) {
+                if (r instanceof Task) {
+                    if (t != null) {
+                        ((Task)r).setError(t);
+                    }
+                    finished((Task<?>)r);
+                }
+            };
+        };
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    public synchronized int getMaxRunning() {
+        return maxRunning;
+    }
+
+    public synchronized void setMaxRunning(int maxRunning) {
+        this.maxRunning = Math.max(1, maxRunning);
+        if (this.maxRunning > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(this.maxRunning);
+            pool.setCorePoolSize(this.maxRunning);
+        }
+        else {
+            pool.setCorePoolSize(this.maxRunning);
+            pool.setMaximumPoolSize(this.maxRunning);
+        }
+        schedule();
+    }
+
+    public synchronized int getMaxRunningPerUser() {
+        return maxRunningPerUser;
+    }
+
+    public synchronized void setMaxRunningPerUser(int maxRunningPerUser) {
+        this.maxRunningPerUser = maxRunningPerUser;
+        schedule();
+    }
+
+    public synchronized int getMaxRunningPerStore() {
+        return maxRunningPerStore;
+    }
+
+    public synchronized void setMaxRunningPerStore(int maxRunningPerStore) {
+        this.maxRunningPerStore = maxRunningPerStore;
+        schedule();
+    }
+
+    public Long submit(Job<?> job) {
         Long jobid = counter.getAndIncrement();
-        Task t = (Task) pool.submit(task);
+        Task t = new Task(job);
         t.setId(jobid);
 
         jobs.put(jobid, t);
+        synchronized (this) {
+            pending.add(t);
+            schedule();
+        }
         return jobid;
     }
 
@@ -85,8 +160,98 @@ public class JobQueue {
         return new ArrayList<Task<?>>(jobs.values());
     }
 
+    /**
+     * The number of jobs waiting to run.
+     */
+    public synchronized int getQueueDepth() {
+        return pending.size();
+    }
+
+    /**
+     * The number of jobs currently running.
+     */
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    /**
+     * The longest time, in milliseconds, a job currently in the queue has been waiting to run.
+     */
+    public synchronized long getMaxWaitTime() {
+        long max = 0;
+        for (Task<?> t : pending) {
+            max = Math.max(max, t.getWaitTime());
+        }
+        return max;
+    }
+
     public void shutdown() {
         cleaner.shutdownNow();
+        synchronized (this) {
+            for (Task<?> t : pending) {
+                t.cancel(false);
+            }
+            pending.clear();
+        }
         pool.shutdownNow();
     }
+
+    /*
+     * hands as many pending jobs as the limits allow to the pool, must be called while holding
+     * the lock on the queue
+     */
+    void schedule() {
+        if (pool.isShutdown()) {
+            return;
+        }
+
+        List<Task<?>> held = new ArrayList<Task<?>>();
+        while (running < maxRunning && !pending.isEmpty()) {
+            Task<?> t = pending.poll();
+            if (t.isCancelled()) {
+                continue;
+            }
+            if (atLimit(runningByUser, t.getUser(), maxRunningPerUser)
+                || atLimit(runningByStore, t.getStore(), maxRunningPerStore)) {
+                held.add(t);
+                continue;
+            }
+
+            running++;
+            increment(runningByUser, t.getUser(), 1);
+            increment(runningByStore, t.getStore(), 1);
+            t.scheduled();
+            pool.execute(t);
+        }
+        pending.addAll(held);
+    }
+
+    synchronized void finished(Task<?> t) {
+        running--;
+        increment(runningByUser, t.getUser(), -1);
+        increment(runningByStore, t.getStore(), -1);
+        schedule();
+    }
+
+    boolean atLimit(Map<String,Integer> counts, String key, int limit) {
+        if (key == null || limit <= 0) {
+            return false;
+        }
+        Integer count = counts.get(key);
+        return count != null && count >= limit;
+    }
+
+    void increment(Map<String,Integer> counts, String key, int delta) {
+        if (key == null) {
+            return;
+        }
+        Integer count = counts.get(key);
+        int value = (count != null ? count : 0) + delta;
+        if (value > 0) {
+            counts.put(key, value);
+        }
+        else {
+            counts.remove(key);
+        }
+    }
 }
@@ -8,14 +8,27 @@ public class Task<V> extends FutureTask<V> {
     ProgressMonitor monitor;
     Throwable error;
     boolean recieved = false;
-    boolean started = false;
+    volatile boolean started = false;
     String toString;
 
+    int priority;
+    String user;
+    String store;
+
+    /** times the job was submitted, and handed to a worker thread */
+    long submitted;
+    volatile long scheduled;
+
     public Task(Job<V> job) {
         super(job);
         toString = job.toString();
         monitor = new ProgressMonitor();
         job.setMonitor(monitor);
+
+        priority = job.getPriority();
+        user = job.getUser();
+        store = job.getStore();
+        submitted = System.currentTimeMillis();
     }
 
     public void setId(Long id) {
@@ -54,6 +67,31 @@ public class Task<V> extends FutureTask<V> {
         return started;
     }
 
+    public int getPriority() {
+        return priority;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getStore() {
+        return store;
+    }
+
+    public void scheduled() {
+        scheduled = System.currentTimeMillis();
+    }
+
+    /**
+     * The time in milliseconds the job spent waiting in the queue, or has been waiting so far if
+     * it has not been scheduled yet.
+     */
+    public long getWaitTime() {
+        long end = scheduled > 0 ? scheduled : System.currentTimeMillis();
+        return end - submitted;
+    }
+
     @Override
     public String toString() {
         return toString;
@@ -5,13 +5,22 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.commons.io.FilenameUtils;
-import org.geotools.coverage.grid.GridCoverage2D;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.coverage.grid.GridGeometry2D;
 import org.geotools.coverage.grid.io.AbstractGridCoverage2DReader;
 import org.geotools.geometry.Envelope2D;
+import org.geotools.geometry.GeneralEnvelope;
 import org.geotools.util.logging.Logging;
 import org.geoserver.importer.DataFormat;
 import org.geoserver.importer.Directory;
@@ -21,20 +30,47 @@ import org.geoserver.importer.RasterFormat;
 import org.geoserver.importer.SpatialFile;
 import org.geoserver.importer.job.ProgressMonitor;
 
-import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Collections2;
 
 public class Mosaic extends Directory {
 
     private static final Logger LOGGER = Logging.getLogger(Mosaic.class);
 
+    /**
+     * granule envelope and grid by file path, so preparing the same directory again only reads
+     * new or modified granules
+     */
+    static Cache<String,GranuleInfo> GRANULES = 
+        CacheBuilder.newBuilder().maximumSize(10000).build();
+
     TimeMode timeMode;
     TimeHandler timeHandler;
-    
+
+    /**
+     * number of threads reading granule headers
+     */
+    int inspectionThreads;
+
     public Mosaic(File file) {
         super(file, false);
         setTimeMode(TimeMode.NONE);
+        inspectionThreads = inspectionThreadsProperty();
+    }
+
+    static int inspectionThreadsProperty() {
+        String value = GeoServerExtensions.getProperty("org.geoserver.importer.mosaicThreads");
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            }
+            catch(NumberFormatException e) {
+                LOGGER.warning("Invalid value for org.geoserver.importer.mosaicThreads: " + value);
+            }
+        }
+        return Runtime.getRuntime().availableProcessors();
     }
 
     public TimeMode getTimeMode() {
@@ -50,6 +86,14 @@ public class Mosaic extends Directory {
         return timeHandler;
     }
 
+    public int getInspectionThreads() {
+        return inspectionThreads;
+    }
+
+    public void setInspectionThreads(int inspectionThreads) {
+        this.inspectionThreads = inspectionThreads;
+    }
+
     @Override
     public void prepare(ProgressMonitor m) throws IOException {
         super.prepare(m);
@@ -75,6 +119,8 @@ public class Mosaic extends Directory {
             }
         }));
 
+        inspect(m);
+
         if (!files.isEmpty()) {
             DataFormat format = format();
             if (format == null) {
@@ -92,35 +138,106 @@ public class Mosaic extends Directory {
     @Override
     protected SpatialFile newSpatialFile(File f, DataFormat format) {
         if (format instanceof GridFormat) {
-            Granule g = new Granule(super.newSpatialFile(f, format));
-
-            //process the granule
-            try {
-                AbstractGridCoverage2DReader r = ((GridFormat)format).gridReader(g);
-                try {
-                    //get the envelope
-                    GridCoverage2D cov = r.read(null);
+            // envelope and grid are filled in by inspect() once all granules are known
+            return new Granule(super.newSpatialFile(f, format));
+        }
+        return super.newSpatialFile(f, format);
+    }
 
-                    g.setEnvelope(cov.getEnvelope2D());
-                    g.setGrid(cov.getGridGeometry());
+    /**
+     * Reads the envelope and grid of every granule from the file headers, in parallel, then
+     * computes the granule timestamps. Granules that can't be read are turned back into plain
+     * spatial files.
+     */
+    void inspect(ProgressMonitor m) throws IOException {
+        List<Granule> granules = new ArrayList<Granule>(granules());
+        if (granules.isEmpty()) {
+            return;
+        }
+        m.setTask("Inspecting " + granules.size() + " granules");
 
-                    cov.dispose(false);
+        int threads = Math.max(1, Math.min(inspectionThreads, granules.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            AtomicInteger seq = new AtomicInteger();
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "importer-mosaic-" + seq.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        try {
+            List<Future<GranuleInfo>> results = new ArrayList<Future<GranuleInfo>>();
+            for (final Granule g : granules) {
+                results.add(executor.submit(new Callable<GranuleInfo>() {
+                    @Override
+                    public GranuleInfo call() throws Exception {
+                        return granuleInfo(g);
+                    }
+                }));
+            }
 
-                    //compute time stamp
-                    g.setTimestamp(timeHandler.computeTimestamp(g));
+            for (int i = 0; i < granules.size(); i++) {
+                if (m.isCanceled()) {
+                    return;
+                }
 
-                    return g;
+                Granule g = granules.get(i);
+                GranuleInfo info = null;
+                try {
+                    info = results.get(i).get();
+                } catch (ExecutionException e) {
+                    LOGGER.log(Level.FINER, "Error reading " + g.getFile(), e.getCause());
                 }
-                finally {
-                    if (r != null) {
-                        r.dispose();
-                    }
+
+                if (info == null) {
+                    LOGGER.log(Level.WARNING, "Could not read file " + g.getFile() 
+                        + ", unable to get coverage info");
+                    files.set(files.indexOf(g), new SpatialFile(g));
+                    continue;
                 }
-            } catch (Exception e) {
-                LOGGER.log(Level.WARNING, "Could not read file " + f + ", unable to get coverage info");
+
+                g.setEnvelope(new Envelope2D(info.envelope));
+                g.setGrid(info.grid);
+
+                //compute time stamp
+                g.setTimestamp(timeHandler.computeTimestamp(g));
             }
+        } catch (InterruptedException e) {
+            throw (IOException) new IOException("Interrupted inspecting granules").initCause(e);
+        } finally {
+            executor.shutdownNow();
         }
-        return super.newSpatialFile(f, format);
+    }
+
+    /*
+     * envelope and grid of a granule, from the cache or from the file headers, without reading
+     * any raster data
+     */
+    GranuleInfo granuleInfo(Granule g) throws IOException {
+        File f = g.getFile();
+        String key = f.getCanonicalPath();
+
+        GranuleInfo info = GRANULES.getIfPresent(key);
+        if (info != null && info.isCurrent(f)) {
+            return info;
+        }
+
+        AbstractGridCoverage2DReader r = ((GridFormat) g.getFormat()).gridReader(g);
+        if (r == null) {
+            return null;
+        }
+        try {
+            GeneralEnvelope envelope = r.getOriginalEnvelope();
+            info = new GranuleInfo(f, new Envelope2D(envelope), 
+                new GridGeometry2D(r.getOriginalGridRange(), envelope));
+        }
+        finally {
+            r.dispose();
+        }
+
+        GRANULES.put(key, info);
+        return info;
     }
 
     @SuppressWarnings("unchecked")
@@ -133,4 +250,21 @@ public class Mosaic extends Directory {
         });
     }
 
+    static class GranuleInfo {
+        final long length;
+        final long lastModified;
+        final Envelope2D envelope;
+        final GridGeometry2D grid;
+
+        GranuleInfo(File file, Envelope2D envelope, GridGeometry2D grid) {
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+            this.envelope = envelope;
+            this.grid = grid;
+        }
+
+        boolean isCurrent(File file) {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+    }
 }
@@ -26,7 +26,7 @@ public class MosaicFormat extends GridFormat {
     @Override
     public CoverageStoreInfo createStore(ImportData data, WorkspaceInfo workspace, Catalog catalog) throws IOException {
         MosaicIndex index = new MosaicIndex((Mosaic) data);
-        index.write();
+        index.update();
 
         CoverageStoreInfo store = super.createStore(data, workspace, catalog);
         store.setURL(DataUtilities.fileToURL(index.getFile()).toString());
@@ -4,11 +4,15 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.TimeZone;
 import java.util.logging.Logger;
 
 import org.apache.commons.io.FilenameUtils;
@@ -32,6 +36,7 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterators;
 import com.google.common.io.Files;
+import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.Polygon;
 
 /**
@@ -43,6 +48,9 @@ public class MosaicIndex {
 
     static Logger LOGGER = Logging.getLogger(MosaicIndex.class);
 
+    /** time zone the index dates are written, read and compared in */
+    static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
     Mosaic mosaic;
 
     public MosaicIndex(Mosaic mosaic) {
@@ -118,8 +126,10 @@ public class MosaicIndex {
 
         //create a new shapefile feature store
         ShapefileDataStoreFactory shpFactory = new ShapefileDataStoreFactory();
+        Map params = new HashMap();
+        params.put(ShapefileDataStoreFactory.TIMEZONE.key, UTC);
         DirectoryDataStore dir = new DirectoryDataStore(mosaic.getFile(), 
-            new ShapefileDataStoreFactory.ShpFileStoreFactory(shpFactory, new HashMap()));
+            new ShapefileDataStoreFactory.ShpFileStoreFactory(shpFactory, params));
 
         try {
            dir.createSchema(typeBuilder.buildFeatureType());
@@ -154,6 +164,110 @@ public class MosaicIndex {
             dir.dispose();
         }
 
+        writeProperties(first);
+    }
+
+    /**
+     * Brings an existing index up to date with the granules of the mosaic, removing the entries
+     * of granules that are gone or whose footprint or time changed and appending the new ones,
+     * in a single pass over the index. Falls back to {@link #write()} if there is no index yet
+     * or it does not match the mosaic time mode.
+     */
+    public void update() throws IOException {
+        File shp = getFile();
+        File properties = new File(mosaic.getFile(), mosaic.getName()+".properties");
+        if (!shp.exists() || !properties.exists()) {
+            write();
+            return;
+        }
+
+        // granules to index, by location
+        Map<String,Granule> granules = new LinkedHashMap<String, Granule>();
+        for (Granule g : mosaic.granules()) {
+            if (g.getEnvelope() == null) {
+                LOGGER.warning("Skipping " + g.getFile().getAbsolutePath() + ", no envelope");
+                continue;
+            }
+            granules.put(g.getFile().getName(), g);
+        }
+
+        boolean time = mosaic.getTimeMode() != TimeMode.NONE;
+
+        ShapefileDataStore store = new ShapefileDataStore(DataUtilities.fileToURL(shp));
+        store.setTimeZone(UTC);
+        try {
+            SimpleFeatureType schema = store.getSchema();
+            if (schema.getDescriptor("location") == null
+                || (schema.getDescriptor("time") != null) != time) {
+                store.dispose();
+                store = null;
+                write();
+                return;
+            }
+
+            int removed = 0, added = 0;
+            FeatureWriter<SimpleFeatureType, SimpleFeature> w = 
+                store.getFeatureWriter(schema.getTypeName(), Transaction.AUTO_COMMIT);
+            try {
+                while (w.hasNext()) {
+                    SimpleFeature f = w.next();
+                    Granule g = granules.get(f.getAttribute("location"));
+                    Geometry geom = (Geometry) f.getDefaultGeometry();
+                    if (g != null && geom != null && geom.getEnvelopeInternal().equals(
+                            JTS.toGeometry((BoundingBox)g.getEnvelope()).getEnvelopeInternal())
+                        && (!time || sameDay(f.getAttribute("time"), g.getTimestamp()))) {
+                        // up to date
+                        granules.remove(f.getAttribute("location"));
+                    }
+                    else {
+                        w.remove();
+                        removed++;
+                    }
+                }
+
+                // whatever is left is new or changed
+                for (Granule g : granules.values()) {
+                    SimpleFeature f = w.next();
+                    f.setDefaultGeometry(JTS.toGeometry((BoundingBox)g.getEnvelope()));
+                    f.setAttribute("location", g.getFile().getName());
+                    if (time) {
+                        f.setAttribute("time", g.getTimestamp());
+                    }
+                    w.write();
+                    added++;
+                }
+            }
+            finally {
+                w.close();
+            }
+
+            LOGGER.fine("Updated mosaic index " + shp.getPath() + ", removed " + removed 
+                + " and added " + added + " granules");
+        }
+        finally {
+            if (store != null) {
+                store.dispose();
+            }
+        }
+    }
+
+    /*
+     * whether the time of an index entry matches a granule timestamp, the shapefile keeps dates
+     * at day precision only, the day is taken in UTC so it does not depend on the server zone
+     */
+    static boolean sameDay(Object indexed, Date timestamp) {
+        if (indexed == null || timestamp == null) {
+            return indexed == null && timestamp == null;
+        }
+        if (!(indexed instanceof Date)) {
+            return false;
+        }
+        SimpleDateFormat day = new SimpleDateFormat("yyyyMMdd");
+        day.setTimeZone(UTC);
+        return day.format((Date) indexed).equals(day.format(timestamp));
+    }
+
+    void writeProperties(Granule first) throws IOException {
         double width = first.getGrid().getGridRange2D().getWidth();
         double height = first.getGrid().getGridRange2D().getHeight();
 
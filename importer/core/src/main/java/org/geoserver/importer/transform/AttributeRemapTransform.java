@@ -48,6 +48,14 @@ public class AttributeRemapTransform extends AbstractVectorTransform implements
         this.type = type;
     }
 
+    /**
+     * Whether features of the specified type are changed by this transform, the remapping
+     * alone leaves features as they are and fields missing from the type are never touched.
+     */
+    public boolean appliesTo(SimpleFeatureType featureType) {
+        return getClass() != AttributeRemapTransform.class && featureType.indexOf(field) >= 0;
+    }
+
     public SimpleFeatureType apply(ImportTask task, DataStore dataStore,
             SimpleFeatureType featureType) throws Exception {
         //remap the type
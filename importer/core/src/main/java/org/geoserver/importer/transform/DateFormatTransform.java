@@ -6,14 +6,17 @@ import java.util.logging.Level;
 
 import org.geotools.data.DataStore;
 import org.geoserver.importer.DatePattern;
-import org.geoserver.importer.Dates;
+import org.geoserver.importer.DateParser;
 import org.geoserver.importer.ImportTask;
 import org.geoserver.importer.ValidationException;
 import org.opengis.feature.simple.SimpleFeature;
 
 /**
  * Transform that converts a non date attribute in a date attribute.
- * This class is not thread-safe.
+ * <p>
+ * Values not matching the specified format fall back to the built in patterns, starting with
+ * the one that parsed the previous value. 
+ * </p>
  *
  * @author Justin Deoliveira, OpenGeo
  *
@@ -24,6 +27,9 @@ public class DateFormatTransform extends AttributeRemapTransform {
     
     DatePattern datePattern;
 
+    /** parser for values the date pattern can't handle */
+    transient DateParser parser;
+
     public DateFormatTransform(String field, String datePattern) throws ValidationException  {
         init(field,datePattern);
         init();
@@ -83,7 +89,7 @@ public class DateFormatTransform extends AttributeRemapTransform {
 
         // fall back to others
         if (parsed == null) {
-            parsed = Dates.parse(value);
+            parsed = parser().parse(value);
         }
         if (parsed != null) {
             return parsed;
@@ -91,4 +97,11 @@ public class DateFormatTransform extends AttributeRemapTransform {
 
         throw new ParseException("Invalid date '" + value + "'", 0);
     }
+
+    DateParser parser() {
+        if (parser == null) {
+            parser = new DateParser();
+        }
+        return parser;
+    }
 }
@@ -49,7 +49,15 @@ public class KMLPlacemarkTransform extends AbstractVectorTransform implements In
     }
 
     public SimpleFeature convertFeature(SimpleFeature old, SimpleFeatureType targetFeatureType) {
-        SimpleFeatureBuilder fb = new SimpleFeatureBuilder(targetFeatureType);
+        return convertFeature(old, new SimpleFeatureBuilder(targetFeatureType));
+    }
+
+    /**
+     * Converts a placemark with a builder for the target type, readers converting many 
+     * placemarks reuse the same builder.
+     */
+    public SimpleFeature convertFeature(SimpleFeature old, SimpleFeatureBuilder fb) {
+        SimpleFeatureType targetFeatureType = fb.getFeatureType();
         SimpleFeature newFeature = fb.buildFeature(old.getID());
         FeatureDataConverter.DEFAULT.convert(old, newFeature);
         Map<Object, Object> userData = old.getUserData();
@@ -10,7 +10,10 @@ import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import org.opengis.referencing.operation.MathTransform;
+import org.opengis.referencing.operation.TransformException;
 
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.CoordinateSequenceFilter;
 import com.vividsolutions.jts.geom.Geometry;
 
 public class ReprojectTransform extends AbstractVectorTransform implements InlineVectorTransform {
@@ -18,7 +21,18 @@ public class ReprojectTransform extends AbstractVectorTransform implements Inlin
     private static final long serialVersionUID = 1L;
 
     CoordinateReferenceSystem source, target;
-    transient MathTransform transform;
+
+    /** transform computed from the first feature, shared by the threads loading features */
+    transient volatile MathTransform transform;
+
+    /** per thread buffer the coordinates of a geometry are transformed in */
+    static final ThreadLocal<double[]> BUFFER = new ThreadLocal<double[]>();
+
+    /** 
+     * largest buffer kept around by a thread, in ordinates, larger geometries get a buffer of 
+     * their own that is dropped once transformed 
+     */
+    static final int MAX_BUFFER = 64 * 1024;
 
     public CoordinateReferenceSystem getSource() {
         return source;
@@ -61,6 +75,7 @@ public class ReprojectTransform extends AbstractVectorTransform implements Inlin
 
     public SimpleFeature apply(ImportTask task, DataStore dataStore, SimpleFeature oldFeature, SimpleFeature feature)
             throws Exception {
+        MathTransform transform = this.transform;
         if (transform == null) {
             //compute the reprojection transform
             CoordinateReferenceSystem source = this.source;
@@ -73,13 +88,85 @@ public class ReprojectTransform extends AbstractVectorTransform implements Inlin
                 throw new IllegalStateException("Unable to determine source projection");
             }
 
-            transform = CRS.findMathTransform(source, target, true);
+            this.transform = transform = CRS.findMathTransform(source, target, true);
+        }
+
+        if (transform.isIdentity()) {
+            //equivalent source and target, nothing to do
+            return feature;
         }
 
         Geometry g = (Geometry) feature.getDefaultGeometry();
         if (g != null) {
-            feature.setDefaultGeometry(JTS.transform(g, transform));
+            feature.setDefaultGeometry(transform(g, transform));
         }
         return feature;
     }
+
+    /**
+     * Transforms a geometry, handing all its coordinates to the math transform in a single call 
+     * rather than one coordinate at a time.
+     */
+    static Geometry transform(Geometry g, MathTransform transform) throws TransformException {
+        if (transform.getSourceDimensions() != 2 || transform.getTargetDimensions() != 2) {
+            return JTS.transform(g, transform);
+        }
+
+        int n = g.getNumPoints();
+        double[] buffer;
+        if (n * 2 > MAX_BUFFER) {
+            buffer = new double[n * 2];
+        }
+        else {
+            buffer = BUFFER.get();
+            if (buffer == null || buffer.length < n * 2) {
+                buffer = new double[Math.max(n * 2, 1024)];
+                BUFFER.set(buffer);
+            }
+        }
+
+        //flatten the ordinates, transform them, and copy them back in the same order
+        g = (Geometry) g.clone();
+        g.apply(new OrdinateCopier(buffer, false));
+        transform.transform(buffer, 0, buffer, 0, n);
+        g.apply(new OrdinateCopier(buffer, true));
+        return g;
+    }
+
+    /**
+     * Copies x and y ordinates of all the coordinates of a geometry to or from an array.
+     */
+    static class OrdinateCopier implements CoordinateSequenceFilter {
+
+        final double[] ordinates;
+        final boolean write;
+        int i = 0;
+
+        OrdinateCopier(double[] ordinates, boolean write) {
+            this.ordinates = ordinates;
+            this.write = write;
+        }
+
+        @Override
+        public void filter(CoordinateSequence seq, int index) {
+            if (write) {
+                seq.setOrdinate(index, CoordinateSequence.X, ordinates[i++]);
+                seq.setOrdinate(index, CoordinateSequence.Y, ordinates[i++]);
+            }
+            else {
+                ordinates[i++] = seq.getOrdinate(index, CoordinateSequence.X);
+                ordinates[i++] = seq.getOrdinate(index, CoordinateSequence.Y);
+            }
+        }
+
+        @Override
+        public boolean isDone() {
+            return false;
+        }
+
+        @Override
+        public boolean isGeometryChanged() {
+            return write;
+        }
+    }
 }
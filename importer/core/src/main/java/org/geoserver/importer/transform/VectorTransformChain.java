@@ -21,6 +21,9 @@ public class VectorTransformChain extends TransformChain<VectorTransform> {
 
     static Logger LOGGER = Logging.getLogger(VectorTransformChain.class);
 
+    /** inline transforms applied to each feature, compiled for the target feature type */
+    transient volatile Plan plan;
+
     public VectorTransformChain(List<VectorTransform> transforms) {
         super(transforms);
     }
@@ -50,14 +53,23 @@ public class VectorTransformChain extends TransformChain<VectorTransform> {
                 error(tx, e);
             }
         }
-        
+
+        plan = compile(featureType);
         return featureType;
     }
 
     public SimpleFeature inline(ImportTask task, DataStore dataStore, SimpleFeature oldFeature, 
         SimpleFeature feature) throws Exception {
-        
-        for (InlineVectorTransform tx : filter(transforms, InlineVectorTransform.class)) {
+
+        Plan p = plan;
+        if (p == null || p.featureType != feature.getFeatureType()) {
+            // the feature type was not transformed, or features are of another type
+            plan = p = compile(feature.getFeatureType());
+        }
+
+        InlineVectorTransform[] txs = p.transforms;
+        for (int i = 0; i < txs.length; i++) {
+            InlineVectorTransform tx = txs[i];
             try {
                 feature = tx.apply(task, dataStore, oldFeature, feature);
                 if (feature == null) {
@@ -71,6 +83,22 @@ public class VectorTransformChain extends TransformChain<VectorTransform> {
         return feature;
     }
 
+    /*
+     * picks the inline transforms that have something to do on features of the specified type
+     */
+    Plan compile(SimpleFeatureType featureType) {
+        List<InlineVectorTransform> applied = new ArrayList<InlineVectorTransform>();
+        for (InlineVectorTransform tx : filter(transforms, InlineVectorTransform.class)) {
+            if (tx instanceof AttributeRemapTransform 
+                && !((AttributeRemapTransform) tx).appliesTo(featureType)) {
+                continue;
+            }
+            applied.add(tx);
+        }
+        return new Plan(featureType, 
+            applied.toArray(new InlineVectorTransform[applied.size()]));
+    }
+
     public void post(ImportTask task, ImportData data) throws Exception {
         for (PostVectorTransform tx : filter(transforms, PostVectorTransform.class)) {
             try {
@@ -91,6 +119,16 @@ public class VectorTransformChain extends TransformChain<VectorTransform> {
         return filtered;
     }
 
+    static class Plan {
+        final SimpleFeatureType featureType;
+        final InlineVectorTransform[] transforms;
+
+        Plan(SimpleFeatureType featureType, InlineVectorTransform[] transforms) {
+            this.featureType = featureType;
+            this.transforms = transforms;
+        }
+    }
+
     void error(VectorTransform tx, Exception e) throws Exception {
         if (tx.stopOnError(e)) {
             throw e;
@@ -0,0 +1,140 @@
+package org.geoserver.importer;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+public class ArchiveExtractorTest extends TestCase {
+
+    File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = ImporterTestUtils.tmpDir();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    public void testZipParallel() throws Exception {
+        File zip = new File(dir, "test.zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+        for (int i = 0; i < 20; i++) {
+            out.putNextEntry(new ZipEntry("sub" + (i % 3) + "/file" + i + ".txt"));
+            out.write(("content " + i).getBytes("UTF-8"));
+            out.closeEntry();
+        }
+        out.close();
+
+        File target = new File(dir, "target");
+        new ArchiveExtractor(4).extract(zip, target);
+
+        for (int i = 0; i < 20; i++) {
+            File f = new File(target, "sub" + (i % 3) + "/file" + i + ".txt");
+            assertEquals("content " + i, FileUtils.readFileToString(f, "UTF-8"));
+        }
+    }
+
+    public void testListener() throws Exception {
+        File zip = new File(dir, "test.zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+        for (String name : new String[] { "a/b/file1.txt", "a/file2.txt", "c/file3.txt", "d/" }) {
+            out.putNextEntry(new ZipEntry(name));
+            if (!name.endsWith("/")) {
+                out.write(name.getBytes("UTF-8"));
+            }
+            out.closeEntry();
+        }
+        out.close();
+
+        File target = new File(dir, "target");
+        new File(target, "c").mkdirs();
+
+        final List<File> reported = Collections.synchronizedList(new ArrayList<File>());
+        final Set<File> created = Collections.synchronizedSet(new HashSet<File>());
+        new ArchiveExtractor(4, new ArchiveExtractor.Listener() {
+            @Override
+            public void extracted(File d, boolean c) {
+                // everything below the directory is there already
+                for (File f : FileUtils.listFiles(d, null, true)) {
+                    assertTrue(f.length() > 0);
+                }
+                reported.add(d);
+                if (c) {
+                    created.add(d);
+                }
+            }
+        }).extract(zip, target);
+
+        File a = new File(target, "a"), b = new File(a, "b");
+        File c = new File(target, "c"), d = new File(target, "d");
+        assertEquals(4, reported.size());
+        assertEquals(new HashSet<File>(Arrays.asList(a, b, c, d)), new HashSet<File>(reported));
+        assertTrue(reported.indexOf(b) < reported.indexOf(a));
+        assertEquals(new HashSet<File>(Arrays.asList(a, b, d)), created);
+    }
+
+    public void testBadEntryNameWritesNothing() throws Exception {
+        File zip = new File(dir, "latin1.zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip), 
+            Charset.forName("ISO-8859-1"));
+        out.putNextEntry(new ZipEntry("first/ok.txt"));
+        out.write(1);
+        out.closeEntry();
+        out.putNextEntry(new ZipEntry("second/caf\u00e9.txt"));
+        out.write(1);
+        out.closeEntry();
+        out.close();
+
+        File target = new File(dir, "target");
+        try {
+            new ArchiveExtractor(1).extract(zip, target);
+            fail("entry name not in utf-8 should have been refused");
+        } catch (IllegalArgumentException e) {
+            // expected, left to commons-vfs
+        }
+        assertFalse(new File(target, "first").exists());
+    }
+
+    public void testTarGz() throws Exception {
+        File archive = ImporterTestUtils.file("shape/bugsites_esri_prj.tar.gz", dir);
+
+        File target = new File(dir, "target");
+        new ArchiveExtractor(1).extract(archive, target);
+
+        assertTrue(new File(target, "bugsites.shp").exists());
+        assertTrue(new File(target, "bugsites.dbf").exists());
+    }
+
+    public void testEntryOutsideTarget() throws Exception {
+        File zip = new File(dir, "evil.zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+        out.putNextEntry(new ZipEntry("../evil.txt"));
+        out.write(1);
+        out.closeEntry();
+        out.close();
+
+        try {
+            new ArchiveExtractor(1).extract(zip, new File(dir, "target"));
+            fail("entry outside of the target should have been refused");
+        } catch (IOException e) {
+            // expected
+        }
+        assertFalse(new File(dir, "evil.txt").exists());
+    }
+}
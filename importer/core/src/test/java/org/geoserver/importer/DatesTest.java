@@ -23,6 +23,19 @@ public class DatesTest {
         doTestParse( date(2012, JANUARY, 1, 0, 0, 0, 0), "2012");
     }
 
+    @Test
+    public void testParserMixedFormats() {
+        DateParser parser = new DateParser();
+        assertEquals(date(2012, FEBRUARY, 6, 0, 0, 0, 0), parser.parse("2012-02-06"));
+        assertEquals(date(2012, FEBRUARY, 7, 0, 0, 0, 0), parser.parse("2012-02-07"));
+
+        // a different format mid column
+        assertEquals(date(2012, FEBRUARY, 6, 13, 12, 59, 0), parser.parse("2012-02-06T13:12:59Z"));
+        assertEquals(date(2012, JANUARY, 1, 0, 0, 0, 0), parser.parse("2012"));
+        assertEquals(date(2012, FEBRUARY, 8, 0, 0, 0, 0), parser.parse("2012-02-08"));
+        assertNull(parser.parse("not a date"));
+    }
+
     void doTestParse(Date expected, String str) {
         //test straight up
         assertEquals(expected, Dates.parse(str));
@@ -1,10 +1,13 @@
 package org.geoserver.importer;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import static junit.framework.Assert.assertEquals;
 import junit.framework.TestCase;
 
@@ -134,4 +137,80 @@ public class DirectoryTest extends TestCase {
         assertTrue( d.getFiles().get(2) instanceof ASpatialFile);
     }
 
+    public void testNestedDirectoriesParallel() throws Exception {
+        File dir = unpack("shape/archsites_epsg_prj.zip");
+        File sub = new File(dir, "sub");
+        sub.mkdir();
+        unpack("shape/bugsites_esri_prj.tar.gz", sub);
+
+        System.setProperty("org.geoserver.importer.scanThreads", "4");
+        try {
+            Directory d = new Directory(dir);
+            d.prepare();
+
+            assertEquals(2, d.getFiles().size());
+            Directory nested = null;
+            for (FileData f : d.getFiles()) {
+                if (f instanceof Directory) {
+                    nested = (Directory) f;
+                }
+                else {
+                    assertTrue(f instanceof SpatialFile);
+                }
+            }
+            assertNotNull(nested);
+            assertEquals(1, nested.getFiles().size());
+            assertEquals(DataStoreFormat.class, nested.getFormat().getClass());
+            assertEquals(DataStoreFormat.class, d.getFormat().getClass());
+        }
+        finally {
+            System.clearProperty("org.geoserver.importer.scanThreads");
+        }
+    }
+
+    public void testUnpackPrescan() throws Exception {
+        File src = unpack("shape/archsites_epsg_prj.zip");
+        File dir = ImporterTestUtils.tmpDir();
+
+        File zip = new File(dir, "nested.zip");
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+        for (File f : src.listFiles()) {
+            out.putNextEntry(new ZipEntry("sub/" + f.getName()));
+            FileUtils.copyFile(f, out);
+            out.closeEntry();
+        }
+        out.close();
+
+        Directory d = new Directory(dir);
+        d.unpack(zip);
+        assertFalse(zip.exists());
+
+        // the directory of the archive was scanned as it was extracted
+        File sub = new File(dir, "sub");
+        assertNotNull(d.prescanned);
+        Directory prescanned = d.prescanned.get(sub).get();
+        assertEquals(DataStoreFormat.class, prescanned.getFormat().getClass());
+
+        d.prepare();
+        assertEquals(1, d.getFiles().size());
+        assertSame(prescanned, d.getFiles().get(0));
+        assertEquals(DataStoreFormat.class, d.getFormat().getClass());
+        assertNull(d.prescanned);
+    }
+
+    public void testFormatIndex() throws Exception {
+        File dir = unpack("shape/archsites_epsg_prj.zip");
+        unpack("shape/bugsites_esri_prj.tar.gz", dir);
+
+        FormatIndex index = new FormatIndex();
+        DataFormat format = index.lookup(new File(dir, "archsites.shp"));
+        assertTrue(format instanceof DataStoreFormat);
+        assertSame(format, index.lookup(new File(dir, "bugsites.shp")));
+
+        File prj = new File(dir, "archsites.prj");
+        assertFalse(index.isUnresolved(prj));
+        assertNull(index.lookup(prj));
+        assertTrue(index.isUnresolved(new File(dir, "bugsites.prj")));
+    }
+
 }
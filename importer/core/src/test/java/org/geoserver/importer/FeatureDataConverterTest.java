@@ -1,9 +1,11 @@
 package org.geoserver.importer;
 
+import org.geotools.data.DataUtilities;
 import org.geotools.feature.AttributeTypeBuilder;
 import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
 import org.junit.Test;
 import static org.junit.Assert.*;
+import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
 
 /**
@@ -29,4 +31,42 @@ public class FeatureDataConverterTest {
         assertEquals("_123_number_first", badatts.getAttributeDescriptors().get(0).getLocalName());
         assertEquals("i_has_spaces", badatts.getAttributeDescriptors().get(1).getLocalName());
     }
+
+    @Test
+    public void testConvert() throws Exception {
+        SimpleFeatureType from = DataUtilities.createType("from", "geom:Point,name:String,cat:Integer");
+        SimpleFeatureType to = DataUtilities.createType("to", "name:String,geom:Point,extra:String");
+
+        SimpleFeature source = DataUtilities.template(from);
+        source.setAttribute("name", "foo");
+        source.setAttribute("cat", 1);
+
+        SimpleFeature target = DataUtilities.template(to);
+        FeatureDataConverter.DEFAULT.convert(source, target);
+        assertEquals("foo", target.getAttribute("name"));
+        assertNull(target.getAttribute("extra"));
+
+        // mapping is computed once and reused
+        FeatureDataConverter.Mapping mapping = FeatureDataConverter.DEFAULT.last;
+        source.setAttribute("name", "bar");
+        target = DataUtilities.template(to);
+        FeatureDataConverter.DEFAULT.convert(source, target);
+        assertEquals("bar", target.getAttribute("name"));
+        assertSame(mapping, FeatureDataConverter.DEFAULT.last);
+    }
+
+    @Test
+    public void testConvertToOracle() throws Exception {
+        SimpleFeatureType from = DataUtilities.createType("from", "name:String,cat:Integer");
+        SimpleFeatureType to = DataUtilities.createType("to", "NAME:String,CAT:Integer");
+
+        SimpleFeature source = DataUtilities.template(from);
+        source.setAttribute("name", "foo");
+        source.setAttribute("cat", 1);
+
+        SimpleFeature target = DataUtilities.template(to);
+        FeatureDataConverter.TO_ORACLE.convert(source, target);
+        assertEquals("foo", target.getAttribute("NAME"));
+        assertEquals(1, target.getAttribute("CAT"));
+    }
 }
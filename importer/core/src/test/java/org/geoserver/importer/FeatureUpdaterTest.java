@@ -0,0 +1,97 @@
+package org.geoserver.importer;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.data.Transaction;
+import org.geotools.data.memory.MemoryDataStore;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+public class FeatureUpdaterTest extends TestCase {
+
+    SimpleFeatureType type;
+    MemoryDataStore store;
+
+    @Override
+    protected void setUp() throws Exception {
+        type = DataUtilities.createType("test", "code:String,name:String,cat:Integer");
+        store = new MemoryDataStore(type);
+        store.addFeature(feature("f.1", "a", "alpha", 1));
+        store.addFeature(feature("f.2", "b", "beta", 2));
+        store.addFeature(feature("f.3", "c", "gamma", 3));
+    }
+
+    SimpleFeature feature(String fid, String code, String name, Integer cat) {
+        return SimpleFeatureBuilder.build(type, new Object[] { code, name, cat }, fid);
+    }
+
+    Map<String,SimpleFeature> read() throws Exception {
+        Map<String,SimpleFeature> features = new HashMap<String, SimpleFeature>();
+        SimpleFeatureIterator it = store.getFeatureSource("test").getFeatures().features();
+        try {
+            while (it.hasNext()) {
+                SimpleFeature f = it.next();
+                features.put((String) f.getAttribute("code"), f);
+            }
+        }
+        finally {
+            it.close();
+        }
+        return features;
+    }
+
+    public void testMerge() throws Exception {
+        FeatureUpdater updater = new FeatureUpdater(store, "test", Arrays.asList("code"),
+            Transaction.AUTO_COMMIT, 2);
+        updater.add(feature("n.1", "a", "alpha", 1));
+        updater.add(feature("n.2", "b", "BETA", 2));
+        updater.add(feature("n.3", "d", "delta", 4));
+        updater.flush();
+
+        // unchanged features are not rewritten
+        assertEquals(1, updater.getUpdated());
+        assertEquals(1, updater.getInserted());
+
+        Map<String,SimpleFeature> features = read();
+        assertEquals(4, features.size());
+        assertEquals("BETA", features.get("b").getAttribute("name"));
+        assertEquals("gamma", features.get("c").getAttribute("name"));
+        assertEquals("delta", features.get("d").getAttribute("name"));
+    }
+
+    public void testDeleteMissing() throws Exception {
+        FeatureUpdater updater = new FeatureUpdater(store, "test", Arrays.asList("code", "cat"),
+            Transaction.AUTO_COMMIT, 10);
+        updater.setTrackKeys(true);
+        updater.add(feature("n.1", "a", "alpha", 1));
+        updater.add(feature("n.2", "b", "beta", 5));
+
+        assertEquals(2, updater.deleteMissing());
+
+        Map<String,SimpleFeature> features = read();
+        assertEquals(2, features.size());
+        assertEquals(5, features.get("b").getAttribute("cat"));
+        assertNull(features.get("c"));
+    }
+
+    public void testMissingKey() throws Exception {
+        try {
+            new FeatureUpdater(store, "test", Arrays.asList("foo"), Transaction.AUTO_COMMIT, 10);
+            fail("unknown key attribute should have been rejected");
+        }
+        catch(IllegalArgumentException e) {
+        }
+
+        FeatureUpdater updater = new FeatureUpdater(store, "test", Arrays.asList("code"),
+            Transaction.AUTO_COMMIT, 10);
+        assertFalse(updater.hasKey(feature("n.1", null, "none", 1)));
+        assertTrue(updater.hasKey(feature("n.1", "a", "alpha", 1)));
+    }
+}
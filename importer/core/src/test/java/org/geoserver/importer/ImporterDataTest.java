@@ -1,8 +1,12 @@
 package org.geoserver.importer;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.commons.lang.StringUtils;
@@ -12,20 +16,31 @@ import org.geoserver.catalog.FeatureTypeInfo;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.ResourceInfo;
 import org.geotools.data.DataStore;
+import org.geotools.data.DataUtilities;
 import org.geotools.data.FeatureSource;
 import org.geotools.data.Query;
 import org.geotools.data.h2.H2DataStoreFactory;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.simple.SimpleFeatureCollection;
+import org.geotools.data.simple.SimpleFeatureIterator;
+import org.geotools.data.simple.SimpleFeatureSource;
+import org.geotools.data.simple.SimpleFeatureStore;
+import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.feature.FeatureCollection;
 import org.geotools.feature.FeatureIterator;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
 import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geoserver.importer.job.ProgressMonitor;
 import org.geoserver.importer.transform.AbstractInlineVectorTransform;
 import org.geoserver.importer.transform.AttributesToPointGeometryTransform;
 import org.geoserver.importer.transform.TransformChain;
 import org.opengis.feature.Feature;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
 import org.opengis.feature.type.FeatureType;
 import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.filter.FilterFactory;
 
 import com.google.common.base.Predicate;
 import com.google.common.collect.Iterables;
@@ -52,6 +67,68 @@ public class ImporterDataTest extends ImporterTestSupport {
         }
     }
 
+    private static final class FailOnceTransform extends AbstractInlineVectorTransform {
+        /** serialVersionUID */
+        private static final long serialVersionUID = 1L;
+
+        int failAt;
+        transient int count;
+
+        FailOnceTransform(int failAt) {
+            this.failAt = failAt;
+        }
+
+        @Override
+        public SimpleFeature apply(ImportTask task, DataStore dataStore, SimpleFeature oldFeature,
+                SimpleFeature feature) throws Exception {
+            if (++count == failAt) {
+                throw new Exception("failing at feature " + count);
+            }
+            return feature;
+        }
+    }
+
+    private static final class SetAttributeTransform extends AbstractInlineVectorTransform {
+        /** serialVersionUID */
+        private static final long serialVersionUID = 1L;
+
+        String name;
+        Object value;
+
+        SetAttributeTransform(String name, Object value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        @Override
+        public SimpleFeature apply(ImportTask task, DataStore dataStore, SimpleFeature oldFeature,
+                SimpleFeature feature) throws Exception {
+            feature.setAttribute(name, value);
+            return feature;
+        }
+    }
+
+    private static final class CancelAtTransform extends AbstractInlineVectorTransform {
+        /** serialVersionUID */
+        private static final long serialVersionUID = 1L;
+
+        int cancelAt;
+        transient int count;
+
+        CancelAtTransform(int cancelAt) {
+            this.cancelAt = cancelAt;
+        }
+
+        @Override
+        public SimpleFeature apply(ImportTask task, DataStore dataStore, SimpleFeature oldFeature,
+                SimpleFeature feature) throws Exception {
+            if (++count == cancelAt) {
+                task.progress().setCanceled(true);
+            }
+            return feature;
+        }
+    }
+
     public void testImportShapefile() throws Exception {
         File dir = unpack("shape/archsites_epsg_prj.zip");
         
@@ -312,7 +389,245 @@ public class ImporterDataTest extends ImporterTestSupport {
         runChecks("archsites");
         runChecks("bugsites");
     }
-    
+
+    public void testImportIntoDatabasePipelined() throws Exception {
+        Catalog cat = getCatalog();
+
+        DataStoreInfo ds = createH2DataStore(cat.getDefaultWorkspace().getName(), "pipelined");
+
+        File dir = unpack("shape/bugsites_esri_prj.tar.gz");
+        ImportContext context = importer.createContext(new Directory(dir), ds);
+        assertEquals(1, context.getTasks().size());
+
+        ImportTask task = context.getTasks().get(0);
+        assertEquals(ImportTask.State.READY, task.getState());
+
+        importer.setLoadThreads(3);
+        importer.setLoadBatchSize(7);
+        try {
+            importer.run(context);
+        }
+        finally {
+            importer.setLoadThreads(0);
+            importer.setLoadBatchSize(1000);
+        }
+
+        assertEquals(ImportTask.State.COMPLETE, task.getState());
+        assertEquals(task.getTotalToProcess(), task.getNumberProcessed());
+
+        FeatureTypeInfo fti = cat.getFeatureTypeByDataStore(ds, "bugsites");
+        assertNotNull(fti);
+        assertEquals(task.getNumberProcessed(),
+            fti.getFeatureSource(null, null).getCount(Query.ALL));
+        runChecks("bugsites");
+    }
+
+    public void testImportIntoDatabasePipelinedUnordered() throws Exception {
+        Catalog cat = getCatalog();
+
+        DataStoreInfo ds = createH2DataStore(cat.getDefaultWorkspace().getName(), "unordered");
+
+        File dir = unpack("shape/bugsites_esri_prj.tar.gz");
+        ShapefileDataStore shp = new ShapefileDataStore(
+            DataUtilities.fileToURL(new File(dir, "bugsites.shp")));
+        List<String> expected;
+        try {
+            expected = geometries(shp.getFeatureSource().getFeatures());
+        }
+        finally {
+            shp.dispose();
+        }
+
+        ImportContext context = importer.createContext(new Directory(dir), ds);
+        ImportTask task = context.getTasks().get(0);
+
+        importer.setLoadThreads(3);
+        importer.setLoadBatchSize(7);
+        importer.setLoadOrdered(false);
+        try {
+            importer.run(context);
+        }
+        finally {
+            importer.setLoadThreads(0);
+            importer.setLoadBatchSize(1000);
+            importer.setLoadOrdered(true);
+        }
+        assertEquals(ImportTask.State.COMPLETE, task.getState());
+
+        // every feature written exactly once, in whatever order
+        FeatureTypeInfo fti = cat.getFeatureTypeByDataStore(ds, "bugsites");
+        SimpleFeatureSource target = (SimpleFeatureSource) fti.getFeatureSource(null, null);
+        assertEquals(expected, geometries(target.getFeatures()));
+    }
+
+    List<String> geometries(SimpleFeatureCollection features) {
+        List<String> geometries = new ArrayList<String>();
+        SimpleFeatureIterator it = features.features();
+        try {
+            while (it.hasNext()) {
+                geometries.add(String.valueOf(it.next().getDefaultGeometry()));
+            }
+        }
+        finally {
+            it.close();
+        }
+        Collections.sort(geometries);
+        return geometries;
+    }
+
+    public void testImportIntoDatabaseBulkLoad() throws Exception {
+        Catalog cat = getCatalog();
+
+        DataStoreInfo ds = createH2DataStore(cat.getDefaultWorkspace().getName(), "bulk");
+
+        File dir = unpack("shape/archsites_epsg_prj.zip");
+        ImportContext context = importer.createContext(new Directory(dir), ds);
+        assertEquals(1, context.getTasks().size());
+
+        ImportTask task = context.getTasks().get(0);
+        assertEquals(ImportTask.State.READY, task.getState());
+
+        importer.setBulkLoad(true);
+        importer.setLoadBatchSize(5);
+        try {
+            importer.run(context);
+        }
+        finally {
+            importer.setBulkLoad(false);
+            importer.setLoadBatchSize(1000);
+        }
+
+        assertEquals(ImportTask.State.COMPLETE, task.getState());
+
+        FeatureTypeInfo fti = cat.getFeatureTypeByDataStore(ds, "archsites");
+        assertNotNull(fti);
+        assertEquals(task.getNumberProcessed(),
+            fti.getFeatureSource(null, null).getCount(Query.ALL));
+        runChecks("archsites");
+    }
+
+    public void testImportIntoDatabaseChunkedResume() throws Exception {
+        Catalog cat = getCatalog();
+
+        DataStoreInfo ds = createH2DataStore(cat.getDefaultWorkspace().getName(), "chunked");
+
+        File dir = unpack("shape/archsites_epsg_prj.zip");
+        ImportContext context = importer.createContext(new Directory(dir), ds);
+        assertEquals(1, context.getTasks().size());
+
+        ImportTask task = context.getTasks().get(0);
+        FailOnceTransform tx = new FailOnceTransform(12);
+        task.getTransform().add(tx);
+
+        importer.setCommitInterval(5);
+        try {
+            importer.run(context);
+
+            assertEquals(ImportTask.State.ERROR, task.getState());
+            assertTrue(task.hasCheckpoint());
+            assertEquals(10, task.getCheckpointOffset());
+            assertEquals(10, task.getCheckpointCount());
+
+            DataStore store = (DataStore) ds.getDataStore(null);
+            String typeName = task.getLayer().getResource().getNativeName();
+            assertEquals(10, store.getFeatureSource(typeName).getCount(Query.ALL));
+
+            // run again, picking up from the checkpoint
+            task.getTransform().remove(tx);
+            importer.run(context);
+        }
+        finally {
+            importer.setCommitInterval(0);
+        }
+
+        assertEquals(ImportTask.State.COMPLETE, task.getState());
+        assertFalse(task.hasCheckpoint());
+
+        FeatureTypeInfo fti = cat.getFeatureTypeByDataStore(ds, "archsites");
+        assertNotNull(fti);
+        assertEquals(task.getNumberProcessed(), 
+            fti.getFeatureSource(null, null).getCount(Query.ALL));
+        assertEquals(task.getTotalToProcess(), task.getNumberProcessed());
+    }
+
+    public void testImportIntoDatabaseParallelTasks() throws Exception {
+        Catalog cat = getCatalog();
+
+        DataStoreInfo ds = createH2DataStore(cat.getDefaultWorkspace().getName(), "parallel");
+
+        File dir = tmpDir();
+        unpack("shape/archsites_epsg_prj.zip", dir);
+        unpack("shape/bugsites_esri_prj.tar.gz", dir);
+
+        ImportContext context = importer.createContext(new Directory(dir), ds);
+        assertEquals(2, context.getTasks().size());
+
+        importer.setTaskParallelism(2);
+        try {
+            importer.run(context);
+        }
+        finally {
+            importer.setTaskParallelism(1);
+        }
+
+        for (ImportTask task : context.getTasks()) {
+            assertEquals(ImportTask.State.COMPLETE, task.getState());
+        }
+        assertEquals(ImportContext.State.COMPLETE, context.getState());
+        assertTrue(importer.getCurrentlyProcessingTasks(context.getId()).isEmpty());
+
+        assertNotNull(cat.getFeatureTypeByDataStore(ds, "archsites"));
+        assertNotNull(cat.getFeatureTypeByDataStore(ds, "bugsites"));
+
+        runChecks("archsites");
+        runChecks("bugsites");
+    }
+
+    public void testImportIntoDatabaseChunkedCancelResume() throws Exception {
+        Catalog cat = getCatalog();
+
+        DataStoreInfo ds = createH2DataStore(cat.getDefaultWorkspace().getName(), "canceled");
+
+        File dir = unpack("shape/archsites_epsg_prj.zip");
+        ImportContext context = importer.createContext(new Directory(dir), ds);
+        assertEquals(1, context.getTasks().size());
+
+        ImportTask task = context.getTasks().get(0);
+        CancelAtTransform tx = new CancelAtTransform(12);
+        task.getTransform().add(tx);
+
+        importer.setCommitInterval(5);
+        try {
+            importer.run(context);
+
+            assertEquals(ImportTask.State.CANCELED, task.getState());
+            assertTrue(task.hasCheckpoint());
+            assertEquals(10, task.getCheckpointOffset());
+            assertEquals(10, task.getCheckpointCount());
+            assertTrue(importer.canResume(task));
+
+            // the chunk being loaded when canceled was rolled back
+            DataStore store = (DataStore) ds.getDataStore(null);
+            String typeName = task.getLayer().getResource().getNativeName();
+            assertEquals(10, store.getFeatureSource(typeName).getCount(Query.ALL));
+
+            // run again, picking up from the checkpoint
+            task.getTransform().remove(tx);
+            context.setProgress(new ProgressMonitor());
+            importer.run(context);
+        }
+        finally {
+            importer.setCommitInterval(0);
+        }
+
+        assertEquals(ImportTask.State.COMPLETE, task.getState());
+        assertFalse(task.hasCheckpoint());
+
+        FeatureTypeInfo fti = cat.getFeatureTypeByDataStore(ds, "archsites");
+        assertNotNull(fti);
+        assertEquals(25, fti.getFeatureSource(null, null).getCount(Query.ALL));
+    }
+
     public void testImportIntoDatabaseWithEncoding() throws Exception {
         Catalog cat = getCatalog();
 
@@ -378,6 +693,186 @@ public class ImporterDataTest extends ImporterTestSupport {
         }
     }
 
+    public void testImportIntoDatabaseAppendFailure() throws Exception {
+        testImportIntoDatabase();
+
+        DataStoreInfo ds = getCatalog().getDataStoreByName("spearfish");
+        DataStore store = (DataStore) ds.getDataStore(null);
+        int archsitesCount = store.getFeatureSource("archsites").getCount(Query.ALL);
+
+        File dir = tmpDir();
+        unpack("shape/archsites_epsg_prj.zip", dir);
+
+        ImportContext context = importer.createContext(new Directory(dir), ds);
+        ImportTask task = context.getTasks().get(0);
+        task.setUpdateMode(UpdateMode.APPEND);
+        task.getTransform().add(new FailOnceTransform(12));
+
+        importer.run(context);
+        assertEquals(ImportTask.State.ERROR, task.getState());
+
+        // the append was rolled back, the table it targeted is still there
+        assertTrue(Arrays.asList(store.getTypeNames()).contains("archsites"));
+        assertEquals(archsitesCount, store.getFeatureSource("archsites").getCount(Query.ALL));
+    }
+
+    public void testImportIntoDatabaseUniquifiedFailure() throws Exception {
+        testImportIntoDatabase();
+
+        DataStoreInfo ds = getCatalog().getDataStoreByName("spearfish");
+        DataStore store = (DataStore) ds.getDataStore(null);
+        int archsitesCount = store.getFeatureSource("archsites").getCount(Query.ALL);
+
+        File dir = tmpDir();
+        unpack("shape/archsites_epsg_prj.zip", dir);
+
+        ImportContext context = importer.createContext(new Directory(dir), ds);
+        ImportTask task = context.getTasks().get(0);
+        task.getTransform().add(new FailOnceTransform(12));
+
+        importer.run(context);
+        assertEquals(ImportTask.State.ERROR, task.getState());
+        // the load went to a new table, named not to clash with the existing one
+        assertEquals("archsites0", task.getLayer().getResource().getNativeName());
+
+        // dropping the new table on rollback left the existing one alone
+        assertTrue(Arrays.asList(store.getTypeNames()).contains("archsites"));
+        assertEquals(archsitesCount, store.getFeatureSource("archsites").getCount(Query.ALL));
+    }
+
+    public void testImportIntoDatabaseUpdateByKey() throws Exception {
+        testImportIntoDatabase();
+
+        DataStoreInfo ds = getCatalog().getDataStoreByName("spearfish");
+        FeatureSource<? extends FeatureType, ? extends Feature> fs = 
+            getCatalog().getFeatureTypeByName("archsites").getFeatureSource(null, null);
+        int archsitesCount = fs.getCount(Query.ALL);
+
+        String key = null;
+        for (AttributeDescriptor att : ((SimpleFeatureType) fs.getSchema()).getAttributeDescriptors()) {
+            if ("id".equalsIgnoreCase(att.getLocalName())) {
+                key = att.getLocalName();
+            }
+        }
+        assertNotNull(key);
+
+        // change one feature, remove another and add one the data doesn't have
+        FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+        SimpleFeatureStore store = (SimpleFeatureStore) 
+            ((DataStore) ds.getDataStore(null)).getFeatureSource("archsites");
+        SimpleFeature first = DataUtilities.first(store.getFeatures(
+            ff.equals(ff.property(key), ff.literal(1))));
+        String desc = null;
+        for (AttributeDescriptor att : store.getSchema().getAttributeDescriptors()) {
+            if ("cat_desc".equalsIgnoreCase(att.getLocalName())) {
+                desc = att.getLocalName();
+            }
+        }
+        assertNotNull(desc);
+        assertEquals("Signature Rock", first.getAttribute(desc));
+
+        store.modifyFeatures(desc, "changed", ff.equals(ff.property(key), ff.literal(1)));
+        store.removeFeatures(ff.equals(ff.property(key), ff.literal(2)));
+        SimpleFeature extra = SimpleFeatureBuilder.copy(first);
+        extra.setAttribute(key, 1000);
+        store.addFeatures(DataUtilities.collection(extra));
+        assertEquals(archsitesCount, store.getCount(Query.ALL));
+
+        File dir = tmpDir();
+        unpack("shape/archsites_epsg_prj.zip", dir);
+
+        ImportContext context = importer.createContext(new Directory(dir), ds);
+        ImportTask task = context.getTasks().get(0);
+        task.setUpdateMode(UpdateMode.UPDATE);
+        task.setUpdateKeys(Arrays.asList(key));
+        task.setDeleteMissing(true);
+
+        importer.run(context);
+        assertEquals(ImportTask.State.COMPLETE, task.getState());
+
+        // the changed feature was updated, the removed one inserted again and the extra deleted
+        assertEquals(archsitesCount, fs.getCount(Query.ALL));
+        assertEquals("Signature Rock", DataUtilities.first(store.getFeatures(
+            ff.equals(ff.property(key), ff.literal(1)))).getAttribute(desc));
+        assertEquals(1, store.getCount(new Query("archsites", 
+            ff.equals(ff.property(key), ff.literal(2)))));
+        assertEquals(0, store.getCount(new Query("archsites", 
+            ff.equals(ff.property(key), ff.literal(1000)))));
+    }
+
+    public void testImportIntoDatabaseUpdateDuplicateKeys() throws Exception {
+        testImportIntoDatabase();
+
+        DataStoreInfo ds = getCatalog().getDataStoreByName("spearfish");
+        SimpleFeatureStore store = (SimpleFeatureStore) 
+            ((DataStore) ds.getDataStore(null)).getFeatureSource("archsites");
+        int archsitesCount = store.getCount(Query.ALL);
+        String key = null, desc = null;
+        for (AttributeDescriptor att : store.getSchema().getAttributeDescriptors()) {
+            if ("id".equalsIgnoreCase(att.getLocalName())) {
+                key = att.getLocalName();
+            }
+            if ("cat_desc".equalsIgnoreCase(att.getLocalName())) {
+                desc = att.getLocalName();
+            }
+        }
+        assertNotNull(key);
+        assertNotNull(desc);
+
+        File dir = tmpDir();
+        unpack("shape/archsites_epsg_prj.zip", dir);
+
+        // the last feature of the source is the one that should win
+        String last = null;
+        ShapefileDataStore shp = new ShapefileDataStore(
+            DataUtilities.fileToURL(new File(dir, "archsites.shp")));
+        try {
+            SimpleFeatureIterator it = shp.getFeatureSource().getFeatures().features();
+            try {
+                while (it.hasNext()) {
+                    SimpleFeature f = it.next();
+                    for (AttributeDescriptor att : f.getFeatureType().getAttributeDescriptors()) {
+                        if ("cat_desc".equalsIgnoreCase(att.getLocalName())) {
+                            last = (String) f.getAttribute(att.getLocalName());
+                        }
+                    }
+                }
+            }
+            finally {
+                it.close();
+            }
+        }
+        finally {
+            shp.dispose();
+        }
+        assertNotNull(last);
+
+        // every feature of the data has the same key
+        ImportContext context = importer.createContext(new Directory(dir), ds);
+        ImportTask task = context.getTasks().get(0);
+        task.setUpdateMode(UpdateMode.UPDATE);
+        task.setUpdateKeys(Arrays.asList(key));
+        task.getTransform().add(new SetAttributeTransform(key, 1));
+
+        importer.setLoadThreads(3);
+        importer.setLoadBatchSize(2);
+        importer.setLoadOrdered(false);
+        try {
+            importer.run(context);
+        }
+        finally {
+            importer.setLoadThreads(0);
+            importer.setLoadBatchSize(1000);
+            importer.setLoadOrdered(true);
+        }
+        assertEquals(ImportTask.State.COMPLETE, task.getState());
+
+        FilterFactory ff = CommonFactoryFinder.getFilterFactory(null);
+        assertEquals(archsitesCount, store.getCount(Query.ALL));
+        assertEquals(last, DataUtilities.first(store.getFeatures(
+            ff.equals(ff.property(key), ff.literal(1)))).getAttribute(desc));
+    }
+
     public void testImportGeoTIFF() throws Exception {
         File dir = unpack("geotiff/EmissiveCampania.tif.bz2");
         
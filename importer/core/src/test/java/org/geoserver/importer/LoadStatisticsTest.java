@@ -0,0 +1,47 @@
+package org.geoserver.importer;
+
+import junit.framework.TestCase;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.vividsolutions.jts.io.WKTReader;
+
+public class LoadStatisticsTest extends TestCase {
+
+    public void testAdd() throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("test",
+            "geom:Point,name:String,cat:Integer");
+        WKTReader wkt = new WKTReader();
+
+        LoadStatistics stats = new LoadStatistics(type);
+        stats.add(SimpleFeatureBuilder.build(type,
+            new Object[] { wkt.read("POINT(1 2)"), "b", 5 }, "f.1"));
+        stats.add(SimpleFeatureBuilder.build(type,
+            new Object[] { wkt.read("POINT(-3 4)"), null, 2 }, "f.2"));
+        stats.add(SimpleFeatureBuilder.build(type,
+            new Object[] { null, "a", 7 }, "f.3"));
+
+        assertEquals(3, stats.getCount());
+        assertTrue(stats.isSpatial());
+        assertEquals(new ReferencedEnvelope(-3, 1, 2, 4, DefaultGeographicCRS.WGS84),
+            stats.getBounds(DefaultGeographicCRS.WGS84));
+
+        assertEquals(1, stats.getNullCount("geom"));
+        assertEquals(1, stats.getNullCount("name"));
+        assertEquals("a", stats.getMin("name"));
+        assertEquals("b", stats.getMax("name"));
+        assertEquals(2, stats.getMin("cat"));
+        assertEquals(7, stats.getMax("cat"));
+    }
+
+    public void testNoFeatures() throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("test", "geom:Point,name:String");
+        LoadStatistics stats = new LoadStatistics(type);
+        assertTrue(stats.getBounds(DefaultGeographicCRS.WGS84).isEmpty());
+        assertNull(stats.getMin("name"));
+    }
+}
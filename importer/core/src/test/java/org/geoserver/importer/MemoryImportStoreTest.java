@@ -0,0 +1,87 @@
+package org.geoserver.importer;
+
+import java.util.Iterator;
+
+import junit.framework.TestCase;
+
+public class MemoryImportStoreTest extends TestCase {
+
+    MemoryImportStore store;
+
+    @Override
+    protected void setUp() throws Exception {
+        store = new MemoryImportStore(3);
+    }
+
+    public void testGetAndSave() throws Exception {
+        ImportContext context = new ImportContext();
+        store.add(context);
+        assertSame(context, store.get(context.getId()));
+
+        store.save(context);
+        assertSame(context, store.get(context.getId()));
+
+        int count = 0;
+        for (Iterator<ImportContext> it = store.iterator(); it.hasNext(); it.next()) {
+            count++;
+        }
+        assertEquals(1, count);
+    }
+
+    public void testIteratorByUpdated() throws Exception {
+        ImportContext c1 = new ImportContext();
+        store.add(c1);
+        ImportContext c2 = new ImportContext();
+        store.add(c2);
+
+        Thread.sleep(10);
+        c1.updated();
+        store.save(c1);
+
+        Iterator<ImportContext> it = store.iterator("updated");
+        assertSame(c1, it.next());
+        assertSame(c2, it.next());
+        assertFalse(it.hasNext());
+    }
+
+    public void testIteratorByUpdatedPaged() throws Exception {
+        ImportContext c1 = new ImportContext();
+        store.add(c1);
+        ImportContext c2 = new ImportContext();
+        store.add(c2);
+        ImportContext c3 = new ImportContext();
+        store.add(c3);
+        assertEquals(3, store.count());
+
+        Thread.sleep(10);
+        c1.updated();
+        store.save(c1);
+
+        Iterator<ImportContext> it = store.iterator("updated", 1, 1);
+        assertSame(c3, it.next());
+        assertFalse(it.hasNext());
+
+        it = store.iterator("updated", 2, -1);
+        assertSame(c2, it.next());
+        assertFalse(it.hasNext());
+    }
+
+    public void testEviction() throws Exception {
+        ImportContext running = new ImportContext();
+        running.setState(ImportContext.State.RUNNING);
+        store.add(running);
+
+        ImportContext[] complete = new ImportContext[3];
+        for (int i = 0; i < complete.length; i++) {
+            complete[i] = new ImportContext();
+            complete[i].setState(ImportContext.State.COMPLETE);
+            store.add(complete[i]);
+        }
+
+        // least recently updated completed import goes, incomplete imports stay
+        assertNotNull(store.get(running.getId()));
+        assertNull(store.get(complete[0].getId()));
+        assertNotNull(store.get(complete[1].getId()));
+        assertNotNull(store.get(complete[2].getId()));
+    }
+}
@@ -0,0 +1,449 @@
+package org.geoserver.importer;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.importer.jdbc.BulkLoader;
+import org.geoserver.importer.jdbc.CopyBulkLoader;
+import org.geoserver.importer.jdbc.UpsertBulkLoader;
+import org.geotools.data.DefaultTransaction;
+import org.geotools.data.Query;
+import org.geotools.data.Transaction;
+import org.geotools.data.jdbc.JDBCUtils;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.jdbc.JDBCDataStore;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeDescriptor;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.Point;
+
+public class PostGISImportTest extends ImporterDbTestBase {
+
+    @Override
+    protected String getFixtureId() {
+        return "postgis";
+    }
+
+    @Override
+    protected void createWidgetsTable(Statement st) throws Exception {
+        String sql = "CREATE TABLE widgets (id serial PRIMARY KEY, "
+            + "geometry geometry(Point,4326), doubleProperty float, stringProperty varchar(255))";
+        run(sql, st);
+
+        sql = "INSERT INTO widgets (geometry,doubleProperty,stringProperty) VALUES ("
+            + "ST_GeomFromText('POINT(0 0)',4326), 1.99,'anvil')";
+        run(sql, st);
+
+        sql = "INSERT INTO widgets (geometry,doubleProperty,stringProperty) VALUES ("
+            + "ST_GeomFromText('POINT(1 1)',4326), 1.99,'bomb')";
+        run(sql, st);
+
+        sql = "INSERT INTO widgets (geometry,doubleProperty,stringProperty) VALUES ("
+            + "ST_GeomFromText('POINT(2 2)',4326), 2.99,'dynamite')";
+        run(sql, st);
+
+        run("CREATE INDEX widgets_geometry_index ON widgets USING gist (geometry)", st);
+    }
+
+    public void testReplaceStaged() throws Exception {
+        Catalog cat = getCatalog();
+        DataStoreInfo ds = cat.getFactory().createDataStore();
+        ds.setName("postgis");
+        ds.setWorkspace(cat.getDefaultWorkspace());
+        ds.setEnabled(true);
+        ds.getConnectionParameters().putAll(getConnectionParams());
+        cat.add(ds);
+
+        File dir = tmpDir();
+        unpack("shape/archsites_epsg_prj.zip", dir);
+        importer.run(importer.createContext(new Directory(dir), ds));
+        int count = cat.getFeatureTypeByName("archsites").getFeatureSource(null, null)
+            .getCount(Query.ALL);
+
+        Connection cx = getConnection();
+        try {
+            Statement st = cx.createStatement();
+            try {
+                run("CREATE INDEX archsites_fid_index ON archsites (fid)", st);
+            }
+            finally {
+                JDBCUtils.close(st);
+            }
+        }
+        finally {
+            JDBCUtils.close(cx, null, null);
+        }
+
+        dir = tmpDir();
+        unpack("shape/archsites_epsg_prj.zip", dir);
+        ImportContext context = importer.createContext(new Directory(dir), ds);
+        context.getTasks().get(0).setUpdateMode(UpdateMode.REPLACE);
+        importer.run(context);
+        assertEquals(ImportContext.State.COMPLETE, context.getState());
+
+        assertEquals(count, cat.getFeatureTypeByName("archsites").getFeatureSource(null, null)
+            .getCount(Query.ALL));
+
+        // the staging table took the place of the live one, along with its indexes
+        cx = getConnection();
+        try {
+            Statement st = cx.createStatement();
+            try {
+                assertEquals(1, count(st, "SELECT count(*) FROM pg_indexes WHERE "
+                    + "tablename = 'archsites' AND indexname = 'archsites_fid_index'"));
+                assertEquals(0, count(st, "SELECT count(*) FROM pg_class WHERE "
+                    + "obj_description(oid, 'pg_class') = 'geoserver importer staging table'"));
+            }
+            finally {
+                JDBCUtils.close(st);
+            }
+        }
+        finally {
+            JDBCUtils.close(cx, null, null);
+        }
+    }
+
+    public void testReplaceStagedKeepsProperties() throws Exception {
+        Catalog cat = getCatalog();
+        DataStoreInfo ds = cat.getFactory().createDataStore();
+        ds.setName("postgis");
+        ds.setWorkspace(cat.getDefaultWorkspace());
+        ds.setEnabled(true);
+        ds.getConnectionParameters().putAll(getConnectionParams());
+        cat.add(ds);
+
+        File dir = tmpDir();
+        unpack("shape/archsites_epsg_prj.zip", dir);
+        importer.run(importer.createContext(new Directory(dir), ds));
+
+        String oid;
+        Connection cx = getConnection();
+        try {
+            Statement st = cx.createStatement();
+            try {
+                run("COMMENT ON TABLE archsites IS 'archaeological sites'", st);
+                run("GRANT SELECT ON archsites TO PUBLIC", st);
+                run("ALTER TABLE archsites SET (fillfactor=70)", st);
+                run("CREATE OR REPLACE FUNCTION archsites_touch() RETURNS trigger AS "
+                    + "'BEGIN RETURN NEW; END' LANGUAGE plpgsql", st);
+                run("CREATE TRIGGER archsites_touch BEFORE INSERT ON archsites "
+                    + "FOR EACH ROW EXECUTE PROCEDURE archsites_touch()", st);
+                oid = value(st, "SELECT 'archsites'::regclass::oid::text");
+            }
+            finally {
+                JDBCUtils.close(st);
+            }
+        }
+        finally {
+            JDBCUtils.close(cx, null, null);
+        }
+
+        dir = tmpDir();
+        unpack("shape/archsites_epsg_prj.zip", dir);
+        ImportContext context = importer.createContext(new Directory(dir), ds);
+        context.getTasks().get(0).setUpdateMode(UpdateMode.REPLACE);
+        importer.run(context);
+        assertEquals(ImportContext.State.COMPLETE, context.getState());
+
+        // the staging table was swapped in, carrying the properties of the live one over
+        cx = getConnection();
+        try {
+            Statement st = cx.createStatement();
+            try {
+                assertFalse(oid.equals(value(st, "SELECT 'archsites'::regclass::oid::text")));
+                assertEquals("archaeological sites", 
+                    value(st, "SELECT obj_description('archsites'::regclass, 'pg_class')"));
+                assertEquals(1, count(st, "SELECT count(*) FROM pg_class c, aclexplode(c.relacl) a "
+                    + "WHERE c.oid = 'archsites'::regclass AND a.grantee = 0 "
+                    + "AND a.privilege_type = 'SELECT'"));
+                assertEquals(1, count(st, "SELECT count(*) FROM pg_class WHERE oid = "
+                    + "'archsites'::regclass AND reloptions @> ARRAY['fillfactor=70']"));
+                assertEquals(1, count(st, "SELECT count(*) FROM pg_trigger WHERE tgrelid = "
+                    + "'archsites'::regclass AND tgname = 'archsites_touch'"));
+                assertEquals(25, count(st, "SELECT count(*) FROM archsites"));
+                run("DROP TRIGGER archsites_touch ON archsites", st);
+                run("DROP FUNCTION archsites_touch()", st);
+            }
+            finally {
+                JDBCUtils.close(st);
+            }
+        }
+        finally {
+            JDBCUtils.close(cx, null, null);
+        }
+    }
+
+    public void testReplaceStagedDependentView() throws Exception {
+        Catalog cat = getCatalog();
+        DataStoreInfo ds = cat.getFactory().createDataStore();
+        ds.setName("postgis");
+        ds.setWorkspace(cat.getDefaultWorkspace());
+        ds.setEnabled(true);
+        ds.getConnectionParameters().putAll(getConnectionParams());
+        cat.add(ds);
+
+        File dir = tmpDir();
+        unpack("shape/archsites_epsg_prj.zip", dir);
+        importer.run(importer.createContext(new Directory(dir), ds));
+
+        Connection cx = getConnection();
+        try {
+            Statement st = cx.createStatement();
+            try {
+                run("CREATE VIEW archsites_view AS SELECT * FROM archsites", st);
+            }
+            finally {
+                JDBCUtils.close(st);
+            }
+        }
+        finally {
+            JDBCUtils.close(cx, null, null);
+        }
+
+        dir = tmpDir();
+        unpack("shape/archsites_epsg_prj.zip", dir);
+        ImportContext context = importer.createContext(new Directory(dir), ds);
+        context.getTasks().get(0).setUpdateMode(UpdateMode.REPLACE);
+        importer.run(context);
+        assertEquals(ImportContext.State.COMPLETE, context.getState());
+
+        // the live table could not be dropped, the rows were copied into it instead
+        cx = getConnection();
+        try {
+            Statement st = cx.createStatement();
+            try {
+                assertEquals(25, count(st, "SELECT count(*) FROM archsites_view"));
+                assertEquals(0, count(st, "SELECT count(*) FROM pg_class WHERE "
+                    + "obj_description(oid, 'pg_class') = 'geoserver importer staging table'"));
+                run("DROP VIEW archsites_view", st);
+            }
+            finally {
+                JDBCUtils.close(st);
+            }
+        }
+        finally {
+            JDBCUtils.close(cx, null, null);
+        }
+    }
+
+    public void testUpdateUpsert() throws Exception {
+        Catalog cat = getCatalog();
+        DataStoreInfo ds = cat.getFactory().createDataStore();
+        ds.setName("postgis");
+        ds.setWorkspace(cat.getDefaultWorkspace());
+        ds.setEnabled(true);
+        ds.getConnectionParameters().putAll(getConnectionParams());
+        cat.add(ds);
+
+        File dir = tmpDir();
+        unpack("shape/archsites_epsg_prj.zip", dir);
+        importer.run(importer.createContext(new Directory(dir), ds));
+
+        JDBCDataStore store = (JDBCDataStore) ds.getDataStore(null);
+        String key = null, desc = null;
+        for (AttributeDescriptor att : store.getSchema("archsites").getAttributeDescriptors()) {
+            if ("id".equalsIgnoreCase(att.getLocalName())) {
+                key = att.getLocalName();
+            }
+            if ("cat_desc".equalsIgnoreCase(att.getLocalName())) {
+                desc = att.getLocalName();
+            }
+        }
+        assertNotNull(key);
+        assertNotNull(desc);
+
+        Connection cx = getConnection();
+        try {
+            DatabaseMetaData md = cx.getMetaData();
+            if (md.getDatabaseMajorVersion() < 9 
+                || md.getDatabaseMajorVersion() == 9 && md.getDatabaseMinorVersion() < 5) {
+                // INSERT ... ON CONFLICT not supported
+                return;
+            }
+
+            Statement st = cx.createStatement();
+            try {
+                run("CREATE UNIQUE INDEX archsites_id_index ON archsites (\"" + key + "\")", st);
+                run("UPDATE archsites SET \"" + key + "\" = 1000 WHERE \"" + key + "\" = 2", st);
+                run("UPDATE archsites SET \"" + desc + "\" = 'changed' WHERE \"" + key + "\" = 1", 
+                    st);
+            }
+            finally {
+                JDBCUtils.close(st);
+            }
+        }
+        finally {
+            JDBCUtils.close(cx, null, null);
+        }
+
+        // row versions of a row the update leaves as is and of one it changes
+        String unchangedXmin, changedXmin;
+        cx = getConnection();
+        try {
+            Statement st = cx.createStatement();
+            try {
+                unchangedXmin = value(st, "SELECT xmin::text FROM archsites WHERE \"" + key 
+                    + "\" = 3");
+                changedXmin = value(st, "SELECT xmin::text FROM archsites WHERE \"" + key 
+                    + "\" = 1");
+            }
+            finally {
+                JDBCUtils.close(st);
+            }
+        }
+        finally {
+            JDBCUtils.close(cx, null, null);
+        }
+
+        Transaction tx = new DefaultTransaction();
+        try {
+            assertTrue(BulkLoader.createUpsert(store, "archsites", Arrays.asList(key), tx, 10)
+                instanceof UpsertBulkLoader);
+        }
+        finally {
+            tx.close();
+        }
+
+        dir = tmpDir();
+        unpack("shape/archsites_epsg_prj.zip", dir);
+        ImportContext context = importer.createContext(new Directory(dir), ds);
+        ImportTask task = context.getTasks().get(0);
+        task.setUpdateMode(UpdateMode.UPDATE);
+        task.setUpdateKeys(Arrays.asList(key));
+        task.setDeleteMissing(true);
+
+        importer.setBulkLoad(true);
+        try {
+            importer.run(context);
+        }
+        finally {
+            importer.setBulkLoad(false);
+        }
+        assertEquals(ImportTask.State.COMPLETE, task.getState());
+
+        // the changed row was updated, the renumbered one inserted back and the extra deleted
+        cx = getConnection();
+        try {
+            Statement st = cx.createStatement();
+            try {
+                assertEquals(25, count(st, "SELECT count(*) FROM archsites"));
+                assertEquals(1, count(st, "SELECT count(*) FROM archsites WHERE \"" + key
+                    + "\" = 1 AND \"" + desc + "\" = 'Signature Rock'"));
+                assertEquals(1, count(st, "SELECT count(*) FROM archsites WHERE \"" + key 
+                    + "\" = 2"));
+                assertEquals(0, count(st, "SELECT count(*) FROM archsites WHERE \"" + key 
+                    + "\" = 1000"));
+
+                // the unchanged row was not rewritten, the changed one was
+                assertEquals(unchangedXmin, value(st, "SELECT xmin::text FROM archsites WHERE \"" 
+                    + key + "\" = 3"));
+                assertFalse(changedXmin.equals(value(st, "SELECT xmin::text FROM archsites "
+                    + "WHERE \"" + key + "\" = 1")));
+            }
+            finally {
+                JDBCUtils.close(st);
+            }
+        }
+        finally {
+            JDBCUtils.close(cx, null, null);
+        }
+    }
+
+    public void testCopyBulkLoader() throws Exception {
+        Catalog cat = getCatalog();
+        DataStoreInfo ds = cat.getFactory().createDataStore();
+        ds.setName("postgis");
+        ds.setWorkspace(cat.getDefaultWorkspace());
+        ds.setEnabled(true);
+        ds.getConnectionParameters().putAll(getConnectionParams());
+        cat.add(ds);
+
+        // no primary key to fill, so rows can be streamed in with COPY
+        Connection cx = getConnection();
+        try {
+            Statement st = cx.createStatement();
+            try {
+                runSafe("DROP TABLE copied", st);
+                run("CREATE TABLE copied (geom geometry(Point,4326), name varchar(64))", st);
+            }
+            finally {
+                JDBCUtils.close(st);
+            }
+        }
+        finally {
+            JDBCUtils.close(cx, null, null);
+        }
+
+        JDBCDataStore store = (JDBCDataStore) ds.getDataStore(null);
+        SimpleFeatureType type = store.getSchema("copied");
+        Transaction tx = new DefaultTransaction();
+        try {
+            BulkLoader loader = BulkLoader.create(store, "copied", tx, 10);
+            assertTrue(loader instanceof CopyBulkLoader);
+            try {
+                Point p = new GeometryFactory().createPoint(new Coordinate(1, 2));
+                loader.add(SimpleFeatureBuilder.build(type, 
+                    new Object[] { p, "tab\tnewline\nback\\slash" }, null));
+                loader.add(SimpleFeatureBuilder.build(type, new Object[] { null, null }, null));
+                loader.flush();
+            }
+            finally {
+                loader.close();
+            }
+            tx.commit();
+        }
+        finally {
+            tx.close();
+        }
+
+        cx = getConnection();
+        try {
+            Statement st = cx.createStatement();
+            try {
+                assertEquals(2, count(st, "SELECT count(*) FROM copied"));
+                assertEquals(1, count(st, "SELECT count(*) FROM copied WHERE name = "
+                    + "E'tab\\tnewline\\nback\\\\slash' AND ST_Equals(geom, "
+                    + "ST_GeomFromText('POINT(1 2)', 4326))"));
+                assertEquals(1, count(st, "SELECT count(*) FROM copied WHERE name IS NULL "
+                    + "AND geom IS NULL"));
+                run("DROP TABLE copied", st);
+            }
+            finally {
+                JDBCUtils.close(st);
+            }
+        }
+        finally {
+            JDBCUtils.close(cx, null, null);
+        }
+    }
+
+    String value(Statement st, String sql) throws Exception {
+        ResultSet rs = st.executeQuery(sql);
+        try {
+            rs.next();
+            return rs.getString(1);
+        }
+        finally {
+            JDBCUtils.close(rs);
+        }
+    }
+
+    int count(Statement st, String sql) throws Exception {
+        ResultSet rs = st.executeQuery(sql);
+        try {
+            rs.next();
+            return rs.getInt(1);
+        }
+        finally {
+            JDBCUtils.close(rs);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package org.geoserver.importer;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class WriteBehindImportStoreTest extends TestCase {
+
+    CountingStore delegate;
+    WriteBehindImportStore store;
+
+    @Override
+    protected void setUp() throws Exception {
+        delegate = new CountingStore();
+        store = new WriteBehindImportStore(delegate, 60000);
+        store.init();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        store.destroy();
+    }
+
+    public void testCoalesce() throws Exception {
+        ImportContext context = new ImportContext();
+        context.addTask(new ImportTask());
+        store.add(context);
+
+        for (int i = 0; i < 10; i++) {
+            store.save(context);
+        }
+        assertEquals(0, delegate.saves.get());
+        assertSame(context, store.get(context.getId()));
+
+        store.flush();
+        assertEquals(1, delegate.saves.get());
+
+        // nothing left to write
+        store.flush();
+        assertEquals(1, delegate.saves.get());
+    }
+
+    public void testStateTransition() throws Exception {
+        ImportContext context = new ImportContext();
+        ImportTask task = new ImportTask();
+        context.addTask(task);
+        store.add(context);
+
+        store.save(context);
+        assertEquals(0, delegate.saves.get());
+
+        task.setState(ImportTask.State.RUNNING);
+        store.save(context);
+        assertEquals(1, delegate.saves.get());
+
+        task.setCheckpoint(100, 100);
+        store.save(context);
+        assertEquals(2, delegate.saves.get());
+    }
+
+    public void testQueryFlushes() throws Exception {
+        ImportContext context = new ImportContext();
+        store.add(context);
+        store.save(context);
+        assertEquals(0, delegate.saves.get());
+
+        assertTrue(store.allNonCompleteImports().hasNext());
+        assertEquals(1, delegate.saves.get());
+    }
+
+    public void testFailedWriteRetried() throws Exception {
+        ImportContext context = new ImportContext();
+        store.add(context);
+        store.save(context);
+
+        delegate.fail = true;
+        store.flush();
+        assertEquals(1, delegate.saves.get());
+
+        // still buffered, written by the next flush
+        delegate.fail = false;
+        store.flush();
+        assertEquals(2, delegate.saves.get());
+
+        store.flush();
+        assertEquals(2, delegate.saves.get());
+    }
+
+    static class CountingStore extends MemoryImportStore {
+        AtomicInteger saves = new AtomicInteger();
+        volatile boolean fail;
+
+        @Override
+        public void save(ImportContext context) {
+            saves.incrementAndGet();
+            if (fail) {
+                throw new RuntimeException("failing save");
+            }
+            super.save(context);
+        }
+    }
+}
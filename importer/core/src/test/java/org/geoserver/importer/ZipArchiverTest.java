@@ -0,0 +1,165 @@
+package org.geoserver.importer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+public class ZipArchiverTest extends TestCase {
+
+    File dir;
+
+    @Override
+    protected void setUp() throws Exception {
+        dir = ImporterTestUtils.tmpDir();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        FileUtils.deleteDirectory(dir);
+    }
+
+    public void testArchiveParallel() throws Exception {
+        File data = new File(dir, "data");
+        File sub = new File(data, "sub");
+        sub.mkdirs();
+
+        // spans several compression blocks
+        StringBuilder text = new StringBuilder();
+        Random r = new Random(1);
+        while (text.length() < 3 * ZipArchiver.BLOCK_SIZE) {
+            text.append("line ").append(r.nextInt()).append('\n');
+        }
+        FileUtils.writeStringToFile(new File(data, "big.csv"), text.toString(), "UTF-8");
+        FileUtils.writeStringToFile(new File(sub, "small.txt"), "hello", "UTF-8");
+        FileUtils.writeStringToFile(new File(sub, "empty.txt"), "", "UTF-8");
+        byte[] tif = new byte[10000];
+        r.nextBytes(tif);
+        FileUtils.writeByteArrayToFile(new File(sub, "image.tif"), tif);
+
+        File zip = new File(dir, "data.zip");
+        new ZipArchiver(Deflater.DEFAULT_COMPRESSION, 4).archive(data, zip);
+
+        ZipFile zf = new ZipFile(zip);
+        try {
+            assertEquals(4, zf.size());
+            assertContents(zf, "big.csv", text.toString().getBytes("UTF-8"), ZipEntry.DEFLATED);
+            assertContents(zf, "sub/small.txt", "hello".getBytes("UTF-8"), ZipEntry.DEFLATED);
+            assertContents(zf, "sub/empty.txt", new byte[0], ZipEntry.DEFLATED);
+            assertContents(zf, "sub/image.tif", tif, ZipEntry.STORED);
+        }
+        finally {
+            zf.close();
+        }
+    }
+
+    public void testArchiveStoreOnly() throws Exception {
+        File data = new File(dir, "data");
+        data.mkdirs();
+        FileUtils.writeStringToFile(new File(data, "a.txt"), "some text", "UTF-8");
+
+        File zip = new File(dir, "data.zip");
+        new ZipArchiver(0, 1).archive(data, zip);
+
+        ZipFile zf = new ZipFile(zip);
+        try {
+            assertContents(zf, "a.txt", "some text".getBytes("UTF-8"), ZipEntry.STORED);
+        }
+        finally {
+            zf.close();
+        }
+    }
+
+    public void testZip64() throws Exception {
+        File data = new File(dir, "data");
+        data.mkdirs();
+        String text = "some text";
+        FileUtils.writeStringToFile(new File(data, "a.txt"), text, "UTF-8");
+        FileUtils.writeStringToFile(new File(data, "b.txt"), text, "UTF-8");
+
+        ZipArchiver archiver = new ZipArchiver(Deflater.DEFAULT_COMPRESSION, 1);
+        List<File> files = new ArrayList<File>();
+        archiver.list(data, files);
+        // headers, central directory entries and end record on top of the data
+        assertTrue(archiver.estimate(data, files) > 2 * (30 + 46 + 2 * 5 + text.length()) + 22);
+
+        // offsets past the limit are caught as they are written
+        archiver.limit = 100;
+        ZipArchiver.ZipWriter zip = archiver.new ZipWriter(new ByteArrayOutputStream());
+        zip.offset = 50;
+        try {
+            zip.store("a.txt", new File(data, "a.txt"));
+            fail("offset overflow should have been detected");
+        }
+        catch(ZipArchiver.ZipOverflowException e) {
+        }
+
+        File zipFile = new File(dir, "data.zip");
+        archiver.archive(data, zipFile);
+
+        ZipFile zf = new ZipFile(zipFile);
+        try {
+            assertEquals(2, zf.size());
+            assertContents(zf, "a.txt", text.getBytes("UTF-8"), ZipEntry.DEFLATED);
+            assertContents(zf, "b.txt", text.getBytes("UTF-8"), ZipEntry.DEFLATED);
+        }
+        finally {
+            zf.close();
+        }
+    }
+
+    public void testAbort() throws Exception {
+        File data = new File(dir, "data");
+        data.mkdirs();
+        FileUtils.writeStringToFile(new File(data, "a.txt"), "some text", "UTF-8");
+
+        File zip = new File(dir, "data.zip");
+        ZipArchiver archiver = new ZipArchiver(Deflater.DEFAULT_COMPRESSION, 1);
+        archiver.archive(data, zip);
+        // complete archives are left alone
+        assertFalse(archiver.abort());
+        assertTrue(zip.exists());
+
+        File partial = new File(dir, "partial.zip");
+        archiver = new ZipArchiver(Deflater.DEFAULT_COMPRESSION, 1);
+        assertTrue(archiver.abort());
+        try {
+            archiver.archive(data, partial);
+            fail("aborted archiver should not write");
+        }
+        catch(InterruptedIOException e) {
+        }
+    }
+
+    void assertContents(ZipFile zf, String name, byte[] expected, int method) throws Exception {
+        ZipEntry entry = zf.getEntry(name);
+        assertNotNull(name, entry);
+        assertEquals(method, entry.getMethod());
+        assertEquals(expected.length, entry.getSize());
+
+        CRC32 crc = new CRC32();
+        crc.update(expected);
+        assertEquals(crc.getValue(), entry.getCrc());
+
+        InputStream in = zf.getInputStream(entry);
+        try {
+            assertTrue(Arrays.equals(expected, IOUtils.toByteArray(in)));
+        }
+        finally {
+            in.close();
+        }
+    }
+}
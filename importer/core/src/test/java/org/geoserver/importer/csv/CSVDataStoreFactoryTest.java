@@ -13,6 +13,7 @@ import java.io.IOException;
 import java.io.Serializable;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -130,6 +131,21 @@ public class CSVDataStoreFactoryTest {
                 csvStrategy.getClass());
     }
 
+    @Test
+    public void testSampleSize() throws Exception {
+        CSVDataStore datastore = (CSVDataStore) csvDataStoreFactory.createDataStoreFromFile(file);
+        assertEquals(0, datastore.getCSVFileState().getSampleSize());
+
+        Map<String, Serializable> params = new HashMap<String, Serializable>();
+        params.put("file", file);
+        params.put("sampleSize", "10");
+        datastore = (CSVDataStore) csvDataStoreFactory.createDataStore(params);
+        assertEquals(10, datastore.getCSVFileState().getSampleSize());
+
+        assertTrue(Arrays.asList(csvDataStoreFactory.getParametersInfo()).contains(
+                CSVDataStoreFactory.SAMPLEP));
+    }
+
     @Test
     public void testCSVStrategyGuess() throws Exception {
         Map<String, Serializable> params = new HashMap<String, Serializable>();
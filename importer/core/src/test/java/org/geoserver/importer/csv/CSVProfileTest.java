@@ -0,0 +1,50 @@
+package org.geoserver.importer.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.geoserver.importer.csv.parse.CSVTestStrategySupport;
+import org.junit.Test;
+
+public class CSVProfileTest {
+
+    @Test
+    public void testProfile() throws IOException {
+        String input = CSVTestStrategySupport.buildInputString("a,b,c", "1,1.5,x", "2,3,y",
+                "-4,2,z");
+        CSVProfile profile = new CSVFileState(input, "foo").getProfile();
+
+        Map<String, Class<?>> types = profile.getTypes();
+        assertEquals(Integer.class, types.get("a"));
+        assertEquals(Double.class, types.get("b"));
+        assertEquals(String.class, types.get("c"));
+
+        assertEquals(3, profile.getCount());
+        assertFalse(profile.isSampled());
+        assertEquals(-4, profile.getMin("a"), 0d);
+        assertEquals(2, profile.getMax("a"), 0d);
+        assertEquals(1.5, profile.getMin("b"), 0d);
+        assertEquals(3, profile.getMax("b"), 0d);
+        assertTrue(Double.isNaN(profile.getMin("c")));
+    }
+
+    @Test
+    public void testSampled() throws IOException {
+        String[] rows = new String[101];
+        rows[0] = "a";
+        for (int i = 1; i < rows.length; i++) {
+            rows[i] = String.valueOf(i);
+        }
+        CSVFileState state = new CSVFileState(CSVTestStrategySupport.buildInputString(rows), "foo");
+        state.setSampleSize(10);
+
+        CSVProfile profile = state.getProfile();
+        assertEquals(100, profile.getCount());
+        assertTrue(profile.isSampled());
+        assertEquals(Integer.class, profile.getTypes().get("a"));
+    }
+}
@@ -14,6 +14,7 @@ import java.util.List;
 import java.util.NoSuchElementException;
 
 import org.junit.Test;
+import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geoserver.importer.csv.CSVFileState;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -55,6 +56,22 @@ public class CSVLatLonStrategyTest {
         assertEquals("Invalid geometry name", "location", geometryType.getName().getLocalPart());
     }
 
+    @Test
+    public void testBounds() throws IOException {
+        String input = CSVTestStrategySupport.buildInputString("lat,lon,fleem", "3,4,car",
+                "8,9.5,blub", "-1,2,frob");
+        CSVFileState fileState = new CSVFileState(input, "bar");
+        CSVLatLonStrategy strategy = new CSVLatLonStrategy(fileState);
+
+        ReferencedEnvelope bounds = strategy.getBounds();
+        assertNotNull(bounds);
+        assertEquals(2, bounds.getMinX(), 0d);
+        assertEquals(9.5, bounds.getMaxX(), 0d);
+        assertEquals(-1, bounds.getMinY(), 0d);
+        assertEquals(8, bounds.getMaxY(), 0d);
+        assertEquals(3, fileState.getProfile().getCount());
+    }
+
     @Test
     public void testBuildFeature() throws IOException {
         String input = CSVTestStrategySupport.buildInputString("lat,lon,fleem,zoo", "3,4,car,cdr",
@@ -91,6 +108,29 @@ public class CSVLatLonStrategyTest {
         }
     }
 
+    @Test
+    public void testBuildFeatureShortRecord() throws IOException {
+        String input = CSVTestStrategySupport.buildInputString("lat,lon,fleem,zoo", "3,4,car,cdr",
+                "8,9,blub");
+        CSVFileState fileState = new CSVFileState(input, "bar");
+        CSVLatLonStrategy strategy = new CSVLatLonStrategy(fileState);
+
+        CSVIterator iterator = strategy.iterator();
+        SimpleFeature feature = iterator.next();
+        assertEquals("bar-1", feature.getID());
+        assertEquals("cdr", feature.getAttribute("zoo").toString());
+
+        // values of the previous record are not carried over
+        feature = iterator.next();
+        assertEquals("bar-2", feature.getID());
+        assertEquals("blub", feature.getAttribute("fleem").toString());
+        assertNull(feature.getAttribute("zoo"));
+        Coordinate coordinate = ((Point) feature.getDefaultGeometry()).getCoordinate();
+        assertEquals("Invalid point", 8, coordinate.y, 0.1);
+        assertEquals("Invalid point", 9, coordinate.x, 0.1);
+        iterator.close();
+    }
+
     @Test
     public void testBuildFeatureDifferentTypes() throws IOException {
         String input = CSVTestStrategySupport.buildInputString(
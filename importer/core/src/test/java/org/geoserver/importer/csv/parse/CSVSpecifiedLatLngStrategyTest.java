@@ -102,4 +102,18 @@ public class CSVSpecifiedLatLngStrategyTest {
         assertNull("Unexpected geometry", feature.getDefaultGeometry());
     }
 
+    @Test
+    public void testCreateFeatureUnparseableCoordinates() throws IOException {
+        String input = CSVTestStrategySupport.buildInputString("fleem,zoo,morx", "3,4,car");
+        CSVFileState fileState = new CSVFileState(input, "bar");
+        CSVStrategy strategy = new CSVSpecifiedLatLngStrategy(fileState, "fleem", "zoo");
+
+        // a record that a sampled profile did not see
+        CSVFeatureBuilder builder = strategy.createFeatureBuilder();
+        SimpleFeature feature = builder.build("2", new String[] { "quux", "4", "cdr" });
+        assertNull("Unexpected geometry", feature.getDefaultGeometry());
+        assertEquals("Invalid feature property", "cdr", feature.getAttribute("morx"));
+        assertEquals(1, builder.getSkipped());
+    }
+
 }
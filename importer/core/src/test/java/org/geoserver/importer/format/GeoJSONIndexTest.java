@@ -0,0 +1,60 @@
+package org.geoserver.importer.format;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.apache.commons.io.FileUtils;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+public class GeoJSONIndexTest extends TestCase {
+
+    File file;
+
+    @Override
+    protected void setUp() throws Exception {
+        file = File.createTempFile("index", ".json");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        file.delete();
+    }
+
+    public void testScan() throws Exception {
+        FileUtils.writeStringToFile(file, "{\"type\":\"FeatureCollection\",\"features\":["
+            + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[1,2]},"
+            + "\"properties\":{\"features\":[{\"a\":1}],\"coordinates\":5,"
+            + "\"geometry\":{\"coordinates\":[100,100]},\"extent\":{\"coordinates\":[-100,-100]}}},"
+            + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"LineString\","
+            + "\"coordinates\":[[-3.5,4,100],[0,-6,200]]},\"properties\":{}}]}");
+
+        GeoJSONIndex index = GeoJSONIndex.scan(file);
+        assertTrue(index.isCollection());
+        assertEquals(2, index.getCount());
+        assertEquals(new Envelope(-3.5, 1, -6, 4), index.getBounds());
+    }
+
+    public void testScanNoFeatures() throws Exception {
+        FileUtils.writeStringToFile(file, "{\"type\":\"FeatureCollection\",\"features\":[]}");
+
+        GeoJSONIndex index = GeoJSONIndex.scan(file);
+        assertTrue(index.isCollection());
+        assertEquals(0, index.getCount());
+        assertNull(index.getBounds());
+    }
+
+    public void testCached() throws Exception {
+        FileUtils.writeStringToFile(file, "{\"type\":\"FeatureCollection\",\"features\":[]}");
+
+        GeoJSONIndex index = GeoJSONIndex.get(file);
+        assertSame(index, GeoJSONIndex.get(file));
+
+        // rescanned once the file changes
+        FileUtils.writeStringToFile(file, "{\"type\":\"FeatureCollection\",\"features\":["
+            + "{\"type\":\"Feature\",\"geometry\":null,\"properties\":{}}]}");
+        file.setLastModified(index.lastModified + 1000);
+        assertEquals(1, GeoJSONIndex.get(file).getCount());
+    }
+}
@@ -1,12 +1,23 @@
 package org.geoserver.importer.format;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import junit.framework.TestCase;
 
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
+import org.geoserver.importer.FileData;
+import org.geoserver.importer.ImporterTestUtils;
 import org.geotools.data.FeatureReader;
 import org.opengis.feature.simple.SimpleFeature;
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -166,4 +177,85 @@ public class KMLFileFormatTest extends TestCase {
         assertNotNull("Expecting feature", feature);
         assertEquals("Invalid ext attr foo", 7, feature.getAttribute("foo"));
     }
+
+    public void testSchemaSample() throws Exception {
+        String kmlInput = DOC_EL + "<Document>"
+                + "<Placemark><name>first</name></Placemark>"
+                + "<Placemark><ExtendedData><Data name=\"late\"><value>1</value></Data>"
+                + "</ExtendedData></Placemark>"
+                + "<Schema name=\"lateschema\">"
+                + "<SimpleField type=\"int\" name=\"count\"></SimpleField></Schema>"
+                + "</Document></kml>";
+        File dir = ImporterTestUtils.tmpDir();
+        try {
+            File file = new File(dir, "sample.kml");
+            FileUtils.writeStringToFile(file, kmlInput, "UTF-8");
+
+            // only the first placemark is parsed, the rest is scanned
+            kmlFileFormat.setSchemaSample(1);
+            SimpleFeatureType featureType = 
+                kmlFileFormat.parseFeatureTypes("sample", file).iterator().next();
+            assertEquals(String.class, featureType.getDescriptor("late").getType().getBinding());
+            assertEquals(Integer.class, featureType.getDescriptor("count").getType().getBinding());
+            List<String> schemaNames = (List<String>) featureType.getUserData().get("schemanames");
+            assertTrue(schemaNames.contains("lateschema"));
+        }
+        finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    public void testScanSkipsSampled() throws Exception {
+        String kmlInput = DOC_EL + "<Document>"
+                + "<Placemark><ExtendedData><Data name=\"early\"><value>1</value></Data>"
+                + "</ExtendedData></Placemark>"
+                + "<Placemark><ExtendedData><Data name=\"late\"><value>1</value></Data>"
+                + "</ExtendedData></Placemark>"
+                + "</Document></kml>";
+        File dir = ImporterTestUtils.tmpDir();
+        try {
+            File file = new File(dir, "sample.kml");
+            FileUtils.writeStringToFile(file, kmlInput, "UTF-8");
+
+            Set<String> untyped = new HashSet<String>();
+            kmlFileFormat.scanExtendedData(file, 1, new ArrayList<SimpleFeatureType>(), 
+                new ArrayList<String>(), untyped);
+            assertEquals(Collections.singleton("late"), untyped);
+        }
+        finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
+
+    public void testReadKMZ() throws Exception {
+        String kmlInput = DOC_EL + "<Placemark><name>foo</name></Placemark></kml>";
+        File dir = ImporterTestUtils.tmpDir();
+        try {
+            File kmz = new File(dir, "sample.kmz");
+            ZipOutputStream out = new ZipOutputStream(new FileOutputStream(kmz));
+            out.putNextEntry(new ZipEntry("files/icon.png"));
+            out.write(new byte[] { 1, 2, 3 });
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("doc.kml"));
+            out.write(kmlInput.getBytes("UTF-8"));
+            out.closeEntry();
+            out.close();
+
+            assertTrue(kmlFileFormat.canRead(new FileData(kmz)));
+            SimpleFeatureType featureType = 
+                kmlFileFormat.parseFeatureTypes("sample", kmz).iterator().next();
+            FeatureReader<SimpleFeatureType, SimpleFeature> reader = 
+                kmlFileFormat.read(featureType, kmz);
+            try {
+                assertTrue(reader.hasNext());
+                assertEquals("foo", reader.next().getAttribute("name"));
+            }
+            finally {
+                reader.close();
+            }
+        }
+        finally {
+            FileUtils.deleteDirectory(dir);
+        }
+    }
 }
@@ -0,0 +1,23 @@
+package org.geoserver.importer.jdbc;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKBWriter;
+import com.vividsolutions.jts.io.WKTReader;
+
+public class CopyBulkLoaderTest extends TestCase {
+
+    public void testEwkb() throws Exception {
+        Geometry g = new WKTReader().read("MULTILINESTRING((0 0, 1 1), (2 2, 3 3))");
+        byte[] ewkb = CopyBulkLoader.ewkb(new WKBWriter(2, false).write(g), 4326);
+
+        // the geometry keeps its own srid
+        assertEquals(0, g.getSRID());
+
+        g.setSRID(4326);
+        assertTrue(Arrays.equals(new WKBWriter(2, true).write(g), ewkb));
+    }
+}
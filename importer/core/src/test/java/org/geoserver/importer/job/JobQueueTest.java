@@ -0,0 +1,129 @@
+package org.geoserver.importer.job;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class JobQueueTest extends TestCase {
+
+    JobQueue queue;
+
+    @Override
+    protected void setUp() throws Exception {
+        queue = new JobQueue(2);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        queue.shutdown();
+    }
+
+    public void testBounded() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        Long j1 = queue.submit(new BlockingJob(latch, null, 0));
+        Long j2 = queue.submit(new BlockingJob(latch, null, 0));
+        Long j3 = queue.submit(new BlockingJob(latch, null, 0));
+
+        assertEquals(2, queue.getRunning());
+        assertEquals(1, queue.getQueueDepth());
+        assertFalse(queue.getTask(j3).isStarted());
+
+        latch.countDown();
+        queue.getTask(j1).get(5, TimeUnit.SECONDS);
+        queue.getTask(j2).get(5, TimeUnit.SECONDS);
+        queue.getTask(j3).get(5, TimeUnit.SECONDS);
+        assertEquals(0, queue.getQueueDepth());
+    }
+
+    public void testPriority() throws Exception {
+        // a single worker, held by the first job while the others are queued
+        queue.setMaxRunning(1);
+        CountDownLatch latch = new CountDownLatch(1);
+        Long blocking = queue.submit(new BlockingJob(latch, null, 0));
+
+        List<String> started = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch free = new CountDownLatch(0);
+        Long lowJob = queue.submit(new OrderedJob(free, 0, "low", started));
+        Long highJob = queue.submit(new OrderedJob(free, 10, "high", started));
+        assertEquals(2, queue.getQueueDepth());
+        assertTrue(started.isEmpty());
+
+        // free up the worker, the high priority job should be the one to run next
+        latch.countDown();
+        queue.getTask(blocking).get(5, TimeUnit.SECONDS);
+        queue.getTask(highJob).get(5, TimeUnit.SECONDS);
+        queue.getTask(lowJob).get(5, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("high", "low"), started);
+    }
+
+    public void testUserLimit() throws Exception {
+        queue.setMaxRunningPerUser(1);
+
+        CountDownLatch latch = new CountDownLatch(1);
+        Long j1 = queue.submit(new BlockingJob(latch, "bob", 0));
+        Long j2 = queue.submit(new BlockingJob(latch, "bob", 0));
+        Long j3 = queue.submit(new BlockingJob(latch, "alice", 0));
+
+        // the second job for bob is held back, alice's job runs instead
+        assertEquals(2, queue.getRunning());
+        assertEquals(1, queue.getQueueDepth());
+        assertFalse(queue.getTask(j2).isStarted());
+
+        latch.countDown();
+        queue.getTask(j1).get(5, TimeUnit.SECONDS);
+        queue.getTask(j2).get(5, TimeUnit.SECONDS);
+        queue.getTask(j3).get(5, TimeUnit.SECONDS);
+    }
+
+    static class OrderedJob extends BlockingJob {
+
+        String name;
+        List<String> started;
+
+        OrderedJob(CountDownLatch latch, int priority, String name, List<String> started) {
+            super(latch, null, priority);
+            this.name = name;
+            this.started = started;
+        }
+
+        @Override
+        protected Object call(ProgressMonitor monitor) throws Exception {
+            started.add(name);
+            return super.call(monitor);
+        }
+    }
+
+    static class BlockingJob extends Job<Object> {
+
+        CountDownLatch latch;
+        String user;
+        int priority;
+
+        BlockingJob(CountDownLatch latch, String user, int priority) {
+            this.latch = latch;
+            this.user = user;
+            this.priority = priority;
+        }
+
+        @Override
+        protected Object call(ProgressMonitor monitor) throws Exception {
+            latch.await(5, TimeUnit.SECONDS);
+            return null;
+        }
+
+        @Override
+        public String getUser() {
+            return user;
+        }
+
+        @Override
+        public int getPriority() {
+            return priority;
+        }
+    }
+}
@@ -9,6 +9,9 @@ import org.custommonkey.xmlunit.XMLAssert;
 import org.geoserver.catalog.DimensionInfo;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.ResourceInfo;
+import org.geotools.data.DataUtilities;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.simple.SimpleFeatureIterator;
 import org.junit.Test;
 import org.geoserver.importer.FileData;
 import org.geoserver.importer.ImportContext;
@@ -59,6 +62,105 @@ public class ImporterMosaicTest extends ImporterTestSupport {
         }
     }
 
+    public void testGranuleInspection() throws Exception {
+        File dir = unpack("mosaic/bm_time.zip");
+        Mosaic m = new Mosaic(dir);
+        m.setInspectionThreads(2);
+        m.prepare();
+
+        assertEquals(4, m.granules().size());
+        for (Granule g : m.granules()) {
+            assertNotNull(g.getEnvelope());
+            assertNotNull(g.getGrid());
+            assertNotNull(g.getEnvelope().getCoordinateReferenceSystem());
+        }
+
+        // preparing again reuses the headers already read
+        Granule g = m.granules().iterator().next();
+        Mosaic again = new Mosaic(dir);
+        again.prepare();
+        for (Granule other : again.granules()) {
+            if (other.getFile().equals(g.getFile())) {
+                assertSame(g.getGrid(), other.getGrid());
+                assertEquals(g.getEnvelope(), other.getEnvelope());
+            }
+        }
+    }
+
+    public void testIndexUpdate() throws Exception {
+        File dir = unpack("mosaic/bm_time.zip");
+        Mosaic m = new Mosaic(dir);
+        m.prepare();
+        MosaicIndex index = new MosaicIndex(m);
+        index.write();
+        assertEquals(4, indexCount(index));
+
+        // a granule goes away
+        File moved = new File(dir.getParentFile(), "bm.200404.jpg");
+        assertTrue(new File(dir, "bm.200404.jpg").renameTo(moved));
+        m = new Mosaic(dir);
+        m.prepare();
+        index = new MosaicIndex(m);
+        index.update();
+        assertEquals(3, indexCount(index));
+
+        // and comes back
+        assertTrue(moved.renameTo(new File(dir, "bm.200404.jpg")));
+        m = new Mosaic(dir);
+        m.prepare();
+        index = new MosaicIndex(m);
+        index.update();
+        assertEquals(4, indexCount(index));
+    }
+
+    public void testIndexUpdateTime() throws Exception {
+        File dir = unpack("mosaic/bm_time.zip");
+        Mosaic m = new Mosaic(dir);
+        m.setTimeMode(TimeMode.AUTO);
+        m.prepare();
+        MosaicIndex index = new MosaicIndex(m);
+        index.write();
+
+        // same granules and footprints, different times
+        m = new Mosaic(dir);
+        m.setTimeMode(TimeMode.MANUAL);
+        m.prepare();
+        Date time = date(2010, 0);
+        for (Granule g : m.granules()) {
+            g.setTimestamp(time);
+        }
+        index = new MosaicIndex(m);
+        index.update();
+        assertEquals(4, indexCount(index));
+
+        ShapefileDataStore store = new ShapefileDataStore(DataUtilities.fileToURL(index.getFile()));
+        store.setTimeZone(MosaicIndex.UTC);
+        try {
+            SimpleFeatureIterator it = store.getFeatureSource().getFeatures().features();
+            try {
+                while (it.hasNext()) {
+                    assertTrue(MosaicIndex.sameDay(it.next().getAttribute("time"), time));
+                }
+            }
+            finally {
+                it.close();
+            }
+        }
+        finally {
+            store.dispose();
+        }
+    }
+
+    int indexCount(MosaicIndex index) throws Exception {
+        ShapefileDataStore store = new ShapefileDataStore(DataUtilities.fileToURL(index.getFile()));
+        try {
+            return store.getFeatureSource().getFeatures().size();
+        }
+        finally {
+            store.dispose();
+        }
+    }
+
     public void testTimeMosaic() throws Exception {
         Mosaic m = new Mosaic(unpack("mosaic/bm_time.zip"));
 
@@ -0,0 +1,59 @@
+package org.geoserver.importer.transform;
+
+import junit.framework.TestCase;
+
+import org.geotools.data.DataUtilities;
+import org.geotools.geometry.jts.JTS;
+import org.geotools.referencing.CRS;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.referencing.operation.MathTransform;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.WKTReader;
+
+public class ReprojectTransformTest extends TestCase {
+
+    public void testTransformMatchesJTS() throws Exception {
+        MathTransform mt = CRS.findMathTransform(CRS.decode("EPSG:4326", true),
+            CRS.decode("EPSG:3857", true), true);
+
+        Geometry g = new WKTReader().read("MULTIPOLYGON(((0 0, 10 0, 10 10, 0 10, 0 0), "
+            + "(2 2, 4 2, 4 4, 2 4, 2 2)), ((20 20, 30 20, 30 30, 20 20)))");
+        Geometry expected = JTS.transform(g, mt);
+        Geometry actual = ReprojectTransform.transform(g, mt);
+
+        assertTrue(expected.equalsExact(actual, 1e-6));
+        // source geometry is left untouched
+        assertEquals(10d, g.getCoordinates()[1].x);
+    }
+
+    public void testLargeGeometryBufferNotKept() throws Exception {
+        MathTransform mt = CRS.findMathTransform(CRS.decode("EPSG:4326", true),
+            CRS.decode("EPSG:3857", true), true);
+
+        Coordinate[] coords = new Coordinate[ReprojectTransform.MAX_BUFFER];
+        for (int i = 0; i < coords.length; i++) {
+            coords[i] = new Coordinate(i * 1e-4, i * 1e-4);
+        }
+        Geometry g = new GeometryFactory().createLineString(coords);
+        Geometry expected = JTS.transform(g, mt);
+
+        ReprojectTransform.BUFFER.remove();
+        assertTrue(expected.equalsExact(ReprojectTransform.transform(g, mt), 1e-6));
+        assertNull(ReprojectTransform.BUFFER.get());
+    }
+
+    public void testIdentity() throws Exception {
+        SimpleFeatureType type = DataUtilities.createType("test", "geom:Point:srid=4326");
+        SimpleFeature f = DataUtilities.template(type);
+        Geometry g = new WKTReader().read("POINT(1 2)");
+        f.setDefaultGeometry(g);
+
+        ReprojectTransform tx = new ReprojectTransform(CRS.decode("EPSG:4326"));
+        f = tx.apply(null, null, f, f);
+        assertSame(g, f.getDefaultGeometry());
+    }
+}
@@ -0,0 +1,49 @@
+package org.geoserver.importer.transform;
+
+import junit.framework.TestCase;
+
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+public class VectorTransformChainTest extends TestCase {
+
+    SimpleFeatureType type;
+
+    @Override
+    protected void setUp() throws Exception {
+        SimpleFeatureTypeBuilder tb = new SimpleFeatureTypeBuilder();
+        tb.setName("test");
+        tb.add("name", String.class);
+        tb.add("cat", String.class);
+        type = tb.buildFeatureType();
+    }
+
+    public void testPlanDropsIrrelevantTransforms() throws Exception {
+        NumberFormatTransform cat = new NumberFormatTransform("cat", Integer.class);
+        VectorTransformChain chain = new VectorTransformChain(
+            new NumberFormatTransform("missing", Integer.class),
+            new AttributeRemapTransform("name", String.class), cat);
+
+        VectorTransformChain.Plan plan = chain.compile(type);
+        assertEquals(1, plan.transforms.length);
+        assertSame(cat, plan.transforms[0]);
+    }
+
+    public void testInlineFeature() throws Exception {
+        VectorTransformChain chain = new VectorTransformChain(
+            new NumberFormatTransform("cat", Integer.class));
+
+        SimpleFeature f = SimpleFeatureBuilder.build(type, new Object[] { "foo", "12" }, "f.1");
+        f = chain.inline(null, null, f, f);
+        assertEquals(Integer.valueOf(12), f.getAttribute("cat"));
+
+        // plan is reused for features of the same type
+        VectorTransformChain.Plan plan = chain.plan;
+        f = SimpleFeatureBuilder.build(type, new Object[] { "bar", "13" }, "f.2");
+        f = chain.inline(null, null, f, f);
+        assertEquals(Integer.valueOf(13), f.getAttribute("cat"));
+        assertSame(plan, chain.plan);
+    }
+}
@@ -5,6 +5,8 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
@@ -172,6 +174,17 @@ public class ImportJSONReader {
         if (json.has("updateMode")) {
             task.setUpdateMode(UpdateMode.valueOf(json.getString("updateMode").toUpperCase()));
         }
+        if (json.has("updateKeys")) {
+            JSONArray keys = json.getJSONArray("updateKeys");
+            List<String> updateKeys = new ArrayList<String>();
+            for (int i = 0; i < keys.size(); i++) {
+                updateKeys.add(keys.getString(i));
+            }
+            task.setUpdateKeys(updateKeys);
+        }
+        if (json.has("deleteMissing")) {
+            task.setDeleteMissing(json.getBoolean("deleteMissing"));
+        }
 
         JSONObject data = null;
         if (json.has("data")) {
@@ -172,6 +172,16 @@ public class ImportJSONWriter {
             if (task.getUpdateMode() != null) {
                 json.key("updateMode").value(task.getUpdateMode().name());
             }
+            if (!task.getUpdateKeys().isEmpty()) {
+                json.key("updateKeys").array();
+                for (String key : task.getUpdateKeys()) {
+                    json.value(key);
+                }
+                json.endArray();
+            }
+            if (task.isDeleteMissing()) {
+                json.key("deleteMissing").value(true);
+            }
     
             //data (used to be source)
             ImportData data = task.getData();
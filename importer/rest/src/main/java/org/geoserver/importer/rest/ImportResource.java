@@ -166,13 +166,25 @@ public class ImportResource extends BaseResource {
                 Form query = getRequest().getResourceRef().getQueryAsForm();
                 
                 if (query.getNames().contains("async")) {
-                    importer.runAsync(context, ImportFilter.ALL);
+                    int priority = 0;
+                    if (query.getFirstValue("priority") != null) {
+                        try {
+                            priority = Integer.parseInt(query.getFirstValue("priority"));
+                        }
+                        catch(NumberFormatException e) {
+                            throw new RestletException("Invalid priority: " 
+                                + query.getFirstValue("priority"), Status.CLIENT_ERROR_BAD_REQUEST);
+                        }
+                    }
+                    importer.runAsync(context, ImportFilter.ALL, priority);
                 } else {
                     importer.run(context);
                     // @todo revisit - if errors occur, they are logged. A second request
                     // is required to verify success
                 }
                 getResponse().setStatus(Status.SUCCESS_NO_CONTENT);
+            } catch (RestletException e) {
+                throw e;
             } catch (Exception e) {
                 throw new RestletException("Error occured executing import", Status.SERVER_ERROR_INTERNAL, e);
             }
@@ -237,6 +237,14 @@ public class TaskResource extends BaseResource {
             orig.setUpdateMode(task.getUpdateMode());
             change = true;
         }
+        if (task.getDeleteMissing() != null) {
+            orig.setDeleteMissing(task.getDeleteMissing());
+            change = true;
+        }
+        if (!task.getUpdateKeys().isEmpty()) {
+            orig.setUpdateKeys(task.getUpdateKeys());
+            change = true;
+        }
 
         if (task.getLayer() != null) {
             change = true;
@@ -297,7 +305,8 @@ public class TaskResource extends BaseResource {
     private Representation createProgressRepresentation() {
         JSONObject progress = new JSONObject();
         long imprt = Long.parseLong(getAttribute("import"));
-        ImportTask inProgress = importer.getCurrentlyProcessingTask(imprt);
+        ImportTask inProgress = importer.getCurrentlyProcessingTask(imprt, 
+            Long.parseLong(getAttribute("task")));
         try {
             if (inProgress != null) {
                 progress.put("progress", inProgress.getNumberProcessed());
@@ -306,6 +315,9 @@ public class TaskResource extends BaseResource {
             } else {
                 ImportTask task = (ImportTask) lookupTask(false);
                 progress.put("state", task.getState().toString());
+                if (task.hasCheckpoint()) {
+                    progress.put("checkpoint", task.getCheckpointCount());
+                }
                 if (task.getState() == ImportTask.State.ERROR) {
                     if (task.getError() != null) {
                         progress.put("message", task.getError().getMessage());
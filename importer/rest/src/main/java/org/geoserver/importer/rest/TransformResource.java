@@ -51,6 +51,7 @@ public class TransformResource extends BaseResource {
             (ImportTransform) getFormatPostOrPut().toObject(getRequest().getEntity());
         ImportTask task = task();
         task.getTransform().add(tx);
+        importer.changed(task);
 
         getResponse().redirectSeeOther(getPageInfo().rootURI(
             String.format(getPageInfo().rootURI(String.format("%s/transforms/%d",
@@ -70,6 +71,7 @@ public class TransformResource extends BaseResource {
                 (ImportTransform) getFormatPostOrPut().toObject(getRequest().getEntity());
 
         OwsUtils.copy(tx, orig, (Class) orig.getClass());
+        importer.changed(task());
 
         getResponse().setEntity(getFormatGet().toRepresentation(orig));
         getResponse().setStatus(Status.SUCCESS_OK);
@@ -85,6 +87,9 @@ public class TransformResource extends BaseResource {
         ImportTask task = task();
         ImportTransform tx = transform(false);
         boolean result = task.getTransform().remove(tx);
+        if (result) {
+            importer.changed(task);
+        }
 
         getResponse().setStatus(result ? Status.SUCCESS_OK : Status.CLIENT_ERROR_NOT_FOUND);
     }
@@ -37,6 +37,7 @@ import org.geoserver.importer.ImportData;
 import org.geoserver.importer.ImportTask;
 import org.geoserver.importer.ImporterTestSupport;
 import org.geoserver.importer.SpatialFile;
+import org.geoserver.importer.UpdateMode;
 import org.geoserver.importer.VFSWorker;
 import org.geoserver.importer.ImportContext.State;
 import org.geoserver.importer.ImporterTestSupport.JSONObjectBuilder;
@@ -249,7 +250,14 @@ public class TaskResourceTest extends ImporterTestSupport {
             importer.changed(context);
         }
         
-        resp = postAsServletResponse("/rest/imports/" + id,"","application/text");
+        // archive on the request thread so the archive can be checked below
+        importer.setArchiveAsync(false);
+        try {
+            resp = postAsServletResponse("/rest/imports/" + id,"","application/text");
+        }
+        finally {
+            importer.setArchiveAsync(true);
+        }
         assertEquals(204,resp.getStatusCode());
         
         // ensure item ran successfully
@@ -484,6 +492,24 @@ public class TaskResourceTest extends ImporterTestSupport {
         assertEquals("H2", json.getJSONObject("dataStore").getString("type"));
     }
 
+    public void testPutDeleteMissing() throws Exception {
+        ImportTask task = importer.getContext(0).getTasks().get(0);
+        task.setUpdateMode(UpdateMode.UPDATE);
+        importer.changed(task);
+
+        // the flag is changed on its own, without touching the update mode
+        put("/rest/imports/0/tasks/0", "{\"deleteMissing\": true}", 
+            MediaType.APPLICATION_JSON.toString());
+
+        task = importer.getContext(0).getTasks().get(0);
+        assertTrue(task.isDeleteMissing());
+        assertEquals(UpdateMode.UPDATE, task.getUpdateMode());
+
+        put("/rest/imports/0/tasks/0", "{\"deleteMissing\": false}", 
+            MediaType.APPLICATION_JSON.toString());
+        assertFalse(importer.getContext(0).getTasks().get(0).isDeleteMissing());
+    }
+
     public void testPutItemSRS() throws Exception {
         File dir = unpack("shape/archsites_no_crs.zip");
         importer.createContext(new SpatialFile(new File(dir, "archsites.shp")));
@@ -1,12 +1,14 @@
 package org.geoserver.importer.web;
 
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 
 import org.apache.commons.collections.IteratorUtils;
 import org.apache.wicket.model.IModel;
 import org.geoserver.web.wicket.GeoServerDataProvider;
 import org.geoserver.importer.ImportContext;
+import org.geoserver.importer.Importer;
 
 public class ImportContextProvider extends GeoServerDataProvider<ImportContext> {
     public static Property<ImportContext> ID = new BeanProperty("id", "id");
@@ -30,7 +32,36 @@ public class ImportContextProvider extends GeoServerDataProvider<ImportContext>
     }
     @Override
     protected List<ImportContext> getItems() {
-        return IteratorUtils.toList(ImporterWebUtils.importer().getAllContexts() );
+        Importer importer = ImporterWebUtils.importer();
+        return IteratorUtils.toList(sortByUpdated ? importer.getAllContextsByUpdated() : 
+            importer.getAllContexts());
+    }
+
+    @Override
+    public Iterator<ImportContext> iterator(int first, int count) {
+        if (!paged()) {
+            return super.iterator(first, count);
+        }
+        return ImporterWebUtils.importer().getContextsByUpdated(first, count);
+    }
+
+    @Override
+    public int size() {
+        return paged() ? fullSize() : super.size();
+    }
+
+    @Override
+    public int fullSize() {
+        return paged() ? ImporterWebUtils.importer().getContextCount() : super.fullSize();
+    }
+
+    /**
+     * Whether pages can be read straight from the store, rather than loading and filtering all
+     * the imports.
+     */
+    boolean paged() {
+        return sortByUpdated && getSort() == null && 
+            (getKeywords() == null || getKeywords().length == 0);
     }
 
     @Override
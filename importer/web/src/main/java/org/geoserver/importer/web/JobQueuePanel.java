@@ -2,13 +2,29 @@ package org.geoserver.importer.web;
 
 import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.ajax.markup.html.AjaxLink;
+import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.panel.Panel;
+import org.apache.wicket.model.AbstractReadOnlyModel;
+import org.geoserver.importer.job.JobQueue;
+import org.geoserver.web.wicket.ParamResourceModel;
 
 public class JobQueuePanel extends Panel {
 
     public JobQueuePanel(String id) {
         super(id);
 
+        final Label stats = new Label("stats", new AbstractReadOnlyModel<String>() {
+            @Override
+            public String getObject() {
+                JobQueue queue = ImporterWebUtils.importer().getJobQueue();
+                return new ParamResourceModel("stats", JobQueuePanel.this, queue.getRunning(), 
+                    queue.getMaxRunning(), queue.getQueueDepth(), 
+                    queue.getMaxWaitTime() / 1000).getString();
+            }
+        });
+        stats.setOutputMarkupId(true);
+        add(stats);
+
         final JobQueueTable table = new JobQueueTable("table");
         add(table);
 
@@ -16,6 +32,7 @@ public class JobQueuePanel extends Panel {
 
             @Override
             public void onClick(AjaxRequestTarget target) {
+                target.addComponent(stats);
                 target.addComponent(table);
             }
         };
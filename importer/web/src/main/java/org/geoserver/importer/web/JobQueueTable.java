@@ -39,12 +39,36 @@ public class JobQueueTable extends GeoServerTablePanel<Task<ImportContext>> {
         }
     };
     
+    static final Property<Task<ImportContext>> USER = 
+            new AbstractProperty<Task<ImportContext>>("user") {
+        @Override
+        public Object getPropertyValue(Task<ImportContext> item) {
+            return item != null && item.getUser() != null ? item.getUser() : "";
+        }
+    };
+
+    static final Property<Task<ImportContext>> PRIORITY = 
+            new AbstractProperty<Task<ImportContext>>("priority") {
+        @Override
+        public Object getPropertyValue(Task<ImportContext> item) {
+            return item != null ? item.getPriority() : 0;
+        }
+    };
+
+    static final Property<Task<ImportContext>> WAIT = 
+            new AbstractProperty<Task<ImportContext>>("wait") {
+        @Override
+        public Object getPropertyValue(Task<ImportContext> item) {
+            return item != null ? (item.getWaitTime() / 1000) + "s" : "";
+        }
+    };
+
     public JobQueueTable(String id) {
         super(id, new GeoServerDataProvider<Task<ImportContext>>() {
 
             @Override
             protected List<Property<Task<ImportContext>>> getProperties() {
-                return Arrays.asList(IMPORT, STATUS);
+                return Arrays.asList(IMPORT, USER, PRIORITY, WAIT, STATUS);
             }
 
             @Override